@@ -1,17 +1,20 @@
 package com.sofka.megawarez.controller;
 
 import com.sofka.megawarez.domain.Category;
-import com.sofka.megawarez.domain.Download;
 import com.sofka.megawarez.domain.Item;
 import com.sofka.megawarez.domain.Subcategory;
+import com.sofka.megawarez.service.AdmissionControl;
 import com.sofka.megawarez.service.CatalogueService;
+import com.sofka.megawarez.utility.CompressedPayload;
 import com.sofka.megawarez.utility.LoginData;
 import com.sofka.megawarez.utility.Response;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataAccessException;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -21,10 +24,15 @@ import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.sql.SQLException;
+import java.time.Instant;
 
 /**
  * Controlador para el catalogo
@@ -43,6 +51,12 @@ public class CatalogueController {
     @Autowired
     private CatalogueService catalogueService;
 
+    /**
+     * Control de admisión por grupo de endpoints
+     */
+    @Autowired
+    private AdmissionControl admissionControl;
+
     /**
      * Variable para el manejo de las respuestas de las API
      */
@@ -96,19 +110,40 @@ public class CatalogueController {
     }
 
     /**
-     * Index del sistema, responde con el listado de categorias y sus subcategorias
+     * Index del sistema, responde con una página de items ordenados por nombre.
+     * La página se sirve ya serializada, comprimida con gzip si el cliente lo acepta
      *
+     * @param cursor Cursor devuelto en la página anterior (next), vacío para la primera página
+     * @param size Cantidad de items por página
+     * @param acceptEncoding Codificaciones aceptadas por el cliente
+     * @param webRequest Petición, usada para responder 304 si el cliente ya tiene la versión vigente
      * @return Objeto Response en formato JSON
      *
      * @author Lorena Castro <Lcastro0398@gmail.com>
      * @since 1.0.0
      */
     @GetMapping(path = "/api/v1/index")
-    public ResponseEntity<Response> index() {
+    public ResponseEntity<?> index(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", required = false) Integer size,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            WebRequest webRequest
+    ) {
+        if (notModified(webRequest)) {
+            return null;
+        }
         response.restart();
         try {
-            response.data = catalogueService.getList();
-            httpStatus = HttpStatus.OK;
+            var payload = catalogueService.getIndexPayload(cursor, size);
+            var builder = ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            if (payload.getGzip() != null && CompressedPayload.acceptsGzip(acceptEncoding)) {
+                return builder.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(payload.getGzip());
+            }
+            return builder.body(payload.getIdentity());
+        } catch (IllegalArgumentException exception) {
+            getErrorMessageForRequest(exception);
         } catch (Exception exception) {
             getErrorMessageInternal(exception);
         }
@@ -116,12 +151,34 @@ public class CatalogueController {
     }
 
     /**
-     * Devuelve todos los items ordenados por nombre de forma ascendente o descendente
+     * Exporta el catálogo completo como un arreglo JSON que se escribe a medida que se leen los items,
+     * pensado para los clientes que necesitan todos los items sin paginar
+     *
+     * @param webRequest Petición, usada para responder 304 si el cliente ya tiene la versión vigente
+     * @return Cuerpo de la respuesta escrito de forma progresiva
      *
-     * @param category
-     * @param subcategory
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @GetMapping(path = "/api/v1/index/export", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportIndex(WebRequest webRequest) {
+        if (notModified(webRequest)) {
+            return null;
+        }
+        StreamingResponseBody body = outputStream -> catalogueService.exportCatalogue(outputStream);
+        return new ResponseEntity<>(body, HttpStatus.OK);
+    }
+
+    /**
+     * Devuelve los items de una subcategoría ordenados de forma ascendente o descendente
+     *
+     * @param category Nombre de la categoría
+     * @param subcategory Nombre de la subcategoría
      * @param orderBy Nombre del campo por donde se desea ordenar la información (name o createdAt)
      * @param order Tipo de orden que debe tener la información (ASC o DESC)
+     * @param cursor Cursor devuelto en la página anterior (next), vacío para la primera página
+     * @param size Cantidad de items por página
+     * @param webRequest Petición, usada para responder 304 si el cliente ya tiene la versión vigente
      * @return Objeto Response en formato JSON
      *
      * @author Lorena Castro <Lcastro0398@gmail.com>
@@ -132,12 +189,27 @@ public class CatalogueController {
             @PathVariable(value="category") String category,
             @PathVariable(value="subcategory") String subcategory,
             @PathVariable(value="orderBy") String orderBy,
-            @PathVariable(value="order") Sort.Direction order
+            @PathVariable(value="order") Sort.Direction order,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", required = false) Integer size,
+            WebRequest webRequest
     ) {
+        if (notModified(webRequest)) {
+            return null;
+        }
         response.restart();
         try {
-            response.data = catalogueService.getList(orderBy, order);
-            httpStatus = HttpStatus.OK;
+            var page = catalogueService.getList(category, subcategory, orderBy, order, cursor, size);
+            if (page == null) {
+                response.message = "La subcategoría no existe";
+                httpStatus = HttpStatus.NOT_FOUND;
+            } else {
+                response.data = page.getItems();
+                response.next = page.getNext();
+                httpStatus = HttpStatus.OK;
+            }
+        } catch (IllegalArgumentException exception) {
+            getErrorMessageForRequest(exception);
         } catch (Exception exception) {
             getErrorMessageInternal(exception);
         }
@@ -149,6 +221,9 @@ public class CatalogueController {
      *
      * @param orderBy Nombre del campo por donde se desea ordenar la información (name o createdAt)
      * @param order Tipo de orden que debe tener la información (ASC o DESC)
+     * @param cursor Cursor devuelto en la página anterior (next), vacío para la primera página
+     * @param size Cantidad de items por página
+     * @param webRequest Petición, usada para responder 304 si el cliente ya tiene la versión vigente
      * @return Objeto Response en formato JSON
      *
      * @author Lorena Castro <Lcastro0398@gmail.com>
@@ -157,11 +232,105 @@ public class CatalogueController {
     @GetMapping(path = "/api/v1/index/orderby/{orderBy}/{order}")
     public ResponseEntity<Response> indexOrderBy(
             @PathVariable(value="orderBy") String orderBy,
-            @PathVariable(value="order") Sort.Direction order
+            @PathVariable(value="order") Sort.Direction order,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", required = false) Integer size,
+            WebRequest webRequest
+    ) {
+        if (notModified(webRequest)) {
+            return null;
+        }
+        response.restart();
+        try {
+            var page = catalogueService.getList(orderBy, order, cursor, size);
+            response.data = page.getItems();
+            response.next = page.getNext();
+            httpStatus = HttpStatus.OK;
+        } catch (IllegalArgumentException exception) {
+            getErrorMessageForRequest(exception);
+        } catch (Exception exception) {
+            getErrorMessageInternal(exception);
+        }
+        return new ResponseEntity(response, httpStatus);
+    }
+
+    /**
+     * Busca las categorías cuyo nombre empieza por el dato indicado
+     *
+     * @param name Dato a buscar
+     * @param webRequest Petición, usada para responder 304 si el cliente ya tiene la versión vigente
+     * @return Objeto Response en formato JSON
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @GetMapping(path = "/api/v1/category/search/{name}")
+    public ResponseEntity<Response> searchCategories(
+            @PathVariable(value="name") String name,
+            WebRequest webRequest
+    ) {
+        if (notModified(webRequest)) {
+            return null;
+        }
+        response.restart();
+        try {
+            response.data = catalogueService.findCategories(name);
+            httpStatus = HttpStatus.OK;
+        } catch (Exception exception) {
+            getErrorMessageInternal(exception);
+        }
+        return new ResponseEntity(response, httpStatus);
+    }
+
+    /**
+     * Busca las subcategorías cuyo nombre empieza por el dato indicado
+     *
+     * @param name Dato a buscar
+     * @param webRequest Petición, usada para responder 304 si el cliente ya tiene la versión vigente
+     * @return Objeto Response en formato JSON
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @GetMapping(path = "/api/v1/subcategory/search/{name}")
+    public ResponseEntity<Response> searchSubcategories(
+            @PathVariable(value="name") String name,
+            WebRequest webRequest
+    ) {
+        if (notModified(webRequest)) {
+            return null;
+        }
+        response.restart();
+        try {
+            response.data = catalogueService.findSubcategories(name);
+            httpStatus = HttpStatus.OK;
+        } catch (Exception exception) {
+            getErrorMessageInternal(exception);
+        }
+        return new ResponseEntity(response, httpStatus);
+    }
+
+    /**
+     * Busca los items cuyo nombre empieza por el dato indicado
+     *
+     * @param name Dato a buscar
+     * @param webRequest Petición, usada para responder 304 si el cliente ya tiene la versión vigente
+     * @return Objeto Response en formato JSON
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @GetMapping(path = "/api/v1/item/search/{name}")
+    public ResponseEntity<Response> searchItems(
+            @PathVariable(value="name") String name,
+            WebRequest webRequest
     ) {
+        if (notModified(webRequest)) {
+            return null;
+        }
         response.restart();
         try {
-            response.data = catalogueService.getList(orderBy, order);
+            response.data = catalogueService.findItems(name);
             httpStatus = HttpStatus.OK;
         } catch (Exception exception) {
             getErrorMessageInternal(exception);
@@ -170,22 +339,129 @@ public class CatalogueController {
     }
 
     /**
-     * Crea una descarga en el sistema
+     * Autocompletado de nombres, devuelve los primeros nombres que empiezan por el prefijo
+     * sin distinguir mayúsculas ni tildes
+     *
+     * @param type Tipo de nombre a buscar (category, subcategory o item)
+     * @param prefix Prefijo escrito por el usuario
+     * @param limit Cantidad máxima de resultados
+     * @param webRequest Petición, usada para responder 304 si el cliente ya tiene la versión vigente
+     * @return Objeto Response en formato JSON
      *
-     * @param download objeto Download a crear
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @GetMapping(path = "/api/v1/autocomplete/{type}/{prefix}")
+    public ResponseEntity<Response> autocomplete(
+            @PathVariable(value="type") String type,
+            @PathVariable(value="prefix") String prefix,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            WebRequest webRequest
+    ) {
+        if (notModified(webRequest)) {
+            return null;
+        }
+        response.restart();
+        try {
+            response.data = catalogueService.autocomplete(type, prefix, limit);
+            httpStatus = HttpStatus.OK;
+        } catch (IllegalArgumentException exception) {
+            getErrorMessageForRequest(exception);
+        } catch (Exception exception) {
+            getErrorMessageInternal(exception);
+        }
+        return new ResponseEntity(response, httpStatus);
+    }
+
+    /**
+     * Búsqueda de texto completo de items, acepta varias palabras y errores de escritura
+     *
+     * @param query Texto a buscar
+     * @param limit Cantidad máxima de resultados
+     * @param webRequest Petición, usada para responder 304 si el cliente ya tiene la versión vigente
+     * @return Objeto Response en formato JSON
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @GetMapping(path = "/api/v1/search")
+    public ResponseEntity<Response> search(
+            @RequestParam(value = "q") String query,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            WebRequest webRequest
+    ) {
+        if (notModified(webRequest)) {
+            return null;
+        }
+        response.restart();
+        try {
+            response.data = catalogueService.search(query, limit);
+            httpStatus = HttpStatus.OK;
+        } catch (Exception exception) {
+            getErrorMessageInternal(exception);
+        }
+        return new ResponseEntity(response, httpStatus);
+    }
+
+    /**
+     * Devuelve las estadísticas de aciertos, fallos y descartes de las cachés del catálogo
+     *
+     * @return Objeto Response en formato JSON
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @GetMapping(path = "/api/v1/cache/stats")
+    public ResponseEntity<Response> cacheStats() {
+        response.restart();
+        try {
+            response.data = catalogueService.getCacheStats();
+            httpStatus = HttpStatus.OK;
+        } catch (Exception exception) {
+            getErrorMessageInternal(exception);
+        }
+        return new ResponseEntity(response, httpStatus);
+    }
+
+    /**
+     * Crea una descarga en el sistema. Responde 201 si se escribió de inmediato o 202 si quedó
+     * en cola para la escritura diferida, y 503 si la cola está llena. Si la cabecera
+     * Idempotency-Key repite una llave ya usada por el usuario responde 200 con la descarga original
+     *
+     * @param userId Identificador del usuario que descarga
+     * @param itemId Identificador del item descargado
+     * @param idempotencyKey Llave de idempotencia, opcional
+     * @param request Petición, de ella se toma la dirección IP del cliente
      * @return Objeto response en fromato json
      *
      * @author Lorena Castro <Lcastro0398@gmail.com>
      * @since 1.0.0
      */
     @PostMapping(path = "/api/v1/descarga/{userId}/{itemId}")
-    public ResponseEntity<Response> createdownload(@RequestBody Download download) {
+    public ResponseEntity<Response> createdownload(
+            @PathVariable(value="userId") Integer userId,
+            @PathVariable(value="itemId") Integer itemId,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            HttpServletRequest request
+    ) {
         response.restart();
+        var retryAfter = admissionControl.admit(AdmissionControl.Group.DOWNLOAD_WRITE, request.getRemoteAddr(), userId);
+        if (retryAfter > 0) {
+            return getResponseForTooManyRequests(retryAfter);
+        }
         {
             try {
-                log.info("Descarga a crear: {}", download);
-                response.data = catalogueService.createDownload(download);
-                httpStatus = HttpStatus.CREATED;
+                var download = catalogueService.createDownload(userId, itemId, idempotencyKey);
+                response.data = download;
+                if (download.isReplayed()) {
+                    httpStatus = HttpStatus.OK;
+                } else {
+                    httpStatus = download.getId() != null ? HttpStatus.CREATED : HttpStatus.ACCEPTED;
+                }
+            } catch (IllegalArgumentException exception) {
+                getErrorMessageForRequest(exception);
+            } catch (IllegalStateException exception) {
+                getErrorMessageForOverload(exception);
             } catch (DataAccessException exception) {
                 getErrorMessageForResponse(exception);
             } catch (Exception exception) {
@@ -196,22 +472,312 @@ public class CatalogueController {
     }
 
     /**
-     * Devuelve las descargas de un item específico
+     * Crea descargas en bloque a partir de un cuerpo NDJSON (una descarga por línea). El cuerpo
+     * se procesa a medida que llega y la respuesta incluye los errores por número de línea. Si la
+     * base de datos falla a mitad del cuerpo responde 503 con el resumen parcial y la línea desde
+     * la que reenviar
      *
-     * @param itemId
-     * @return
+     * @param request Petición con el cuerpo NDJSON
+     * @return Objeto Response en formato JSON
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @PostMapping(path = "/api/v1/descarga/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<Response> createDownloads(HttpServletRequest request) {
+        response.restart();
+        var retryAfter = admissionControl.admit(AdmissionControl.Group.DOWNLOAD_WRITE, request.getRemoteAddr());
+        if (retryAfter > 0) {
+            return getResponseForTooManyRequests(retryAfter);
+        }
+        try {
+            var report = catalogueService.createDownloads(request.getInputStream());
+            response.data = report;
+            if (report.isInterrupted()) {
+                response.error = true;
+                response.message = "La base de datos no está disponible, reenvíe desde la línea "
+                        + report.getResumeLine();
+                httpStatus = HttpStatus.SERVICE_UNAVAILABLE;
+            } else {
+                httpStatus = HttpStatus.OK;
+            }
+        } catch (DataAccessException exception) {
+            getErrorMessageForResponse(exception);
+        } catch (Exception exception) {
+            getErrorMessageInternal(exception);
+        }
+        return new ResponseEntity(response, httpStatus);
+    }
+
+    /**
+     * Devuelve una página de las descargas de un item específico, de la más reciente a la más antigua
+     *
+     * @param itemId Identificador del item
+     * @param since Fecha mínima en formato ISO-8601, opcional (ver megawarez.download.recent-range)
+     * @param cursor Cursor de la página anterior, opcional
+     * @param size Cantidad de descargas por página, opcional
+     * @param request Petición, de ella se toma la dirección IP del cliente
+     * @return Objeto Response en formato JSON
      *
      * @author Lorena Castro <Lcastro0398@gmail.com>
      * @since 1.0.0
      */
     @GetMapping(path = "/api/v1/descarga/{itemId}")
     public ResponseEntity<Response> userByItem(
-            @PathVariable(value="itemId") Item itemId
+            @PathVariable(value="itemId") Integer itemId,
+            @RequestParam(value = "since", required = false) Instant since,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", required = false) Integer size,
+            HttpServletRequest request
+    ) {
+        response.restart();
+        var retryAfter = admissionControl.admit(AdmissionControl.Group.DOWNLOAD_READ, request.getRemoteAddr());
+        if (retryAfter > 0) {
+            return getResponseForTooManyRequests(retryAfter);
+        }
+        try {
+            var page = catalogueService.getDownloadsByItem(itemId, since, cursor, size);
+            response.data = page.getItems();
+            response.next = page.getNext();
+            httpStatus = HttpStatus.OK;
+        } catch (IllegalArgumentException exception) {
+            getErrorMessageForRequest(exception);
+        } catch (Exception exception) {
+            getErrorMessageInternal(exception);
+        }
+        return new ResponseEntity(response, httpStatus);
+    }
+
+    /**
+     * Devuelve la cantidad de descargas por día de un item específico
+     *
+     * @param itemId Identificador del item
+     * @param from Inicio del rango en formato ISO-8601, opcional
+     * @param to Fin del rango en formato ISO-8601, opcional
+     * @param request Petición, de ella se toma la dirección IP del cliente
+     * @return Objeto Response en formato JSON
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @GetMapping(path = "/api/v1/descarga/{itemId}/daily")
+    public ResponseEntity<Response> dailyDownloadsByItem(
+            @PathVariable(value="itemId") Integer itemId,
+            @RequestParam(value = "from", required = false) Instant from,
+            @RequestParam(value = "to", required = false) Instant to,
+            HttpServletRequest request
+    ) {
+        response.restart();
+        var retryAfter = admissionControl.admit(AdmissionControl.Group.DOWNLOAD_READ, request.getRemoteAddr());
+        if (retryAfter > 0) {
+            return getResponseForTooManyRequests(retryAfter);
+        }
+        try {
+            response.data = catalogueService.getDailyDownloads("item", itemId, from, to);
+            httpStatus = HttpStatus.OK;
+        } catch (IllegalArgumentException exception) {
+            getErrorMessageForRequest(exception);
+        } catch (Exception exception) {
+            getErrorMessageInternal(exception);
+        }
+        return new ResponseEntity(response, httpStatus);
+    }
+
+    /**
+     * Devuelve una página de las descargas de un usuario específico, de la más reciente a la más antigua
+     *
+     * @param userId Identificador del usuario
+     * @param since Fecha mínima en formato ISO-8601, opcional (ver megawarez.download.recent-range)
+     * @param cursor Cursor de la página anterior, opcional
+     * @param size Cantidad de descargas por página, opcional
+     * @param request Petición, de ella se toma la dirección IP del cliente
+     * @return Objeto Response en formato JSON
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @GetMapping(path = "/api/v1/descarga/usuario/{userId}")
+    public ResponseEntity<Response> downloadsByUser(
+            @PathVariable(value="userId") Integer userId,
+            @RequestParam(value = "since", required = false) Instant since,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", required = false) Integer size,
+            HttpServletRequest request
+    ) {
+        response.restart();
+        var retryAfter = admissionControl.admit(AdmissionControl.Group.DOWNLOAD_READ, request.getRemoteAddr());
+        if (retryAfter > 0) {
+            return getResponseForTooManyRequests(retryAfter);
+        }
+        try {
+            var page = catalogueService.getDownloadsByUser(userId, since, cursor, size);
+            response.data = page.getItems();
+            response.next = page.getNext();
+            httpStatus = HttpStatus.OK;
+        } catch (IllegalArgumentException exception) {
+            getErrorMessageForRequest(exception);
+        } catch (Exception exception) {
+            getErrorMessageInternal(exception);
+        }
+        return new ResponseEntity(response, httpStatus);
+    }
+
+    /**
+     * Devuelve la cantidad de descargas de un usuario específico
+     *
+     * @param userId Identificador del usuario
+     * @param since Fecha mínima en formato ISO-8601, opcional (ver megawarez.download.recent-range)
+     * @param request Petición, de ella se toma la dirección IP del cliente
+     * @return Objeto Response en formato JSON
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @GetMapping(path = "/api/v1/descarga/usuario/{userId}/count")
+    public ResponseEntity<Response> downloadCountByUser(
+            @PathVariable(value="userId") Integer userId,
+            @RequestParam(value = "since", required = false) Instant since,
+            HttpServletRequest request
+    ) {
+        response.restart();
+        var retryAfter = admissionControl.admit(AdmissionControl.Group.DOWNLOAD_READ, request.getRemoteAddr());
+        if (retryAfter > 0) {
+            return getResponseForTooManyRequests(retryAfter);
+        }
+        try {
+            response.data = catalogueService.getDownloadCountByUser(userId, since);
+            httpStatus = HttpStatus.OK;
+        } catch (Exception exception) {
+            getErrorMessageInternal(exception);
+        }
+        return new ResponseEntity(response, httpStatus);
+    }
+
+    /**
+     * Devuelve la cantidad de descargas por día de un usuario específico
+     *
+     * @param userId Identificador del usuario
+     * @param from Inicio del rango en formato ISO-8601, opcional
+     * @param to Fin del rango en formato ISO-8601, opcional
+     * @param request Petición, de ella se toma la dirección IP del cliente
+     * @return Objeto Response en formato JSON
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @GetMapping(path = "/api/v1/descarga/usuario/{userId}/daily")
+    public ResponseEntity<Response> dailyDownloadsByUser(
+            @PathVariable(value="userId") Integer userId,
+            @RequestParam(value = "from", required = false) Instant from,
+            @RequestParam(value = "to", required = false) Instant to,
+            HttpServletRequest request
+    ) {
+        response.restart();
+        var retryAfter = admissionControl.admit(AdmissionControl.Group.DOWNLOAD_READ, request.getRemoteAddr());
+        if (retryAfter > 0) {
+            return getResponseForTooManyRequests(retryAfter);
+        }
+        try {
+            response.data = catalogueService.getDailyDownloads("user", userId, from, to);
+            httpStatus = HttpStatus.OK;
+        } catch (IllegalArgumentException exception) {
+            getErrorMessageForRequest(exception);
+        } catch (Exception exception) {
+            getErrorMessageInternal(exception);
+        }
+        return new ResponseEntity(response, httpStatus);
+    }
+
+    /**
+     * Devuelve la cantidad de descargas de un item específico
+     *
+     * @param itemId Identificador del item
+     * @param request Petición, de ella se toma la dirección IP del cliente
+     * @return Objeto Response en formato JSON
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @GetMapping(path = "/api/v1/descarga/{itemId}/count")
+    public ResponseEntity<Response> downloadCount(
+            @PathVariable(value="itemId") Integer itemId,
+            HttpServletRequest request
+    ) {
+        response.restart();
+        var retryAfter = admissionControl.admit(AdmissionControl.Group.DOWNLOAD_READ, request.getRemoteAddr());
+        if (retryAfter > 0) {
+            return getResponseForTooManyRequests(retryAfter);
+        }
+        try {
+            response.data = catalogueService.getDownloadCount(itemId);
+            httpStatus = HttpStatus.OK;
+        } catch (Exception exception) {
+            getErrorMessageInternal(exception);
+        }
+        return new ResponseEntity(response, httpStatus);
+    }
+
+    /**
+     * Devuelve los items más descargados en la última hora, día o semana
+     *
+     * @param window Ventana de tiempo (hour, day o week)
+     * @param limit Cantidad máxima de resultados
+     * @return Objeto Response en formato JSON
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @GetMapping(path = "/api/v1/trending/{window}")
+    public ResponseEntity<Response> trending(
+            @PathVariable(value="window") String window,
+            @RequestParam(value = "limit", required = false) Integer limit
     ) {
         response.restart();
         try {
-            response.data = catalogueService.getList(itemId);
+            response.data = catalogueService.getTrending(window, limit);
             httpStatus = HttpStatus.OK;
+        } catch (IllegalArgumentException exception) {
+            getErrorMessageForRequest(exception);
+        } catch (Exception exception) {
+            getErrorMessageInternal(exception);
+        }
+        return new ResponseEntity(response, httpStatus);
+    }
+
+    /**
+     * Devuelve la serie de tiempo de descargas de un item o de una subcategoría,
+     * calculada desde los rollups sin recorrer las descargas
+     *
+     * @param scope Alcance de la serie (item o subcategory)
+     * @param id Identificador del item o de la subcategoría
+     * @param granularity Granularidad de las cubetas (minute, hour o day)
+     * @param from Inicio del rango en formato ISO-8601, opcional
+     * @param to Fin del rango en formato ISO-8601, opcional
+     * @param request Petición, de ella se toma la dirección IP del cliente
+     * @return Objeto Response en formato JSON
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @GetMapping(path = "/api/v1/descarga/series/{scope}/{id}/{granularity}")
+    public ResponseEntity<Response> downloadSeries(
+            @PathVariable(value="scope") String scope,
+            @PathVariable(value="id") Integer id,
+            @PathVariable(value="granularity") String granularity,
+            @RequestParam(value = "from", required = false) Instant from,
+            @RequestParam(value = "to", required = false) Instant to,
+            HttpServletRequest request
+    ) {
+        response.restart();
+        var retryAfter = admissionControl.admit(AdmissionControl.Group.DOWNLOAD_READ, request.getRemoteAddr());
+        if (retryAfter > 0) {
+            return getResponseForTooManyRequests(retryAfter);
+        }
+        try {
+            response.data = catalogueService.getDownloadSeries(scope, id, granularity, from, to);
+            httpStatus = HttpStatus.OK;
+        } catch (IllegalArgumentException exception) {
+            getErrorMessageForRequest(exception);
         } catch (Exception exception) {
             getErrorMessageInternal(exception);
         }
@@ -465,21 +1031,32 @@ public class CatalogueController {
      * Inicio de sesión del usuario
      *
      * @param loginData Objeto para validar el inicio de sesión
+     * @param request Petición, de ella se toma la dirección IP del cliente
      * @return Objeto Response en formato JSON
      *
      * @author Lorena Castro <Lcastro0398@gmail.com>
      * @since 1.0.0
      */
     @PostMapping(path = "/api/v1/login")
-    public ResponseEntity<Response> login(@RequestBody LoginData loginData) {
+    public ResponseEntity<Response> login(@RequestBody LoginData loginData, HttpServletRequest request) {
         response.restart();
+        var retryAfter = admissionControl.admit(AdmissionControl.Group.LOGIN, request.getRemoteAddr(), loginData.getUsername());
+        if (retryAfter > 0) {
+            return getResponseForTooManyRequests(retryAfter);
+        }
         try {
-            response.message = "Todo OK";
-            response.data = loginData.getToken();
-            httpStatus = HttpStatus.OK;
-            // realizo consulta para saber si el usuario y contraseña coinciden
+            var token = catalogueService.login(loginData.getUsername(), loginData.getPassword());
+            if (token == null) {
+                getErrorMessageForUnauthorized("Usuario o contraseña incorrectos");
+            } else {
+                response.message = "Todo OK";
+                response.data = token;
+                httpStatus = HttpStatus.OK;
+            }
         } catch (DataAccessException exception) {
             getErrorMessageForResponse(exception);
+        } catch (IllegalStateException exception) {
+            getErrorMessageForOverload(exception);
         } catch (Exception exception) {
             getErrorMessageInternal(exception);
         }
@@ -489,8 +1066,8 @@ public class CatalogueController {
     /**
      * Valida el token
      *
-     * @param authorization
-     * @return Objeto Response en formato JSON
+     * @param authorization Cabecera Authorization con el token (Bearer)
+     * @return Objeto Response en formato JSON con el identificador del usuario de la sesión
      *
      * @author Lorena Castro <Lcastro0398@gmail.com>
      * @since 1.0.0
@@ -499,17 +1076,74 @@ public class CatalogueController {
     public ResponseEntity<Response> getToken(@RequestHeader("Authorization") String authorization) {
         response.restart();
         try {
-            response.message = "Todo OK - TOKEN";
-            response.data = authorization.replace("Bearer ", "");
-            httpStatus = HttpStatus.OK;
-        } catch (DataAccessException exception) {
-            getErrorMessageForResponse(exception);
+            var userId = catalogueService.validateToken(bearerToken(authorization));
+            if (userId == null) {
+                getErrorMessageForUnauthorized("El token no es válido o venció");
+            } else {
+                response.message = "Todo OK - TOKEN";
+                response.data = userId;
+                httpStatus = HttpStatus.OK;
+            }
+        } catch (Exception exception) {
+            getErrorMessageInternal(exception);
+        }
+        return new ResponseEntity(response, httpStatus);
+    }
+
+    /**
+     * Cierre de sesión del usuario
+     *
+     * @param authorization Cabecera Authorization con el token (Bearer)
+     * @return Objeto Response en formato JSON
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @DeleteMapping(path = "/api/v1/token")
+    public ResponseEntity<Response> logout(@RequestHeader("Authorization") String authorization) {
+        response.restart();
+        try {
+            if (catalogueService.logout(bearerToken(authorization))) {
+                response.message = "La sesión fue cerrada exitosamente";
+                httpStatus = HttpStatus.OK;
+            } else {
+                getErrorMessageForUnauthorized("El token no es válido o venció");
+            }
         } catch (Exception exception) {
             getErrorMessageInternal(exception);
         }
         return new ResponseEntity(response, httpStatus);
     }
 
+    /**
+     * Extrae el token de la cabecera Authorization
+     *
+     * @param authorization Cabecera Authorization
+     * @return Token, null si la cabecera no es de tipo Bearer
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private String bearerToken(String authorization) {
+        return authorization.startsWith("Bearer ") ? authorization.substring(7).trim() : null;
+    }
+
+    /**
+     * Evalúa las cabeceras If-None-Match e If-Modified-Since contra la versión vigente del catálogo.
+     * Si el cliente ya tiene la versión vigente deja la respuesta en 304, en otro caso agrega
+     * las cabeceras ETag y Last-Modified a la respuesta
+     *
+     * @param webRequest Petición en curso
+     * @return true si la respuesta ya quedó resuelta con 304
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private boolean notModified(WebRequest webRequest) {
+        var stamp = catalogueService.getVersion();
+        return webRequest.checkNotModified(stamp.getEtag(), stamp.getLastModified());
+    }
+
     /**
      * Administrador para la redirección al controllador /api/v1/index
      *
@@ -547,6 +1181,67 @@ public class CatalogueController {
         httpStatus = HttpStatus.INTERNAL_SERVER_ERROR;
     }
 
+    /**
+     * Administrador para las peticiones rechazadas por el control de admisión, responde 429 con
+     * la cabecera Retry-After
+     *
+     * @param retryAfterNanos Nanosegundos que faltan para que se admita la petición
+     * @return Objeto Response en formato JSON
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private ResponseEntity<Response> getResponseForTooManyRequests(long retryAfterNanos) {
+        response.error = true;
+        response.message = "Demasiadas peticiones, intente más tarde";
+        httpStatus = HttpStatus.TOO_MANY_REQUESTS;
+        return ResponseEntity.status(httpStatus)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf((retryAfterNanos + 999_999_999L) / 1_000_000_000L))
+                .body(response);
+    }
+
+    /**
+     * Administrador para las excepciones causadas por datos inválidos en la petición
+     *
+     * @param exception Objeto IllegalArgumentException
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private void getErrorMessageForRequest(IllegalArgumentException exception) {
+        response.error = true;
+        response.message = exception.getMessage();
+        httpStatus = HttpStatus.BAD_REQUEST;
+    }
+
+    /**
+     * Administrador para las peticiones sin credenciales válidas
+     *
+     * @param message Mensaje de la respuesta
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private void getErrorMessageForUnauthorized(String message) {
+        response.error = true;
+        response.message = message;
+        httpStatus = HttpStatus.UNAUTHORIZED;
+    }
+
+    /**
+     * Administrador para las peticiones rechazadas porque el sistema está saturado
+     *
+     * @param exception Objeto IllegalStateException
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private void getErrorMessageForOverload(IllegalStateException exception) {
+        response.error = true;
+        response.message = exception.getMessage();
+        httpStatus = HttpStatus.SERVICE_UNAVAILABLE;
+    }
+
     /**
      * Administrador para las excepciones a nivel de SQL con respecto al manejo del acceso a los datos
      *
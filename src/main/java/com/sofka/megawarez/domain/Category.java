@@ -17,6 +17,7 @@ import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
+import javax.persistence.TableGenerator;
 import java.io.Serializable;
 import java.time.Instant;
 import java.util.LinkedHashSet;
@@ -44,10 +45,13 @@ public class Category implements Serializable {
     private static final long serialVersionUID = 1L;
 
     /**
-     * Identificador de la tupla
+     * Identificador de la tupla, se reserva en bloques de 50 desde la tabla id_generator
+     * para que las inserciones puedan enviarse en lotes
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "category_id")
+    @TableGenerator(name = "category_id", table = "id_generator", pkColumnName = "gen_name",
+            valueColumnName = "gen_next_value", pkColumnValue = "category", allocationSize = 50)
     @Column(name = "cat_id", nullable = false)
     private Integer id;
 
@@ -68,10 +72,11 @@ public class Category implements Serializable {
      * (una categoria puede tener muchas subcategorias)
      */
     @OneToMany(
-            fetch = FetchType.EAGER,
+            fetch = FetchType.LAZY,
             targetEntity = Subcategory.class,
             cascade = CascadeType.REMOVE,
             mappedBy = "category")
     @JsonIgnore
+    @ToString.Exclude
     private Set<Subcategory> subcategories = new LinkedHashSet<>();
 }
\ No newline at end of file
@@ -45,6 +45,7 @@ public class Download {
     @ManyToOne(fetch = FetchType.LAZY, targetEntity = User.class, optional = false)
     @JoinColumn(name = "dwn_user_id", nullable = false)
     @JsonBackReference(value = "userRef")
+    @ToString.Exclude
     private User user;
 
     /**
@@ -54,12 +55,13 @@ public class Download {
     @ManyToOne(fetch = FetchType.LAZY, targetEntity = Item.class, optional = false)
     @JoinColumn(name = "dwn_item_id", nullable = false)
     @JsonBackReference(value = "itemRef")
+    @ToString.Exclude
     private Item item;
 
     /**
      * Fecha y hora en que la tupla ha sido creada
      */
     @Column(name = "dwn_created_at", nullable = false)
-    private Instant CreatedAt;
+    private Instant createdAt;
 
 }
\ No newline at end of file
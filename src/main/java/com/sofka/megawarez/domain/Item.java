@@ -15,10 +15,12 @@ import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.OneToMany;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
+import javax.persistence.TableGenerator;
 import java.io.Serializable;
 import java.time.Instant;
 import java.util.LinkedHashSet;
@@ -37,7 +39,12 @@ import java.util.Set;
 @NoArgsConstructor
 @ToString
 @Entity
-@Table(name = "item")
+@Table(name = "item", indexes = {
+        @Index(name = "idx_itm_name_id", columnList = "itm_name, itm_id"),
+        @Index(name = "idx_itm_created_at_id", columnList = "itm_created_at, itm_id"),
+        @Index(name = "idx_itm_subcategory_name_id", columnList = "itm_subcategory_id, itm_name, itm_id"),
+        @Index(name = "idx_itm_subcategory_created_at_id", columnList = "itm_subcategory_id, itm_created_at, itm_id")
+})
 public class Item implements Serializable {
 
     /**
@@ -46,10 +53,13 @@ public class Item implements Serializable {
     private static final long serialVersionUID = 1L;
 
     /**
-     * Identificador de la tupla
+     * Identificador de la tupla, se reserva en bloques de 50 desde la tabla id_generator
+     * para que las inserciones puedan enviarse en lotes
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "item_id")
+    @TableGenerator(name = "item_id", table = "id_generator", pkColumnName = "gen_name",
+            valueColumnName = "gen_next_value", pkColumnValue = "item", allocationSize = 50)
     @Column(name = "itm_id", nullable = false)
     private Integer id;
 
@@ -60,6 +70,7 @@ public class Item implements Serializable {
     @ManyToOne(fetch = FetchType.LAZY, targetEntity = Subcategory.class, optional = false)
     @JoinColumn(name = "itm_subcategory_id", nullable = false)
     @JsonBackReference
+    @ToString.Exclude
     private Subcategory subcategory;
 
     /**
@@ -79,11 +90,12 @@ public class Item implements Serializable {
      * (un item puede tener muchas descargas)
      */
     @OneToMany(
-            fetch = FetchType.EAGER,
+            fetch = FetchType.LAZY,
             targetEntity = Download.class,
             cascade = CascadeType.REMOVE,
             mappedBy = "item")
     @JsonIgnore
+    @ToString.Exclude
     private Set<Download> downloads = new LinkedHashSet<>();
 
 }
\ No newline at end of file
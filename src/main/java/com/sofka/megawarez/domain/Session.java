@@ -2,6 +2,8 @@ package com.sofka.megawarez.domain;
 
 import com.fasterxml.jackson.annotation.JsonBackReference;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -9,9 +11,11 @@ import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
+import javax.persistence.TableGenerator;
 import java.io.Serializable;
 import java.time.Instant;
 
@@ -24,7 +28,11 @@ import java.time.Instant;
  */
 @Data
 @Entity
-@Table(name = "session")
+@Table(name = "session", indexes = {
+        @Index(name = "idx_ses_token", columnList = "ses_token", unique = true),
+        @Index(name = "idx_ses_created_at", columnList = "ses_created_at"),
+        @Index(name = "idx_ses_revoked_at", columnList = "ses_revoked_at")
+})
 public class Session implements Serializable {
 
     /**
@@ -33,10 +41,13 @@ public class Session implements Serializable {
     private static final long serialVersionUID = 1L;
 
     /**
-     * Identificador de la tupla
+     * Identificador de la tupla, se reserva en bloques de 50 desde la tabla id_generator
+     * para que las inserciones puedan enviarse en lotes
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "session_id")
+    @TableGenerator(name = "session_id", table = "id_generator", pkColumnName = "gen_name",
+            valueColumnName = "gen_next_value", pkColumnValue = "session", allocationSize = 50)
     @Column(name = "ses_id", nullable = false)
     private Integer id;
 
@@ -47,6 +58,8 @@ public class Session implements Serializable {
     @ManyToOne(fetch = FetchType.LAZY, targetEntity = User.class, optional = false)
     @JoinColumn(name = "ses_user_id", nullable = false)
     @JsonBackReference
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private User user;
 
     /**
@@ -61,4 +74,10 @@ public class Session implements Serializable {
     @Column(name = "ses_created_at", nullable = false)
     private Instant createdAt;
 
+    /**
+     * Fecha y hora en que se revocó un token firmado, null en las sesiones en memoria
+     */
+    @Column(name = "ses_revoked_at")
+    private Instant revokedAt;
+
 }
\ No newline at end of file
@@ -19,6 +19,7 @@ import javax.persistence.JoinColumn;
 import javax.persistence.OneToMany;
 import javax.persistence.ManyToOne;
 import javax.persistence.Table;
+import javax.persistence.TableGenerator;
 import java.io.Serializable;
 import java.time.Instant;
 import java.util.LinkedHashSet;
@@ -46,10 +47,13 @@ public class Subcategory implements Serializable {
     private static final long serialVersionUID = 1L;
 
     /**
-     * Identificador de la tupla
+     * Identificador de la tupla, se reserva en bloques de 50 desde la tabla id_generator
+     * para que las inserciones puedan enviarse en lotes
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "subcategory_id")
+    @TableGenerator(name = "subcategory_id", table = "id_generator", pkColumnName = "gen_name",
+            valueColumnName = "gen_next_value", pkColumnValue = "subcategory", allocationSize = 50)
     @Column(name = "scat_id", nullable = false)
     private Integer id;
 
@@ -60,6 +64,7 @@ public class Subcategory implements Serializable {
     @ManyToOne(fetch = FetchType.LAZY, targetEntity = Category.class, optional = false)
     @JoinColumn(name = "scat_category_id", nullable = false)
     @JsonBackReference
+    @ToString.Exclude
     private Category category;
 
     /**
@@ -79,11 +84,12 @@ public class Subcategory implements Serializable {
      * (una subcategoria puede tener muchos items)
      */
     @OneToMany(
-            fetch = FetchType.EAGER,
+            fetch = FetchType.LAZY,
             targetEntity = Item.class,
             cascade = CascadeType.REMOVE,
             mappedBy = "subcategory")
     @JsonIgnore
+    @ToString.Exclude
     private Set<Item> items = new LinkedHashSet<>();
 
 }
\ No newline at end of file
@@ -14,8 +14,10 @@ import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
+import javax.persistence.TableGenerator;
 import java.io.Serializable;
 import java.time.Instant;
 import java.util.LinkedHashSet;
@@ -34,7 +36,9 @@ import java.util.Set;
 @NoArgsConstructor
 @ToString
 @Entity
-@Table(name = "user")
+@Table(name = "user", indexes = {
+        @Index(name = "idx_usr_username", columnList = "usr_username", unique = true)
+})
 public class User implements Serializable {
 
     /**
@@ -43,10 +47,13 @@ public class User implements Serializable {
     private static final long serialVersionUID = 1L;
 
     /**
-     * Identificador de la tupla
+     * Identificador de la tupla, se reserva en bloques de 50 desde la tabla id_generator
+     * para que las inserciones puedan enviarse en lotes
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "user_id")
+    @TableGenerator(name = "user_id", table = "id_generator", pkColumnName = "gen_name",
+            valueColumnName = "gen_next_value", pkColumnValue = "user", allocationSize = 50)
     @Column(name = "usr_id", nullable = false)
     private Integer id;
 
@@ -57,9 +64,9 @@ public class User implements Serializable {
     private String username;
 
     /**
-     * Contraseña del usuario
+     * Contraseña del usuario, en md5 o PBKDF2 (ver PasswordHash)
      */
-    @Column(name = "usr_password", nullable = false, length = 32)
+    @Column(name = "usr_password", nullable = false, length = 255)
     private String password;
 
     /**
@@ -79,11 +86,12 @@ public class User implements Serializable {
      * (una usuario puede tener muchas descargas)
      */
     @OneToMany(
-            fetch = FetchType.EAGER,
+            fetch = FetchType.LAZY,
             targetEntity = Download.class,
             cascade = CascadeType.REMOVE,
             mappedBy = "user")
     @JsonIgnore
+    @ToString.Exclude
     private Set<Download> downloads = new LinkedHashSet<>();
 
     /**
@@ -91,11 +99,12 @@ public class User implements Serializable {
      * (un usuario puede tener muchas sesiones)
      */
     @OneToMany(
-            fetch = FetchType.EAGER,
+            fetch = FetchType.LAZY,
             targetEntity = Session.class,
             cascade = CascadeType.REMOVE,
             mappedBy = "user")
     @JsonIgnore
+    @ToString.Exclude
     private Set<Session> sessions = new LinkedHashSet<>();
 
 }
\ No newline at end of file
@@ -0,0 +1,35 @@
+package com.sofka.megawarez.domain.projection;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.Instant;
+
+/**
+ * Vista inmutable de una categoría
+ *
+ * @version 1.0.0 2022-04-05
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class CategoryView {
+
+    /**
+     * Identificador de la categoría
+     */
+    private final Integer id;
+
+    /**
+     * Nombre de la categoría
+     */
+    private final String name;
+
+    /**
+     * Fecha y hora en que la categoría fue creada
+     */
+    private final Instant createdAt;
+}
@@ -0,0 +1,63 @@
+package com.sofka.megawarez.domain.projection;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.Instant;
+
+/**
+ * Descarga como valores planos, usada en las inserciones por lotes donde no se cargan
+ * las entidades del usuario ni del item
+ *
+ * @version 1.0.0 2022-04-06
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class DownloadRecord implements DownloadSummary {
+
+    /**
+     * Identificador de la descarga, null mientras no ha sido escrita en la base de datos
+     */
+    private final Integer id;
+
+    /**
+     * Identificador del usuario que realizó la descarga
+     */
+    private final Integer userId;
+
+    /**
+     * Identificador del item descargado
+     */
+    private final Integer itemId;
+
+    /**
+     * Fecha y hora de la descarga
+     */
+    private final Instant createdAt;
+
+    /**
+     * Indica que la descarga ya existía y se devuelve por repetirse su llave de idempotencia
+     */
+    @JsonIgnore
+    private final boolean replayed;
+
+    /**
+     * Constructor de una descarga nueva
+     *
+     * @param id Identificador de la descarga, puede ser null
+     * @param userId Identificador del usuario
+     * @param itemId Identificador del item
+     * @param createdAt Fecha y hora de la descarga
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public DownloadRecord(Integer id, Integer userId, Integer itemId, Instant createdAt) {
+        this(id, userId, itemId, createdAt, false);
+    }
+}
@@ -0,0 +1,42 @@
+package com.sofka.megawarez.domain.projection;
+
+import java.time.Instant;
+
+/**
+ * Proyección de solo lectura de una descarga, expone los identificadores del usuario y del item
+ * sin cargar sus entidades
+ *
+ * @version 1.0.0 2022-04-05
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+public interface DownloadSummary {
+
+    /**
+     * Identificador de la descarga
+     *
+     * @return Identificador
+     */
+    Integer getId();
+
+    /**
+     * Identificador del usuario que realizó la descarga
+     *
+     * @return Identificador del usuario
+     */
+    Integer getUserId();
+
+    /**
+     * Identificador del item descargado
+     *
+     * @return Identificador del item
+     */
+    Integer getItemId();
+
+    /**
+     * Fecha y hora de la descarga
+     *
+     * @return Fecha y hora
+     */
+    Instant getCreatedAt();
+}
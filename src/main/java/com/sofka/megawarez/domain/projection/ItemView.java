@@ -0,0 +1,40 @@
+package com.sofka.megawarez.domain.projection;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.Instant;
+
+/**
+ * Vista inmutable de un item, contiene únicamente las columnas necesarias para los listados
+ *
+ * @version 1.0.0 2022-04-05
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class ItemView {
+
+    /**
+     * Identificador del item
+     */
+    private final Integer id;
+
+    /**
+     * Nombre del item
+     */
+    private final String name;
+
+    /**
+     * Fecha y hora en que el item fue creado
+     */
+    private final Instant createdAt;
+
+    /**
+     * Identificador de la subcategoría a la que pertenece el item
+     */
+    private final Integer subcategoryId;
+}
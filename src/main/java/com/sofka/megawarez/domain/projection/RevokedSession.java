@@ -0,0 +1,34 @@
+package com.sofka.megawarez.domain.projection;
+
+import java.time.Instant;
+
+/**
+ * Proyección de solo lectura de la revocación de un token firmado
+ *
+ * @version 1.0.0 2022-04-06
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+public interface RevokedSession {
+
+    /**
+     * Identificador del token revocado (16 caracteres hexadecimales)
+     *
+     * @return Identificador del token
+     */
+    String getToken();
+
+    /**
+     * Fecha y hora en que se emitió el token
+     *
+     * @return Fecha y hora
+     */
+    Instant getCreatedAt();
+
+    /**
+     * Fecha y hora en que se revocó el token
+     *
+     * @return Fecha y hora
+     */
+    Instant getRevokedAt();
+}
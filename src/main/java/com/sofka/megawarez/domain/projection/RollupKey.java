@@ -0,0 +1,43 @@
+package com.sofka.megawarez.domain.projection;
+
+import com.sofka.megawarez.utility.Granularity;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.Instant;
+
+/**
+ * Llave de una fila de download_rollup: granularidad, cubeta, item y subcategoría del item
+ *
+ * @version 1.0.0 2022-04-06
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+@Getter
+@ToString
+@EqualsAndHashCode
+@AllArgsConstructor
+public class RollupKey {
+
+    /**
+     * Granularidad de la cubeta
+     */
+    private final Granularity granularity;
+
+    /**
+     * Inicio de la cubeta
+     */
+    private final Instant bucket;
+
+    /**
+     * Identificador del item
+     */
+    private final Integer itemId;
+
+    /**
+     * Identificador de la subcategoría del item
+     */
+    private final Integer subcategoryId;
+}
@@ -0,0 +1,30 @@
+package com.sofka.megawarez.domain.projection;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.Instant;
+
+/**
+ * Punto de una serie de tiempo de descargas: inicio de la cubeta y cantidad de descargas
+ *
+ * @version 1.0.0 2022-04-06
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class RollupPoint {
+
+    /**
+     * Inicio de la cubeta
+     */
+    private final Instant bucket;
+
+    /**
+     * Cantidad de descargas en la cubeta
+     */
+    private final long downloads;
+}
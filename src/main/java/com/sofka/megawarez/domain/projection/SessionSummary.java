@@ -0,0 +1,34 @@
+package com.sofka.megawarez.domain.projection;
+
+import java.time.Instant;
+
+/**
+ * Proyección de solo lectura de una sesión, expone el identificador del usuario sin cargar su entidad
+ *
+ * @version 1.0.0 2022-04-06
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+public interface SessionSummary {
+
+    /**
+     * Token de la sesión
+     *
+     * @return Token
+     */
+    String getToken();
+
+    /**
+     * Identificador del usuario de la sesión
+     *
+     * @return Identificador del usuario
+     */
+    Integer getUserId();
+
+    /**
+     * Fecha y hora en que se creó la sesión
+     *
+     * @return Fecha y hora
+     */
+    Instant getCreatedAt();
+}
@@ -0,0 +1,40 @@
+package com.sofka.megawarez.domain.projection;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.Instant;
+
+/**
+ * Vista inmutable de una subcategoría
+ *
+ * @version 1.0.0 2022-04-05
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+@Getter
+@ToString
+@AllArgsConstructor
+public class SubcategoryView {
+
+    /**
+     * Identificador de la subcategoría
+     */
+    private final Integer id;
+
+    /**
+     * Identificador de la categoría a la que pertenece la subcategoría
+     */
+    private final Integer categoryId;
+
+    /**
+     * Nombre de la subcategoría
+     */
+    private final String name;
+
+    /**
+     * Fecha y hora en que la subcategoría fue creada
+     */
+    private final Instant createdAt;
+}
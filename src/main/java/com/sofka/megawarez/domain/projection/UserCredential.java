@@ -0,0 +1,25 @@
+package com.sofka.megawarez.domain.projection;
+
+/**
+ * Proyección de solo lectura de las credenciales de un usuario
+ *
+ * @version 1.0.0 2022-04-06
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+public interface UserCredential {
+
+    /**
+     * Identificador del usuario
+     *
+     * @return Identificador del usuario
+     */
+    Integer getId();
+
+    /**
+     * Contraseña guardada del usuario (ver PasswordHash)
+     *
+     * @return Contraseña
+     */
+    String getPassword();
+}
@@ -1,6 +1,7 @@
 package com.sofka.megawarez.repository;
 
 import com.sofka.megawarez.domain.Category;
+import com.sofka.megawarez.domain.projection.CategoryView;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -26,11 +27,23 @@ public interface CategoryRepository extends JpaRepository<Category, Integer> {
      * @author Lorena Castro <Lcastro0398@gmail.com>
      * @since 1.0.0
      */
-    @Query(value = "SELECT cat " +
+    @Query(value = "SELECT new com.sofka.megawarez.domain.projection.CategoryView(cat.id, cat.name, cat.createdAt) " +
             "FROM Category cat " +
             "WHERE (cat.name LIKE :data%) " +
             "ORDER BY cat.name ASC")
-    public List<Category> findByName(@Param("data") String data);
+    public List<CategoryView> findByName(@Param("data") String data);
+
+    /**
+     * Selecciona todas las categorías como vistas de solo lectura
+     *
+     * @return Listado de categorías
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Query(value = "SELECT new com.sofka.megawarez.domain.projection.CategoryView(cat.id, cat.name, cat.createdAt) " +
+            "FROM Category cat")
+    public List<CategoryView> findAllViews();
 
     /**
      * Actualiza el nombre de una categoría
@@ -0,0 +1,166 @@
+package com.sofka.megawarez.repository;
+
+import com.sofka.megawarez.domain.projection.DownloadRecord;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Repositorio JDBC para escribir descargas por lotes, sin pasar por el contexto de persistencia
+ *
+ * @version 1.0.0 2022-04-06
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+@Repository
+public class DownloadBatchRepository {
+
+    /**
+     * Sentencia de inserción de una descarga
+     */
+    private static final String INSERT = "INSERT INTO download (dwn_user_id, dwn_item_id, dwn_created_at) VALUES (?, ?, ?)";
+
+    /**
+     * Plantilla JDBC
+     */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Inserta las descargas en un solo lote JDBC. El lote es atómico: con rewriteBatchedStatements
+     * el driver puede partirlo en varias sentencias y sin transacción una falla dejaría escritas
+     * las primeras
+     *
+     * @param downloads Descargas a insertar
+     * @return Cantidad de filas afectadas por cada sentencia del lote
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Transactional
+    public int[] insertAll(List<DownloadRecord> downloads) {
+        return jdbcTemplate.batchUpdate(INSERT, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement statement, int index) throws SQLException {
+                var download = downloads.get(index);
+                statement.setInt(1, download.getUserId());
+                statement.setInt(2, download.getItemId());
+                statement.setTimestamp(3, Timestamp.from(download.getCreatedAt()));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return downloads.size();
+            }
+        });
+    }
+
+    /**
+     * Inserta una sola descarga
+     *
+     * @param download Descarga a insertar
+     * @return Cantidad de filas afectadas
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public int insert(DownloadRecord download) {
+        return jdbcTemplate.update(INSERT,
+                download.getUserId(), download.getItemId(), Timestamp.from(download.getCreatedAt()));
+    }
+
+    /**
+     * Devuelve cuáles de los identificadores de usuario existen, en una sola consulta
+     *
+     * @param ids Identificadores a verificar
+     * @return Identificadores existentes
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public Set<Integer> findExistingUserIds(Collection<Integer> ids) {
+        return findExisting("SELECT usr_id FROM user WHERE usr_id IN ", ids);
+    }
+
+    /**
+     * Devuelve cuáles de los identificadores de item existen, en una sola consulta
+     *
+     * @param ids Identificadores a verificar
+     * @return Identificadores existentes
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public Set<Integer> findExistingItemIds(Collection<Integer> ids) {
+        return findExisting("SELECT itm_id FROM item WHERE itm_id IN ", ids);
+    }
+
+    /**
+     * Devuelve la posición de un registro de descargas en disco hasta la que ya se escribió en la tabla
+     *
+     * @param name Nombre del registro (uno por directorio de segmentos)
+     * @return Posición global (cantidad de registros ya escritos)
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public long findLogCheckpoint(String name) {
+        jdbcTemplate.update("INSERT IGNORE INTO download_log_checkpoint (dlc_name, dlc_offset) VALUES (?, 0)", name);
+        return jdbcTemplate.queryForObject("SELECT dlc_offset FROM download_log_checkpoint WHERE dlc_name = ?",
+                Long.class, name);
+    }
+
+    /**
+     * Avanza la posición del registro de descargas en disco solo si sigue en la posición esperada,
+     * debe hacerse en la misma transacción que la inserción de los registros para que cada uno se
+     * escriba exactamente una vez
+     *
+     * @param name Nombre del registro (uno por directorio de segmentos)
+     * @param expected Posición que se leyó o guardó por última vez
+     * @param offset Posición global nueva (cantidad de registros ya escritos)
+     * @throws OptimisticLockingFailureException si otro proceso cambió la posición, la transacción
+     * debe deshacerse
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public void updateLogCheckpoint(String name, long expected, long offset) {
+        var updated = jdbcTemplate.update(
+                "UPDATE download_log_checkpoint SET dlc_offset = ? WHERE dlc_name = ? AND dlc_offset = ?",
+                offset, name, expected);
+        if (updated != 1) {
+            throw new OptimisticLockingFailureException(
+                    "El punto de control del registro de descargas ya no está en " + expected);
+        }
+    }
+
+    /**
+     * Ejecuta una consulta de identificadores con la lista IN armada para la colección recibida
+     *
+     * @param query Consulta terminada en IN
+     * @param ids Identificadores a verificar
+     * @return Identificadores existentes
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private Set<Integer> findExisting(String query, Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return Set.of();
+        }
+        var placeholders = ids.stream().map(id -> "?").collect(Collectors.joining(", ", "(", ")"));
+        return new HashSet<>(jdbcTemplate.queryForList(query + placeholders, Integer.class, ids.toArray()));
+    }
+}
@@ -0,0 +1,72 @@
+package com.sofka.megawarez.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Repositorio JDBC de la tabla download_count, contador de descargas por item
+ *
+ * @version 1.0.0 2022-04-06
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+@Repository
+public class DownloadCountRepository {
+
+    /**
+     * Plantilla JDBC
+     */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Devuelve todos los contadores
+     *
+     * @return Mapa de identificador de item a cantidad de descargas
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public Map<Integer, Long> findAll() {
+        var counts = new HashMap<Integer, Long>();
+        jdbcTemplate.query("SELECT dcn_item_id, dcn_count FROM download_count", resultSet -> {
+            counts.put(resultSet.getInt(1), resultSet.getLong(2));
+        });
+        return counts;
+    }
+
+    /**
+     * Suma los incrementos a los contadores en un solo lote, creando las filas que no existan
+     *
+     * @param deltas Mapa de identificador de item a cantidad de descargas a sumar
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public void increment(Map<Integer, Long> deltas) {
+        var arguments = new ArrayList<Object[]>(deltas.size());
+        deltas.forEach((itemId, delta) -> arguments.add(new Object[] {itemId, delta}));
+        jdbcTemplate.batchUpdate("INSERT INTO download_count (dcn_item_id, dcn_count) VALUES (?, ?) " +
+                "ON DUPLICATE KEY UPDATE dcn_count = dcn_count + VALUES(dcn_count)", arguments);
+    }
+
+    /**
+     * Borra los contadores de varios items en un solo lote
+     *
+     * @param itemIds Identificadores de los items
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public void delete(Collection<Integer> itemIds) {
+        var arguments = new ArrayList<Object[]>(itemIds.size());
+        itemIds.forEach(itemId -> arguments.add(new Object[] {itemId}));
+        jdbcTemplate.batchUpdate("DELETE FROM download_count WHERE dcn_item_id = ?", arguments);
+    }
+}
@@ -0,0 +1,94 @@
+package com.sofka.megawarez.repository;
+
+import com.sofka.megawarez.domain.projection.DownloadRecord;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Repositorio JDBC de las llaves de idempotencia de la creación de descargas (download_idempotency)
+ *
+ * @version 1.0.0 2022-04-06
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+@Repository
+public class DownloadIdempotencyRepository {
+
+    /**
+     * Plantilla JDBC
+     */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Registra una llave con la descarga que creó. La llave primaria garantiza que solo una
+     * petición con la misma llave lo logre, aunque lleguen a la vez o a instancias distintas
+     *
+     * @param key Llave con alcance de usuario
+     * @param download Descarga creada, su identificador puede ser null
+     * @return false si la llave ya estaba registrada
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public boolean insert(String key, DownloadRecord download) {
+        try {
+            jdbcTemplate.update("INSERT INTO download_idempotency " +
+                            "(dik_key, dik_user_id, dik_item_id, dik_download_id, dik_created_at) VALUES (?, ?, ?, ?, ?)",
+                    key, download.getUserId(), download.getItemId(), download.getId(),
+                    Timestamp.from(download.getCreatedAt()));
+            return true;
+        } catch (DuplicateKeyException exception) {
+            return false;
+        }
+    }
+
+    /**
+     * Busca la descarga registrada con una llave
+     *
+     * @param key Llave con alcance de usuario
+     * @return Descarga registrada
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public Optional<DownloadRecord> find(String key) {
+        return jdbcTemplate.query("SELECT dik_download_id, dik_user_id, dik_item_id, dik_created_at " +
+                        "FROM download_idempotency WHERE dik_key = ?",
+                (resultSet, row) -> new DownloadRecord(
+                        resultSet.getObject(1, Integer.class), resultSet.getInt(2), resultSet.getInt(3),
+                        resultSet.getTimestamp(4).toInstant()),
+                key).stream().findFirst();
+    }
+
+    /**
+     * Borra una llave, se usa cuando la descarga no se pudo encolar
+     *
+     * @param key Llave con alcance de usuario
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public void delete(String key) {
+        jdbcTemplate.update("DELETE FROM download_idempotency WHERE dik_key = ?", key);
+    }
+
+    /**
+     * Borra las llaves registradas antes del momento indicado
+     *
+     * @param before Momento límite (excluido)
+     * @return Cantidad de llaves borradas
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public int deleteBefore(Instant before) {
+        return jdbcTemplate.update("DELETE FROM download_idempotency WHERE dik_created_at < ?", Timestamp.from(before));
+    }
+}
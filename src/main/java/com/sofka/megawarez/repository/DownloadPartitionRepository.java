@@ -0,0 +1,201 @@
+package com.sofka.megawarez.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.ResultSet;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Repositorio JDBC de las particiones mensuales de la tabla download (ver db/download_partitioning.sql)
+ *
+ * @version 1.0.0 2022-04-06
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+@Repository
+public class DownloadPartitionRepository {
+
+    /**
+     * Partición que recibe las descargas posteriores al último mes creado
+     */
+    public static final String FUTURE = "p_future";
+
+    /**
+     * Prefijo de las tablas con una partición separada de download a la espera de ser archivada
+     */
+    public static final String ARCHIVE_TABLE_PREFIX = "download_archive_";
+
+    /**
+     * Formato del nombre de las particiones mensuales
+     */
+    private static final DateTimeFormatter MONTH_NAME = DateTimeFormatter.ofPattern("'p'yyyyMM");
+
+    /**
+     * Nombres válidos de particiones mensuales y de tablas de archivo, se concatenan en el SQL
+     */
+    private static final Pattern MONTH_PARTITION = Pattern.compile("p\\d{6}");
+    private static final Pattern ARCHIVE_TABLE = Pattern.compile(ARCHIVE_TABLE_PREFIX + "p\\d{6}");
+
+    /**
+     * Plantilla JDBC
+     */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Devuelve los nombres de las particiones de download en orden, vacío si no está particionada
+     *
+     * @return Nombres de las particiones
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public List<String> findPartitionNames() {
+        return jdbcTemplate.queryForList("SELECT PARTITION_NAME FROM information_schema.PARTITIONS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'download' AND PARTITION_NAME IS NOT NULL " +
+                "ORDER BY PARTITION_ORDINAL_POSITION", String.class);
+    }
+
+    /**
+     * Crea las particiones de los meses indicados separándolas de p_future. Los meses deben ser
+     * consecutivos y posteriores al último mes existente; p_future no debería tener filas de esos
+     * meses, así que la operación no copia datos
+     *
+     * @param months Meses a crear, en orden
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public void addMonths(List<YearMonth> months) {
+        var partitions = months.stream()
+                .map(month -> "PARTITION " + partitionName(month) + " VALUES LESS THAN ('" +
+                        month.plusMonths(1).atDay(1) + "')")
+                .collect(Collectors.joining(", "));
+        jdbcTemplate.execute("ALTER TABLE download REORGANIZE PARTITION " + FUTURE + " INTO (" +
+                partitions + ", PARTITION " + FUTURE + " VALUES LESS THAN (MAXVALUE))");
+    }
+
+    /**
+     * Separa una partición mensual de download: la intercambia por una tabla vacía con la misma
+     * estructura y luego borra la partición, que quedó vacía. El intercambio es atómico, así que
+     * ninguna descarga de ese mes queda fuera de la tabla de archivo
+     *
+     * @param partition Nombre de la partición
+     * @return Nombre de la tabla de archivo con las descargas de la partición
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public String detach(String partition) {
+        var table = ARCHIVE_TABLE_PREFIX + checkPartition(partition);
+        jdbcTemplate.execute("CREATE TABLE " + table + " LIKE download");
+        jdbcTemplate.execute("ALTER TABLE " + table + " REMOVE PARTITIONING");
+        jdbcTemplate.execute("ALTER TABLE download EXCHANGE PARTITION " + partition + " WITH TABLE " + table);
+        jdbcTemplate.execute("ALTER TABLE download DROP PARTITION " + partition);
+        return table;
+    }
+
+    /**
+     * Devuelve las tablas de archivo que aún no se han exportado, por ejemplo si la aplicación se
+     * detuvo durante una exportación
+     *
+     * @return Nombres de las tablas de archivo
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public List<String> findArchiveTables() {
+        return jdbcTemplate.queryForList("SELECT TABLE_NAME FROM information_schema.TABLES " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME LIKE ? ORDER BY TABLE_NAME",
+                String.class, ARCHIVE_TABLE_PREFIX.replace("_", "\\_") + "%");
+    }
+
+    /**
+     * Recorre las descargas de una tabla de archivo a medida que se leen, sin cargarlas en memoria
+     *
+     * @param table Nombre de la tabla de archivo
+     * @param handler Acción a ejecutar por cada fila (dwn_id, dwn_user_id, dwn_item_id, dwn_created_at)
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public void stream(String table, RowCallbackHandler handler) {
+        checkArchiveTable(table);
+        jdbcTemplate.query(connection -> {
+            var statement = connection.prepareStatement(
+                    "SELECT dwn_id, dwn_user_id, dwn_item_id, dwn_created_at FROM " + table + " ORDER BY dwn_id",
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            // Con el driver de MySQL este valor hace que las filas se lean a medida que llegan
+            statement.setFetchSize(Integer.MIN_VALUE);
+            return statement;
+        }, handler);
+    }
+
+    /**
+     * Borra una tabla de archivo ya exportada
+     *
+     * @param table Nombre de la tabla de archivo
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public void dropArchiveTable(String table) {
+        jdbcTemplate.execute("DROP TABLE " + checkArchiveTable(table));
+    }
+
+    /**
+     * Nombre de la partición de un mes
+     *
+     * @param month Mes
+     * @return Nombre de la partición (pAAAAMM)
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public static String partitionName(YearMonth month) {
+        return MONTH_NAME.format(month);
+    }
+
+    /**
+     * Mes de una partición mensual
+     *
+     * @param partition Nombre de la partición
+     * @return Mes, null si no es una partición mensual
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public static YearMonth partitionMonth(String partition) {
+        if (partition == null || !MONTH_PARTITION.matcher(partition).matches()) {
+            return null;
+        }
+        return YearMonth.parse(partition, MONTH_NAME);
+    }
+
+    /**
+     * Verifica que el nombre sea de una partición mensual antes de concatenarlo en el SQL
+     */
+    private static String checkPartition(String partition) {
+        if (!MONTH_PARTITION.matcher(partition).matches()) {
+            throw new IllegalArgumentException("Partición no válida: " + partition);
+        }
+        return partition;
+    }
+
+    /**
+     * Verifica que el nombre sea de una tabla de archivo antes de concatenarlo en el SQL
+     */
+    private static String checkArchiveTable(String table) {
+        if (!ARCHIVE_TABLE.matcher(table).matches()) {
+            throw new IllegalArgumentException("Tabla de archivo no válida: " + table);
+        }
+        return table;
+    }
+}
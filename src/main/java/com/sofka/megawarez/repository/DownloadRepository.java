@@ -3,10 +3,13 @@ package com.sofka.megawarez.repository;
 import com.sofka.megawarez.domain.Download;
 import com.sofka.megawarez.domain.Item;
 import com.sofka.megawarez.domain.User;
+import com.sofka.megawarez.domain.projection.DownloadSummary;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
 import java.util.List;
 
 /**
@@ -45,4 +48,128 @@ public interface DownloadRepository extends JpaRepository<Download, Integer> {
             "FROM Download dwn " +
             "WHERE dwn.item = :item")
     public List<Download> findAllByItem(@Param(value = "item") Item item);
+
+    /**
+     * Selecciona la primera página de descargas de un item, de la más reciente a la más antigua
+     *
+     * @param itemId Identificador del item
+     * @param since Fecha mínima de las descargas, limita las particiones consultadas
+     * @param pageable Tamaño de página
+     * @return Listado de descargas encontradas
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Query(value = "SELECT dwn.id AS id, dwn.user.id AS userId, dwn.item.id AS itemId, dwn.createdAt AS createdAt " +
+            "FROM Download dwn " +
+            "WHERE dwn.item.id = :itemId AND dwn.createdAt >= :since " +
+            "ORDER BY dwn.createdAt DESC, dwn.id DESC")
+    public List<DownloadSummary> findFirstPageByItemId(
+            @Param(value = "itemId") Integer itemId,
+            @Param(value = "since") Instant since,
+            Pageable pageable);
+
+    /**
+     * Selecciona la página de descargas de un item posterior al cursor (fecha, id)
+     *
+     * @param itemId Identificador del item
+     * @param since Fecha mínima de las descargas, limita las particiones consultadas
+     * @param createdAt Fecha de la última descarga entregada
+     * @param id Identificador de la última descarga entregada
+     * @param pageable Tamaño de página
+     * @return Listado de descargas encontradas
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Query(value = "SELECT dwn.id AS id, dwn.user.id AS userId, dwn.item.id AS itemId, dwn.createdAt AS createdAt " +
+            "FROM Download dwn " +
+            "WHERE dwn.item.id = :itemId AND dwn.createdAt >= :since " +
+            "AND (dwn.createdAt < :createdAt OR (dwn.createdAt = :createdAt AND dwn.id < :id)) " +
+            "ORDER BY dwn.createdAt DESC, dwn.id DESC")
+    public List<DownloadSummary> findNextPageByItemId(
+            @Param(value = "itemId") Integer itemId,
+            @Param(value = "since") Instant since,
+            @Param(value = "createdAt") Instant createdAt,
+            @Param(value = "id") Integer id,
+            Pageable pageable);
+
+    /**
+     * Cuenta las descargas de un item desde una fecha sin cargarlas
+     *
+     * @param itemId Identificador del item
+     * @param since Fecha mínima de las descargas, limita las particiones consultadas
+     * @return Cantidad de descargas
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Query(value = "SELECT COUNT(dwn) " +
+            "FROM Download dwn " +
+            "WHERE dwn.item.id = :itemId AND dwn.createdAt >= :since")
+    public long countByItemId(
+            @Param(value = "itemId") Integer itemId,
+            @Param(value = "since") Instant since);
+
+    /**
+     * Selecciona la primera página de descargas de un usuario, de la más reciente a la más antigua
+     *
+     * @param userId Identificador del usuario
+     * @param since Fecha mínima de las descargas, limita las particiones consultadas
+     * @param pageable Tamaño de página
+     * @return Listado de descargas encontradas
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Query(value = "SELECT dwn.id AS id, dwn.user.id AS userId, dwn.item.id AS itemId, dwn.createdAt AS createdAt " +
+            "FROM Download dwn " +
+            "WHERE dwn.user.id = :userId AND dwn.createdAt >= :since " +
+            "ORDER BY dwn.createdAt DESC, dwn.id DESC")
+    public List<DownloadSummary> findFirstPageByUserId(
+            @Param(value = "userId") Integer userId,
+            @Param(value = "since") Instant since,
+            Pageable pageable);
+
+    /**
+     * Selecciona la página de descargas de un usuario posterior al cursor (fecha, id)
+     *
+     * @param userId Identificador del usuario
+     * @param since Fecha mínima de las descargas, limita las particiones consultadas
+     * @param createdAt Fecha de la última descarga entregada
+     * @param id Identificador de la última descarga entregada
+     * @param pageable Tamaño de página
+     * @return Listado de descargas encontradas
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Query(value = "SELECT dwn.id AS id, dwn.user.id AS userId, dwn.item.id AS itemId, dwn.createdAt AS createdAt " +
+            "FROM Download dwn " +
+            "WHERE dwn.user.id = :userId AND dwn.createdAt >= :since " +
+            "AND (dwn.createdAt < :createdAt OR (dwn.createdAt = :createdAt AND dwn.id < :id)) " +
+            "ORDER BY dwn.createdAt DESC, dwn.id DESC")
+    public List<DownloadSummary> findNextPageByUserId(
+            @Param(value = "userId") Integer userId,
+            @Param(value = "since") Instant since,
+            @Param(value = "createdAt") Instant createdAt,
+            @Param(value = "id") Integer id,
+            Pageable pageable);
+
+    /**
+     * Cuenta las descargas de un usuario desde una fecha sin cargarlas
+     *
+     * @param userId Identificador del usuario
+     * @param since Fecha mínima de las descargas, limita las particiones consultadas
+     * @return Cantidad de descargas
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Query(value = "SELECT COUNT(dwn) " +
+            "FROM Download dwn " +
+            "WHERE dwn.user.id = :userId AND dwn.createdAt >= :since")
+    public long countByUserId(
+            @Param(value = "userId") Integer userId,
+            @Param(value = "since") Instant since);
 }
\ No newline at end of file
@@ -0,0 +1,189 @@
+package com.sofka.megawarez.repository;
+
+import com.sofka.megawarez.domain.projection.RollupKey;
+import com.sofka.megawarez.domain.projection.RollupPoint;
+import com.sofka.megawarez.utility.Granularity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Repositorio JDBC de los rollups de descargas (download_rollup) y del estado de su backfill
+ *
+ * @version 1.0.0 2022-04-06
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+@Repository
+public class DownloadRollupRepository {
+
+    /**
+     * Nombre del estado con el mayor dwn_id existente al activar los rollups
+     */
+    public static final String STATE_WATERMARK = "watermark";
+
+    /**
+     * Nombre del estado con el último dwn_id agregado por el backfill
+     */
+    public static final String STATE_BACKFILLED = "backfilled";
+
+    /**
+     * Plantilla JDBC
+     */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Suma los conteos a sus cubetas en un solo lote, creando las filas que no existan
+     *
+     * @param deltas Conteos por llave de rollup
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public void increment(Map<RollupKey, Long> deltas) {
+        var arguments = new ArrayList<Object[]>(deltas.size());
+        deltas.forEach((key, delta) -> arguments.add(new Object[] {
+                key.getGranularity().getCode(), key.getItemId(), Timestamp.from(key.getBucket()),
+                key.getSubcategoryId(), delta}));
+        jdbcTemplate.batchUpdate("INSERT INTO download_rollup " +
+                "(dro_granularity, dro_item_id, dro_bucket, dro_subcategory_id, dro_count) VALUES (?, ?, ?, ?, ?) " +
+                "ON DUPLICATE KEY UPDATE dro_count = dro_count + VALUES(dro_count)", arguments);
+    }
+
+    /**
+     * Serie de tiempo de las descargas de un item
+     *
+     * @param granularity Granularidad de las cubetas
+     * @param itemId Identificador del item
+     * @param from Inicio del rango (incluido)
+     * @param to Fin del rango (incluido)
+     * @return Puntos de la serie con descargas, en orden cronológico
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public List<RollupPoint> findByItem(Granularity granularity, Integer itemId, Instant from, Instant to) {
+        return jdbcTemplate.query("SELECT dro_bucket, dro_count FROM download_rollup " +
+                        "WHERE dro_granularity = ? AND dro_item_id = ? AND dro_bucket BETWEEN ? AND ? " +
+                        "ORDER BY dro_bucket",
+                (resultSet, row) -> new RollupPoint(resultSet.getTimestamp(1).toInstant(), resultSet.getLong(2)),
+                granularity.getCode(), itemId, Timestamp.from(from), Timestamp.from(to));
+    }
+
+    /**
+     * Serie de tiempo de las descargas de todos los items de una subcategoría
+     *
+     * @param granularity Granularidad de las cubetas
+     * @param subcategoryId Identificador de la subcategoría
+     * @param from Inicio del rango (incluido)
+     * @param to Fin del rango (incluido)
+     * @return Puntos de la serie con descargas, en orden cronológico
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public List<RollupPoint> findBySubcategory(Granularity granularity, Integer subcategoryId, Instant from, Instant to) {
+        return jdbcTemplate.query("SELECT dro_bucket, SUM(dro_count) FROM download_rollup " +
+                        "WHERE dro_granularity = ? AND dro_subcategory_id = ? AND dro_bucket BETWEEN ? AND ? " +
+                        "GROUP BY dro_bucket ORDER BY dro_bucket",
+                (resultSet, row) -> new RollupPoint(resultSet.getTimestamp(1).toInstant(), resultSet.getLong(2)),
+                granularity.getCode(), subcategoryId, Timestamp.from(from), Timestamp.from(to));
+    }
+
+    /**
+     * Cuenta por minuto, item y subcategoría las descargas de un tramo de identificadores.
+     * Es una lectura consistente sin bloqueos sobre la llave primaria de download
+     *
+     * @param afterId Identificador desde el que inicia el tramo (excluido)
+     * @param upToId Identificador en el que termina el tramo (incluido)
+     * @return Conteos por llave de rollup de granularidad MINUTE
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public Map<RollupKey, Long> countByMinute(long afterId, long upToId) {
+        var counts = new HashMap<RollupKey, Long>();
+        jdbcTemplate.query("SELECT dwn_item_id, itm_subcategory_id, " +
+                "CAST(DATE_FORMAT(dwn_created_at, '%Y-%m-%d %H:%i:00') AS DATETIME) AS minute_bucket, COUNT(*) " +
+                "FROM download JOIN item ON itm_id = dwn_item_id " +
+                "WHERE dwn_id > ? AND dwn_id <= ? " +
+                "GROUP BY dwn_item_id, itm_subcategory_id, minute_bucket", resultSet -> {
+            counts.put(new RollupKey(Granularity.MINUTE, resultSet.getTimestamp(3).toInstant(),
+                    resultSet.getInt(1), resultSet.getInt(2)), resultSet.getLong(4));
+        }, afterId, upToId);
+        return counts;
+    }
+
+    /**
+     * Cuenta por día las descargas de un item o de un usuario directamente en la tabla download.
+     * Recorre solo el tramo del índice (dueño, fecha) que cae en el rango, sin cargar las descargas
+     *
+     * @param ownerColumn Columna del dueño, dwn_item_id o dwn_user_id
+     * @param ownerId Identificador del item o del usuario
+     * @param from Inicio del rango (incluido)
+     * @param to Fin del rango (incluido)
+     * @return Puntos de la serie con descargas, en orden cronológico
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public List<RollupPoint> countByDay(String ownerColumn, Integer ownerId, Instant from, Instant to) {
+        if (!"dwn_item_id".equals(ownerColumn) && !"dwn_user_id".equals(ownerColumn)) {
+            throw new IllegalArgumentException("Columna no soportada: " + ownerColumn);
+        }
+        return jdbcTemplate.query("SELECT CAST(DATE(dwn_created_at) AS DATETIME) AS day_bucket, COUNT(*) " +
+                        "FROM download WHERE " + ownerColumn + " = ? AND dwn_created_at BETWEEN ? AND ? " +
+                        "GROUP BY day_bucket ORDER BY day_bucket",
+                (resultSet, row) -> new RollupPoint(resultSet.getTimestamp(1).toInstant(), resultSet.getLong(2)),
+                ownerId, Timestamp.from(from), Timestamp.from(to));
+    }
+
+    /**
+     * Registra el estado inicial del backfill si aún no existe: el mayor dwn_id actual como límite
+     * y cero como avance
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public void initState() {
+        jdbcTemplate.update("INSERT IGNORE INTO download_rollup_state (drs_name, drs_value) " +
+                "SELECT ?, COALESCE(MAX(dwn_id), 0) FROM download", STATE_WATERMARK);
+        jdbcTemplate.update("INSERT IGNORE INTO download_rollup_state (drs_name, drs_value) VALUES (?, 0)",
+                STATE_BACKFILLED);
+    }
+
+    /**
+     * Devuelve un valor del estado del backfill
+     *
+     * @param name Nombre del estado
+     * @return Valor
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public long findState(String name) {
+        return jdbcTemplate.queryForObject("SELECT drs_value FROM download_rollup_state WHERE drs_name = ?",
+                Long.class, name);
+    }
+
+    /**
+     * Actualiza un valor del estado del backfill
+     *
+     * @param name Nombre del estado
+     * @param value Valor
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public void updateState(String name, long value) {
+        jdbcTemplate.update("UPDATE download_rollup_state SET drs_value = ? WHERE drs_name = ?", value, name);
+    }
+}
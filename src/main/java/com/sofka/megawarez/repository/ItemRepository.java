@@ -2,12 +2,23 @@ package com.sofka.megawarez.repository;
 
 import com.sofka.megawarez.domain.Item;
 import com.sofka.megawarez.domain.Subcategory;
+import com.sofka.megawarez.domain.projection.ItemView;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
+import javax.persistence.QueryHint;
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Repositorio de la entidad Item
@@ -27,11 +38,12 @@ public interface ItemRepository extends JpaRepository<Item, Integer> {
      * @author Lorena Castro <Lcastro0398@gmail.com>
      * @since 1.0.0
      */
-    @Query(value = "SELECT itm " +
+    @Query(value = "SELECT new com.sofka.megawarez.domain.projection.ItemView(" +
+            "itm.id, itm.name, itm.createdAt, itm.subcategory.id) " +
             "FROM Item itm " +
             "WHERE (itm.name LIKE :data%) " +
             "ORDER BY itm.name ASC")
-    public List<Item> findByName(@Param("data") String data);
+    public List<ItemView> findByName(@Param("data") String data);
 
     /**
      * Selecciona los items de una subcategoría en específico
@@ -42,10 +54,284 @@ public interface ItemRepository extends JpaRepository<Item, Integer> {
      * @author Lorena Castro <Lcastro0398@gmail.com>
      * @since 1.0.0
      */
-    @Query(value = "SELECT itm " +
+    @Query(value = "SELECT new com.sofka.megawarez.domain.projection.ItemView(" +
+            "itm.id, itm.name, itm.createdAt, itm.subcategory.id) " +
             "FROM Item itm " +
             "WHERE itm.subcategory = :subcategory")
-    public List<Item> findAllBySubcategory(@Param(value = "subcategory") Subcategory subcategory);
+    public List<ItemView> findAllBySubcategory(@Param(value = "subcategory") Subcategory subcategory);
+
+    /**
+     * Selecciona todos los items como vistas de solo lectura
+     *
+     * @return Listado de items
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Query(value = "SELECT new com.sofka.megawarez.domain.projection.ItemView(" +
+            "itm.id, itm.name, itm.createdAt, itm.subcategory.id) " +
+            "FROM Item itm")
+    public List<ItemView> findAllViews();
+
+    /**
+     * Selecciona la primera página de items según el orden indicado en el objeto Pageable
+     *
+     * @param pageable Tamaño de página y ordenamiento
+     * @return Listado de items encontrados
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Query(value = "SELECT new com.sofka.megawarez.domain.projection.ItemView(" +
+            "itm.id, itm.name, itm.createdAt, itm.subcategory.id) " +
+            "FROM Item itm")
+    public List<ItemView> findFirstPage(Pageable pageable);
+
+    /**
+     * Selecciona la página de items posterior al cursor (nombre, id) en orden ascendente
+     *
+     * @param name Nombre del último item entregado
+     * @param id Identificador del último item entregado
+     * @param pageable Tamaño de página
+     * @return Listado de items encontrados
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Query(value = "SELECT new com.sofka.megawarez.domain.projection.ItemView(" +
+            "itm.id, itm.name, itm.createdAt, itm.subcategory.id) " +
+            "FROM Item itm " +
+            "WHERE itm.name > :name OR (itm.name = :name AND itm.id > :id) " +
+            "ORDER BY itm.name ASC, itm.id ASC")
+    public List<ItemView> findNextByNameAsc(
+            @Param(value = "name") String name,
+            @Param(value = "id") Integer id,
+            Pageable pageable);
+
+    /**
+     * Selecciona la página de items posterior al cursor (nombre, id) en orden descendente
+     *
+     * @param name Nombre del último item entregado
+     * @param id Identificador del último item entregado
+     * @param pageable Tamaño de página
+     * @return Listado de items encontrados
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Query(value = "SELECT new com.sofka.megawarez.domain.projection.ItemView(" +
+            "itm.id, itm.name, itm.createdAt, itm.subcategory.id) " +
+            "FROM Item itm " +
+            "WHERE itm.name < :name OR (itm.name = :name AND itm.id < :id) " +
+            "ORDER BY itm.name DESC, itm.id DESC")
+    public List<ItemView> findNextByNameDesc(
+            @Param(value = "name") String name,
+            @Param(value = "id") Integer id,
+            Pageable pageable);
+
+    /**
+     * Selecciona la página de items posterior al cursor (fecha de creación, id) en orden ascendente
+     *
+     * @param createdAt Fecha de creación del último item entregado
+     * @param id Identificador del último item entregado
+     * @param pageable Tamaño de página
+     * @return Listado de items encontrados
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Query(value = "SELECT new com.sofka.megawarez.domain.projection.ItemView(" +
+            "itm.id, itm.name, itm.createdAt, itm.subcategory.id) " +
+            "FROM Item itm " +
+            "WHERE itm.createdAt > :createdAt OR (itm.createdAt = :createdAt AND itm.id > :id) " +
+            "ORDER BY itm.createdAt ASC, itm.id ASC")
+    public List<ItemView> findNextByCreatedAtAsc(
+            @Param(value = "createdAt") Instant createdAt,
+            @Param(value = "id") Integer id,
+            Pageable pageable);
+
+    /**
+     * Selecciona la página de items posterior al cursor (fecha de creación, id) en orden descendente
+     *
+     * @param createdAt Fecha de creación del último item entregado
+     * @param id Identificador del último item entregado
+     * @param pageable Tamaño de página
+     * @return Listado de items encontrados
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Query(value = "SELECT new com.sofka.megawarez.domain.projection.ItemView(" +
+            "itm.id, itm.name, itm.createdAt, itm.subcategory.id) " +
+            "FROM Item itm " +
+            "WHERE itm.createdAt < :createdAt OR (itm.createdAt = :createdAt AND itm.id < :id) " +
+            "ORDER BY itm.createdAt DESC, itm.id DESC")
+    public List<ItemView> findNextByCreatedAtDesc(
+            @Param(value = "createdAt") Instant createdAt,
+            @Param(value = "id") Integer id,
+            Pageable pageable);
+
+    /**
+     * Selecciona la primera página de items de una subcategoría según el orden indicado en el objeto Pageable
+     *
+     * @param subcategoryId Identificador de la subcategoría
+     * @param pageable Tamaño de página y ordenamiento
+     * @return Listado de items encontrados
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Query(value = "SELECT new com.sofka.megawarez.domain.projection.ItemView(" +
+            "itm.id, itm.name, itm.createdAt, itm.subcategory.id) " +
+            "FROM Item itm " +
+            "WHERE itm.subcategory.id = :subcategoryId")
+    public List<ItemView> findFirstPageBySubcategory(
+            @Param(value = "subcategoryId") Integer subcategoryId,
+            Pageable pageable);
+
+    /**
+     * Selecciona la página de items de una subcategoría posterior al cursor (nombre, id) en orden ascendente
+     *
+     * @param subcategoryId Identificador de la subcategoría
+     * @param name Nombre del último item entregado
+     * @param id Identificador del último item entregado
+     * @param pageable Tamaño de página
+     * @return Listado de items encontrados
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Query(value = "SELECT new com.sofka.megawarez.domain.projection.ItemView(" +
+            "itm.id, itm.name, itm.createdAt, itm.subcategory.id) " +
+            "FROM Item itm " +
+            "WHERE itm.subcategory.id = :subcategoryId " +
+            "AND (itm.name > :name OR (itm.name = :name AND itm.id > :id)) " +
+            "ORDER BY itm.name ASC, itm.id ASC")
+    public List<ItemView> findNextBySubcategoryAndNameAsc(
+            @Param(value = "subcategoryId") Integer subcategoryId,
+            @Param(value = "name") String name,
+            @Param(value = "id") Integer id,
+            Pageable pageable);
+
+    /**
+     * Selecciona la página de items de una subcategoría posterior al cursor (nombre, id) en orden descendente
+     *
+     * @param subcategoryId Identificador de la subcategoría
+     * @param name Nombre del último item entregado
+     * @param id Identificador del último item entregado
+     * @param pageable Tamaño de página
+     * @return Listado de items encontrados
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Query(value = "SELECT new com.sofka.megawarez.domain.projection.ItemView(" +
+            "itm.id, itm.name, itm.createdAt, itm.subcategory.id) " +
+            "FROM Item itm " +
+            "WHERE itm.subcategory.id = :subcategoryId " +
+            "AND (itm.name < :name OR (itm.name = :name AND itm.id < :id)) " +
+            "ORDER BY itm.name DESC, itm.id DESC")
+    public List<ItemView> findNextBySubcategoryAndNameDesc(
+            @Param(value = "subcategoryId") Integer subcategoryId,
+            @Param(value = "name") String name,
+            @Param(value = "id") Integer id,
+            Pageable pageable);
+
+    /**
+     * Selecciona la página de items de una subcategoría posterior al cursor (fecha de creación, id) en orden ascendente
+     *
+     * @param subcategoryId Identificador de la subcategoría
+     * @param createdAt Fecha de creación del último item entregado
+     * @param id Identificador del último item entregado
+     * @param pageable Tamaño de página
+     * @return Listado de items encontrados
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Query(value = "SELECT new com.sofka.megawarez.domain.projection.ItemView(" +
+            "itm.id, itm.name, itm.createdAt, itm.subcategory.id) " +
+            "FROM Item itm " +
+            "WHERE itm.subcategory.id = :subcategoryId " +
+            "AND (itm.createdAt > :createdAt OR (itm.createdAt = :createdAt AND itm.id > :id)) " +
+            "ORDER BY itm.createdAt ASC, itm.id ASC")
+    public List<ItemView> findNextBySubcategoryAndCreatedAtAsc(
+            @Param(value = "subcategoryId") Integer subcategoryId,
+            @Param(value = "createdAt") Instant createdAt,
+            @Param(value = "id") Integer id,
+            Pageable pageable);
+
+    /**
+     * Selecciona la página de items de una subcategoría posterior al cursor (fecha de creación, id) en orden descendente
+     *
+     * @param subcategoryId Identificador de la subcategoría
+     * @param createdAt Fecha de creación del último item entregado
+     * @param id Identificador del último item entregado
+     * @param pageable Tamaño de página
+     * @return Listado de items encontrados
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Query(value = "SELECT new com.sofka.megawarez.domain.projection.ItemView(" +
+            "itm.id, itm.name, itm.createdAt, itm.subcategory.id) " +
+            "FROM Item itm " +
+            "WHERE itm.subcategory.id = :subcategoryId " +
+            "AND (itm.createdAt < :createdAt OR (itm.createdAt = :createdAt AND itm.id < :id)) " +
+            "ORDER BY itm.createdAt DESC, itm.id DESC")
+    public List<ItemView> findNextBySubcategoryAndCreatedAtDesc(
+            @Param(value = "subcategoryId") Integer subcategoryId,
+            @Param(value = "createdAt") Instant createdAt,
+            @Param(value = "id") Integer id,
+            Pageable pageable);
+
+    /**
+     * Recorre todos los items del sistema como un flujo, el driver de MySQL entrega las tuplas
+     * a medida que se leen (fetch size Integer.MIN_VALUE) en lugar de cargar todo el resultado en memoria.
+     * Debe consumirse dentro de una transacción y cerrarse al terminar
+     *
+     * @return Flujo de vistas de items ordenadas por identificador
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @QueryHints(value = {
+            @QueryHint(name = HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE),
+            @QueryHint(name = HINT_READONLY, value = "true")
+    })
+    @Query(value = "SELECT new com.sofka.megawarez.domain.projection.ItemView(" +
+            "itm.id, itm.name, itm.createdAt, itm.subcategory.id) " +
+            "FROM Item itm " +
+            "ORDER BY itm.id ASC")
+    public Stream<ItemView> streamAll();
+
+    /**
+     * Busca el identificador de la subcategoría de un item
+     *
+     * @param id Identificador del item
+     * @return Identificador de la subcategoría si el item existe
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Query(value = "SELECT itm.subcategory.id " +
+            "FROM Item itm " +
+            "WHERE itm.id = :id")
+    public Optional<Integer> findSubcategoryIdById(@Param(value = "id") Integer id);
+
+    /**
+     * Selecciona los identificadores de los items de varias subcategorías
+     *
+     * @param subcategoryIds Identificadores de las subcategorías
+     * @return Identificadores de los items
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Query(value = "SELECT itm.id " +
+            "FROM Item itm " +
+            "WHERE itm.subcategory.id IN :subcategoryIds")
+    public List<Integer> findIdsBySubcategoryIds(@Param(value = "subcategoryIds") Collection<Integer> subcategoryIds);
 
     /**
      * Actualizar el nombre de un item
@@ -0,0 +1,80 @@
+package com.sofka.megawarez.repository;
+
+import com.sofka.megawarez.domain.Session;
+import com.sofka.megawarez.domain.projection.RevokedSession;
+import com.sofka.megawarez.domain.projection.SessionSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Repositorio de la entidad Sesión
+ *
+ * @version 1.0.0 2022-04-06
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+public interface SessionRepository extends JpaRepository<Session, Integer> {
+
+    /**
+     * Selecciona las sesiones creadas después del momento indicado, sin cargar los usuarios.
+     * No incluye las revocaciones de tokens firmados
+     *
+     * @param since Momento desde el que se consideran vigentes (excluido)
+     * @return Listado de sesiones encontradas
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Query(value = "SELECT ses.token AS token, ses.user.id AS userId, ses.createdAt AS createdAt " +
+            "FROM Session ses " +
+            "WHERE ses.createdAt > :since AND ses.revokedAt IS NULL")
+    public List<SessionSummary> findCreatedAfter(@Param(value = "since") Instant since);
+
+    /**
+     * Selecciona las revocaciones de tokens firmados registradas después del momento indicado
+     *
+     * @param since Momento desde el que se buscan revocaciones (excluido)
+     * @return Listado de revocaciones encontradas
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Query(value = "SELECT ses.token AS token, ses.createdAt AS createdAt, ses.revokedAt AS revokedAt " +
+            "FROM Session ses " +
+            "WHERE ses.revokedAt > :since")
+    public List<RevokedSession> findRevokedAfter(@Param(value = "since") Instant since);
+
+    /**
+     * Borra las sesiones con los tokens indicados
+     *
+     * @param tokens Tokens de las sesiones
+     * @return Cantidad de sesiones borradas
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Modifying
+    @Query(value = "DELETE FROM Session ses " +
+            "WHERE ses.token IN :tokens")
+    public int deleteByTokens(@Param(value = "tokens") Collection<String> tokens);
+
+    /**
+     * Borra las sesiones creadas antes del momento indicado
+     *
+     * @param before Momento límite (excluido)
+     * @return Cantidad de sesiones borradas
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Modifying
+    @Query(value = "DELETE FROM Session ses " +
+            "WHERE ses.createdAt < :before")
+    public int deleteCreatedBefore(@Param(value = "before") Instant before);
+}
@@ -2,12 +2,14 @@ package com.sofka.megawarez.repository;
 
 import com.sofka.megawarez.domain.Category;
 import com.sofka.megawarez.domain.Subcategory;
+import com.sofka.megawarez.domain.projection.SubcategoryView;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Repositorio de la entidad subcategoría
@@ -27,11 +29,29 @@ public interface SubcategoryRepository extends JpaRepository<Subcategory, Intege
      * @author Lorena Castro <Lcastro0398@gmail.com>
      * @since 1.0.0
      */
-    @Query(value = "SELECT scat " +
+    @Query(value = "SELECT new com.sofka.megawarez.domain.projection.SubcategoryView(" +
+            "scat.id, scat.category.id, scat.name, scat.createdAt) " +
             "FROM Subcategory scat " +
             "WHERE (scat.name LIKE :data%) " +
             "ORDER BY scat.name ASC")
-    public List<Subcategory> findByName(@Param("data") String data);
+    public List<SubcategoryView> findByName(@Param("data") String data);
+
+    /**
+     * Busca el identificador de una subcategoría a partir de su nombre y el nombre de su categoría
+     *
+     * @param category Nombre de la categoría
+     * @param name Nombre de la subcategoría
+     * @return Identificador de la subcategoría si existe
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Query(value = "SELECT scat.id " +
+            "FROM Subcategory scat " +
+            "WHERE scat.name = :name AND scat.category.name = :category")
+    public Optional<Integer> findIdByCategoryNameAndName(
+            @Param(value = "category") String category,
+            @Param(value = "name") String name);
 
     /**
      * Selecciona las subcategorías de una categoría en específico
@@ -47,6 +67,19 @@ public interface SubcategoryRepository extends JpaRepository<Subcategory, Intege
             "WHERE scat.category = :category")
     public List<Subcategory> findAllByCategory(@Param(value = "category") Category category);
 
+    /**
+     * Selecciona todas las subcategorías como vistas de solo lectura
+     *
+     * @return Listado de subcategorías
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Query(value = "SELECT new com.sofka.megawarez.domain.projection.SubcategoryView(" +
+            "scat.id, scat.category.id, scat.name, scat.createdAt) " +
+            "FROM Subcategory scat")
+    public List<SubcategoryView> findAllViews();
+
     /**
      * Actualizar el nombre de una subcategoría
      *
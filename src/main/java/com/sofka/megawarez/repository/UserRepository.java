@@ -1,11 +1,14 @@
 package com.sofka.megawarez.repository;
 
 import com.sofka.megawarez.domain.User;
+import com.sofka.megawarez.domain.projection.UserCredential;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Optional;
+
 /**
  * Repositorio de la entidad Usuario
  *
@@ -34,7 +37,7 @@ public interface UserRepository extends JpaRepository<User, Integer> {
      * Actualiza la contraseña de un usuario
      *
      * @param id Identificador del usuario
-     * @param password Nueva contraseña del usuario
+     * @param password Nueva contraseña del usuario (ver PasswordHash)
      *
      * @author Lorena Castro <Lcastro0398@gmail.com>
      * @since 1.0.0
@@ -45,4 +48,17 @@ public interface UserRepository extends JpaRepository<User, Integer> {
             "WHERE usr.id = :id")
     public void updatePassword(@Param(value = "id") Integer id, @Param(value = "password") String password);
 
-}
\ No newline at end of file
+    /**
+     * Busca las credenciales del usuario con el nombre indicado (índice único idx_usr_username)
+     *
+     * @param username Nombre del usuario
+     * @return Credenciales del usuario, vacío si no existe
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Query(value = "SELECT usr.id AS id, usr.password AS password FROM User usr " +
+            "WHERE usr.username = :username")
+    public Optional<UserCredential> findCredentialByUsername(@Param(value = "username") String username);
+
+}
@@ -0,0 +1,146 @@
+package com.sofka.megawarez.service;
+
+import com.sofka.megawarez.utility.RateLimiter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Control de admisión por grupo de endpoints: cada grupo limita las peticiones por dirección IP y,
+ * donde la petición identifica al usuario, también por usuario. Una tasa 0 desactiva ese límite.
+ *
+ * Detrás de un balanceador la dirección IP es la del balanceador, salvo que se configure
+ * server.forward-headers-strategy para tomarla de X-Forwarded-For
+ *
+ * @version 1.0.0 2022-04-06
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+@Component
+public class AdmissionControl {
+
+    /**
+     * Grupos de endpoints
+     */
+    public enum Group {
+
+        /**
+         * Inicio de sesión, por IP y por nombre de usuario
+         */
+        LOGIN,
+
+        /**
+         * Creación de descargas, por IP y por usuario
+         */
+        DOWNLOAD_WRITE,
+
+        /**
+         * Consultas de descargas, por IP
+         */
+        DOWNLOAD_READ
+    }
+
+    /**
+     * Limitadores por IP y por usuario de cada grupo (por ordinal), null si el límite está desactivado
+     */
+    private final RateLimiter[] byIp = new RateLimiter[Group.values().length];
+    private final RateLimiter[] byUser = new RateLimiter[Group.values().length];
+
+    /**
+     * Constructor de la clase
+     *
+     * @param enabled Indica si el control de admisión está activo
+     * @param capacity Clientes en la tabla de cada limitador
+     * @param loginIpRate Inicios de sesión por segundo por IP
+     * @param loginIpBurst Ráfaga de inicios de sesión por IP
+     * @param loginUserRate Inicios de sesión por segundo por nombre de usuario
+     * @param loginUserBurst Ráfaga de inicios de sesión por nombre de usuario
+     * @param downloadWriteIpRate Descargas creadas por segundo por IP
+     * @param downloadWriteIpBurst Ráfaga de descargas creadas por IP
+     * @param downloadWriteUserRate Descargas creadas por segundo por usuario
+     * @param downloadWriteUserBurst Ráfaga de descargas creadas por usuario
+     * @param downloadReadIpRate Consultas de descargas por segundo por IP
+     * @param downloadReadIpBurst Ráfaga de consultas de descargas por IP
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public AdmissionControl(
+            @Value("${megawarez.rate-limit.enabled:true}") boolean enabled,
+            @Value("${megawarez.rate-limit.capacity:262144}") int capacity,
+            @Value("${megawarez.rate-limit.login.ip.rate:5}") double loginIpRate,
+            @Value("${megawarez.rate-limit.login.ip.burst:20}") int loginIpBurst,
+            @Value("${megawarez.rate-limit.login.user.rate:0.2}") double loginUserRate,
+            @Value("${megawarez.rate-limit.login.user.burst:5}") int loginUserBurst,
+            @Value("${megawarez.rate-limit.download-write.ip.rate:50}") double downloadWriteIpRate,
+            @Value("${megawarez.rate-limit.download-write.ip.burst:100}") int downloadWriteIpBurst,
+            @Value("${megawarez.rate-limit.download-write.user.rate:10}") double downloadWriteUserRate,
+            @Value("${megawarez.rate-limit.download-write.user.burst:20}") int downloadWriteUserBurst,
+            @Value("${megawarez.rate-limit.download-read.ip.rate:100}") double downloadReadIpRate,
+            @Value("${megawarez.rate-limit.download-read.ip.burst:200}") int downloadReadIpBurst
+    ) {
+        if (!enabled) {
+            return;
+        }
+        byIp[Group.LOGIN.ordinal()] = limiter(loginIpRate, loginIpBurst, capacity);
+        byUser[Group.LOGIN.ordinal()] = limiter(loginUserRate, loginUserBurst, capacity);
+        byIp[Group.DOWNLOAD_WRITE.ordinal()] = limiter(downloadWriteIpRate, downloadWriteIpBurst, capacity);
+        byUser[Group.DOWNLOAD_WRITE.ordinal()] = limiter(downloadWriteUserRate, downloadWriteUserBurst, capacity);
+        byIp[Group.DOWNLOAD_READ.ordinal()] = limiter(downloadReadIpRate, downloadReadIpBurst, capacity);
+    }
+
+    /**
+     * Intenta admitir una petición identificada solo por IP
+     *
+     * @param group Grupo del endpoint
+     * @param ip Dirección IP del cliente
+     * @return 0 si se admite, en otro caso los nanosegundos que faltan para que se admita
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public long admit(Group group, String ip) {
+        var limiter = byIp[group.ordinal()];
+        return limiter == null || ip == null ? 0 : limiter.acquire(RateLimiter.key(ip));
+    }
+
+    /**
+     * Intenta admitir una petición de un usuario identificado por su identificador
+     *
+     * @param group Grupo del endpoint
+     * @param ip Dirección IP del cliente
+     * @param userId Identificador del usuario
+     * @return 0 si se admite, en otro caso los nanosegundos que faltan para que se admita
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public long admit(Group group, String ip, Integer userId) {
+        var wait = admit(group, ip);
+        var limiter = byUser[group.ordinal()];
+        return wait > 0 || limiter == null || userId == null ? wait : limiter.acquire(RateLimiter.key(userId));
+    }
+
+    /**
+     * Intenta admitir una petición de un usuario identificado por su nombre
+     *
+     * @param group Grupo del endpoint
+     * @param ip Dirección IP del cliente
+     * @param username Nombre del usuario
+     * @return 0 si se admite, en otro caso los nanosegundos que faltan para que se admita
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public long admit(Group group, String ip, String username) {
+        var wait = admit(group, ip);
+        var limiter = byUser[group.ordinal()];
+        return wait > 0 || limiter == null || username == null ? wait : limiter.acquire(RateLimiter.key(username));
+    }
+
+    /**
+     * Crea un limitador, null si la tasa es 0
+     */
+    private static RateLimiter limiter(double rate, int burst, int capacity) {
+        return rate > 0 ? new RateLimiter(rate, burst, capacity) : null;
+    }
+}
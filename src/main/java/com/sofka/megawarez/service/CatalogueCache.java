@@ -0,0 +1,182 @@
+package com.sofka.megawarez.service;
+
+import com.sofka.megawarez.domain.projection.CategoryView;
+import com.sofka.megawarez.domain.projection.ItemView;
+import com.sofka.megawarez.domain.projection.SubcategoryView;
+import com.sofka.megawarez.utility.BoundedCache;
+import com.sofka.megawarez.utility.CompressedPayload;
+import com.sofka.megawarez.utility.KeysetPage;
+import com.sofka.megawarez.utility.TextNormalizer;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Cachés de lectura del catálogo: listados ordenados de items y búsquedas por prefijo de nombre.
+ * Las escrituras del catálogo invalidan únicamente las entradas que pueden verse afectadas
+ *
+ * @version 1.0.0 2022-04-05
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+@Getter
+@Component
+public class CatalogueCache {
+
+    /**
+     * Páginas de items ordenadas, la llave es campo|orden|cursor|tamaño
+     */
+    private final BoundedCache<String, KeysetPage<ItemView>> listings;
+
+    /**
+     * Búsquedas de categorías por prefijo de nombre
+     */
+    private final BoundedCache<String, List<CategoryView>> categoriesByName;
+
+    /**
+     * Búsquedas de subcategorías por prefijo de nombre
+     */
+    private final BoundedCache<String, List<SubcategoryView>> subcategoriesByName;
+
+    /**
+     * Búsquedas de items por prefijo de nombre
+     */
+    private final BoundedCache<String, List<ItemView>> itemsByName;
+
+    /**
+     * Páginas del index ya serializadas y comprimidas, la llave es cursor|tamaño
+     */
+    private final BoundedCache<String, CompressedPayload> indexPayloads;
+
+    /**
+     * Constructor de la clase
+     *
+     * @param maxSize Cantidad máxima de entradas de cada caché
+     * @param ttl Tiempo de vida de cada entrada
+     * @param payloadMaxSize Cantidad máxima de páginas del index serializadas
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public CatalogueCache(
+            @Value("${megawarez.cache.max-size:1000}") int maxSize,
+            @Value("${megawarez.cache.ttl:PT5M}") Duration ttl,
+            @Value("${megawarez.cache.payload-max-size:200}") int payloadMaxSize
+    ) {
+        listings = new BoundedCache<>("listings", maxSize, ttl);
+        categoriesByName = new BoundedCache<>("categoriesByName", maxSize, ttl);
+        subcategoriesByName = new BoundedCache<>("subcategoriesByName", maxSize, ttl);
+        itemsByName = new BoundedCache<>("itemsByName", maxSize, ttl);
+        indexPayloads = new BoundedCache<>("indexPayloads", payloadMaxSize, ttl);
+    }
+
+    /**
+     * Construye la llave de una página de items ordenada
+     *
+     * @param field Campo de ordenamiento
+     * @param order Dirección del ordenamiento
+     * @param cursor Cursor de la página anterior
+     * @param size Tamaño de la página
+     * @return Llave de la caché
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public static String listingKey(String field, Object order, String cursor, int size) {
+        return field + "|" + order + "|" + (cursor == null ? "" : cursor) + "|" + size;
+    }
+
+    /**
+     * Invalida lo afectado por la creación, modificación o borrado de un item
+     *
+     * @param names Nombres del item (anterior y nuevo)
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public void onItemChanged(String... names) {
+        listings.invalidateAll();
+        indexPayloads.invalidateAll();
+        itemsByName.invalidateIf(prefix -> matchesAny(prefix, names));
+    }
+
+    /**
+     * Invalida lo afectado por la creación o modificación de una subcategoría
+     *
+     * @param names Nombres de la subcategoría (anterior y nuevo)
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public void onSubcategoryChanged(String... names) {
+        subcategoriesByName.invalidateIf(prefix -> matchesAny(prefix, names));
+    }
+
+    /**
+     * Invalida lo afectado por la creación o modificación de una categoría
+     *
+     * @param names Nombres de la categoría (anterior y nuevo)
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public void onCategoryChanged(String... names) {
+        categoriesByName.invalidateIf(prefix -> matchesAny(prefix, names));
+    }
+
+    /**
+     * Invalida todas las cachés, usado cuando un borrado en cascada afecta tuplas desconocidas
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public void invalidateAll() {
+        listings.invalidateAll();
+        categoriesByName.invalidateAll();
+        subcategoriesByName.invalidateAll();
+        itemsByName.invalidateAll();
+        indexPayloads.invalidateAll();
+    }
+
+    /**
+     * Devuelve las estadísticas de todas las cachés
+     *
+     * @return Listado de estadísticas
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public List<BoundedCache.Stats> getStats() {
+        return Arrays.asList(
+                listings.getStats(),
+                categoriesByName.getStats(),
+                subcategoriesByName.getStats(),
+                itemsByName.getStats(),
+                indexPayloads.getStats());
+    }
+
+    /**
+     * Indica si alguno de los nombres empieza por el prefijo, igual que el LIKE de MySQL
+     * sin distinguir mayúsculas ni tildes
+     *
+     * @param prefix Prefijo buscado
+     * @param names Nombres a evaluar
+     * @return true si algún nombre coincide
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private static boolean matchesAny(String prefix, String... names) {
+        var normalizedPrefix = TextNormalizer.normalize(prefix);
+        for (var name : names) {
+            if (name != null && TextNormalizer.normalize(name).startsWith(normalizedPrefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,21 +1,57 @@
 package com.sofka.megawarez.service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sofka.megawarez.domain.Category;
 import com.sofka.megawarez.domain.Subcategory;
 import com.sofka.megawarez.domain.Item;
 import com.sofka.megawarez.domain.Download;
+import com.sofka.megawarez.domain.projection.CategoryView;
+import com.sofka.megawarez.domain.projection.DownloadRecord;
+import com.sofka.megawarez.domain.projection.DownloadSummary;
+import com.sofka.megawarez.domain.projection.ItemView;
+import com.sofka.megawarez.domain.projection.RollupPoint;
+import com.sofka.megawarez.domain.projection.SubcategoryView;
 import com.sofka.megawarez.repository.CategoryRepository;
 import com.sofka.megawarez.repository.ItemRepository;
 import com.sofka.megawarez.repository.SubcategoryRepository;
+import com.sofka.megawarez.repository.DownloadIdempotencyRepository;
 import com.sofka.megawarez.repository.DownloadRepository;
+import com.sofka.megawarez.repository.DownloadRollupRepository;
+import com.sofka.megawarez.repository.UserRepository;
 import com.sofka.megawarez.service.interfaces.ICatalogue;
+import com.sofka.megawarez.utility.BoundedCache;
+import com.sofka.megawarez.utility.CompressedPayload;
+import com.sofka.megawarez.utility.Granularity;
+import com.sofka.megawarez.utility.KeysetPage;
+import com.sofka.megawarez.utility.PageCursor;
+import com.sofka.megawarez.utility.PrefixIndex;
+import com.sofka.megawarez.utility.Response;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
 import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 /**
  * Clase tipo  Servicio para el manejo del catalogo
@@ -27,6 +63,21 @@ import java.util.List;
 @Service
 public class CatalogueService implements ICatalogue {
 
+    /**
+     * Campo de ordenamiento por nombre
+     */
+    private static final String FIELD_NAME = "name";
+
+    /**
+     * Campo de ordenamiento por fecha de creación
+     */
+    private static final String FIELD_CREATED_AT = "createdAt";
+
+    /**
+     * Cantidad de items exportados entre cada envío del generador al cliente
+     */
+    private static final int EXPORT_FLUSH_EVERY = 1000;
+
     /**
      * Repositorio de Categoría
      */
@@ -52,52 +103,445 @@ public class CatalogueService implements ICatalogue {
     private DownloadRepository downloadRepository;
 
     /**
-     * Devuelve una lista de Item con todos los items del sistema
+     * Repositorio de Usuario
+     */
+    @Autowired
+    private UserRepository userRepository;
+
+    /**
+     * Repositorio JDBC de los rollups de descargas
+     */
+    @Autowired
+    private DownloadRollupRepository downloadRollupRepository;
+
+    /**
+     * Escritura diferida de descargas, null si no está activa
+     */
+    @Autowired(required = false)
+    private DownloadWriteBehind downloadWriteBehind;
+
+    /**
+     * Registro de descargas en disco, null si no está activo
+     */
+    @Autowired(required = false)
+    private DownloadLog downloadLog;
+
+    /**
+     * Filtro de llaves de idempotencia de descargas
+     */
+    @Autowired
+    private DownloadIdempotency downloadIdempotency;
+
+    /**
+     * Repositorio JDBC de las llaves de idempotencia de descargas
+     */
+    @Autowired
+    private DownloadIdempotencyRepository downloadIdempotencyRepository;
+
+    /**
+     * Plantilla de transacciones, une la descarga con su llave de idempotencia
+     */
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * Antigüedad máxima por defecto de las consultas de descargas, para que solo lean las
+     * particiones recientes de download
+     */
+    @Value("${megawarez.download.recent-range:P90D}")
+    private Duration recentRange;
+
+    /**
+     * Indica si download está particionada: solo entonces se aplica el rango reciente por defecto y
+     * se verifican el usuario y el item de las descargas directas
+     */
+    @Value("${megawarez.download.partitioning.enabled:false}")
+    private boolean partitioned;
+
+    /**
+     * Ingreso masivo de descargas
+     */
+    @Autowired
+    private DownloadBulkIngest downloadBulkIngest;
+
+    /**
+     * Contadores de descargas por item
+     */
+    @Autowired
+    private DownloadCounters downloadCounters;
+
+    /**
+     * Items más descargados por ventana de tiempo
+     */
+    @Autowired
+    private TrendingTracker trendingTracker;
+
+    /**
+     * Rollups de descargas por item y subcategoría
+     */
+    @Autowired
+    private DownloadRollups downloadRollups;
+
+    /**
+     * Copia en memoria del árbol del catálogo
+     */
+    @Autowired
+    private CatalogueSnapshot catalogueSnapshot;
+
+    /**
+     * Cachés de lectura del catálogo
+     */
+    @Autowired
+    private CatalogueCache catalogueCache;
+
+    /**
+     * Índices de prefijos de nombres para el autocompletado
+     */
+    @Autowired
+    private NameIndex nameIndex;
+
+    /**
+     * Índice de búsqueda de texto completo sobre los items
+     */
+    @Autowired
+    private ItemSearchIndex itemSearchIndex;
+
+    /**
+     * Versión del catálogo, usada en las lecturas condicionales
+     */
+    @Autowired
+    private CatalogueVersion catalogueVersion;
+
+    /**
+     * Serializador JSON de la aplicación
+     */
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * Verificación de credenciales con caché
+     */
+    @Autowired
+    private UserCredentials userCredentials;
+
+    /**
+     * Sesiones vigentes de los usuarios en memoria, null si no está activo
+     */
+    @Autowired(required = false)
+    private SessionStore sessionStore;
+
+    /**
+     * Tokens de sesión firmados, null si no está activo
+     */
+    @Autowired(required = false)
+    private SignedSessionTokens signedSessionTokens;
+
+    /**
+     * Devuelve una página de items del sistema ordenados por nombre de forma ascendente.
+     * Se atiende desde la copia en memoria del catálogo y solo consulta la base de datos
+     * mientras esta no ha sido construida
      *
-     * @return
+     * @param cursor cursor de la página anterior, null para la primera página
+     * @param size cantidad de items por página
+     * @return Página de items
      *
      * @author Lorena Castro <Lcastro0398@gmail.com>
      * @since 1.0.0
      */
     @Override
-    @Transactional(readOnly = true)
-    public List<Item> getList() {
-        return itemRepository.findAll();
+    public KeysetPage<ItemView> getList(String cursor, Integer size) {
+        var tree = catalogueSnapshot.getTree();
+        if (tree != null) {
+            var pageCursor = cursor == null || cursor.isBlank() ? null : PageCursor.decode(cursor);
+            return tree.page(pageCursor, Response.pageSize(size));
+        }
+        return getList(FIELD_NAME, Sort.Direction.ASC, cursor, size);
     }
 
     /**
-     * Devuelve una lista de Item con todos los items ordenados por el campo indicado ya sea ascendente o descendente
+     * Devuelve una página del index ya serializada como Response en JSON, con su variante gzip.
+     * Se calcula una vez por página y se guarda hasta que cambian los items del catálogo
+     *
+     * @param cursor cursor de la página anterior, null para la primera página
+     * @param size cantidad de items por página
+     * @return Cuerpo de la respuesta listo para escribir
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Override
+    public CompressedPayload getIndexPayload(String cursor, Integer size) {
+        var pageSize = Response.pageSize(size);
+        var key = (cursor == null ? "" : cursor) + "|" + pageSize;
+        return catalogueCache.getIndexPayloads().get(key, ignored -> {
+            var page = getList(cursor, pageSize);
+            var body = new Response();
+            body.data = page.getItems();
+            body.next = page.getNext();
+            try {
+                return CompressedPayload.of(objectMapper.writeValueAsBytes(body));
+            } catch (JsonProcessingException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        });
+    }
+
+    /**
+     * Devuelve una página de items ordenados por el campo indicado ya sea ascendente o descendente.
+     * Las páginas se guardan en la caché de listados hasta que un item cambie
      *
      * @param field campo por el cual ordenar (name o createAt)
      * @param order método para ordenar (ACS o DESC)
-     * @return Lista de items
+     * @param cursor cursor de la página anterior, null para la primera página
+     * @param size cantidad de items por página
+     * @return Página de items
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Override
+    public KeysetPage<ItemView> getList(String field, Sort.Direction order, String cursor, Integer size) {
+        checkSortField(field);
+        var limit = Response.pageSize(size);
+        return catalogueCache.getListings().get(
+                CatalogueCache.listingKey(field, order, cursor, limit),
+                key -> loadList(null, field, order, cursor, limit));
+    }
+
+    /**
+     * Busca las categorías cuyo nombre empieza por el dato indicado
+     *
+     * @param name Dato a buscar
+     * @return Listado de categorías encontradas
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Override
+    public List<CategoryView> findCategories(String name) {
+        return catalogueCache.getCategoriesByName().get(name, categoryRepository::findByName);
+    }
+
+    /**
+     * Busca las subcategorías cuyo nombre empieza por el dato indicado
+     *
+     * @param name Dato a buscar
+     * @return Listado de subcategorías encontradas
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Override
+    public List<SubcategoryView> findSubcategories(String name) {
+        return catalogueCache.getSubcategoriesByName().get(name, subcategoryRepository::findByName);
+    }
+
+    /**
+     * Busca los items cuyo nombre empieza por el dato indicado
+     *
+     * @param name Dato a buscar
+     * @return Listado de items encontrados
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Override
+    public List<ItemView> findItems(String name) {
+        return catalogueCache.getItemsByName().get(name, itemRepository::findByName);
+    }
+
+    /**
+     * Autocompleta nombres de categorías, subcategorías o items a partir de un prefijo,
+     * sin distinguir mayúsculas ni tildes y sin consultar la base de datos
+     *
+     * @param type Tipo de nombre a buscar (category, subcategory o item)
+     * @param prefix Prefijo escrito por el usuario
+     * @param limit Cantidad máxima de resultados
+     * @return Listado de coincidencias en orden alfabético
+     * @throws IllegalArgumentException si el tipo no es soportado
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Override
+    public List<PrefixIndex.Match> autocomplete(String type, String prefix, Integer limit) {
+        PrefixIndex index;
+        switch (type) {
+            case "category":
+                index = nameIndex.getCategories();
+                break;
+            case "subcategory":
+                index = nameIndex.getSubcategories();
+                break;
+            case "item":
+                index = nameIndex.getItems();
+                break;
+            default:
+                throw new IllegalArgumentException("No es posible autocompletar el tipo " + type);
+        }
+        return index.search(prefix, Response.pageSize(limit));
+    }
+
+    /**
+     * Búsqueda de texto completo sobre los nombres de los items, sus subcategorías y categorías,
+     * tolera errores de escritura y ordena por relevancia sin consultar la base de datos
+     *
+     * @param query Consulta de una o varias palabras
+     * @param limit Cantidad máxima de resultados
+     * @return Listado de resultados ordenados por relevancia
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Override
+    public List<ItemSearchIndex.Hit> search(String query, Integer limit) {
+        return itemSearchIndex.search(query, Response.pageSize(limit));
+    }
+
+    /**
+     * Devuelve la versión vigente del catálogo con su ETag y fecha de última modificación
+     *
+     * @return Estampa de la versión
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Override
+    public CatalogueVersion.Stamp getVersion() {
+        return catalogueVersion.getCurrent();
+    }
+
+    /**
+     * Devuelve las estadísticas de las cachés del catálogo y de credenciales
+     *
+     * @return Listado de estadísticas
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Override
+    public List<BoundedCache.Stats> getCacheStats() {
+        var stats = new ArrayList<>(catalogueCache.getStats());
+        stats.addAll(userCredentials.getStats());
+        return stats;
+    }
+
+    /**
+     * Consulta una página de items ordenados en la base de datos, opcionalmente de una sola subcategoría.
+     * Cada página se resuelve con un rango sobre el índice ([subcategoría,] campo, id) a partir del cursor,
+     * por lo que su costo no depende de qué tan lejos esté la página
+     *
+     * @param subcategoryId identificador de la subcategoría, null para todos los items
+     * @param field campo por el cual ordenar (name o createAt)
+     * @param order método para ordenar (ACS o DESC)
+     * @param cursor cursor de la página anterior, null para la primera página
+     * @param limit cantidad de items por página
+     * @return Página de items
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private KeysetPage<ItemView> loadList(Integer subcategoryId, String field, Sort.Direction order,
+                                          String cursor, int limit) {
+        // Se solicita un elemento adicional para saber si existe una página siguiente
+        var pageable = PageRequest.of(0, limit + 1);
+        List<ItemView> items;
+        if (cursor == null || cursor.isBlank()) {
+            var firstPage = PageRequest.of(0, limit + 1, Sort.by(order, field).and(Sort.by(order, "id")));
+            items = subcategoryId == null
+                    ? itemRepository.findFirstPage(firstPage)
+                    : itemRepository.findFirstPageBySubcategory(subcategoryId, firstPage);
+        } else if (subcategoryId != null) {
+            var pageCursor = PageCursor.decode(cursor);
+            if (FIELD_NAME.equals(field)) {
+                items = order.isAscending()
+                        ? itemRepository.findNextBySubcategoryAndNameAsc(
+                                subcategoryId, pageCursor.getValue(), pageCursor.getId(), pageable)
+                        : itemRepository.findNextBySubcategoryAndNameDesc(
+                                subcategoryId, pageCursor.getValue(), pageCursor.getId(), pageable);
+            } else {
+                var createdAt = parseInstant(pageCursor.getValue());
+                items = order.isAscending()
+                        ? itemRepository.findNextBySubcategoryAndCreatedAtAsc(
+                                subcategoryId, createdAt, pageCursor.getId(), pageable)
+                        : itemRepository.findNextBySubcategoryAndCreatedAtDesc(
+                                subcategoryId, createdAt, pageCursor.getId(), pageable);
+            }
+        } else {
+            var pageCursor = PageCursor.decode(cursor);
+            if (FIELD_NAME.equals(field)) {
+                items = order.isAscending()
+                        ? itemRepository.findNextByNameAsc(pageCursor.getValue(), pageCursor.getId(), pageable)
+                        : itemRepository.findNextByNameDesc(pageCursor.getValue(), pageCursor.getId(), pageable);
+            } else {
+                var createdAt = parseInstant(pageCursor.getValue());
+                items = order.isAscending()
+                        ? itemRepository.findNextByCreatedAtAsc(createdAt, pageCursor.getId(), pageable)
+                        : itemRepository.findNextByCreatedAtDesc(createdAt, pageCursor.getId(), pageable);
+            }
+        }
+        return toPage(items, limit, field);
+    }
+
+    /**
+     * Escribe todos los items del sistema como un arreglo JSON a medida que se leen de la base de datos.
+     * Se leen vistas que no quedan en el contexto de persistencia y cada cierto número de items
+     * se vacía el generador, de modo que la memoria usada no depende del tamaño de la tabla
+     *
+     * @param outputStream Flujo de salida donde se escribe el arreglo
+     * @throws IOException si no es posible escribir en el flujo
      *
      * @author Lorena Castro <Lcastro0398@gmail.com>
      * @since 1.0.0
      */
     @Override
     @Transactional(readOnly = true)
-    public List<Item> getList(String field, Sort.Direction order) {
-        return itemRepository.findAll(Sort.by(order, field));
+    public void exportCatalogue(OutputStream outputStream) throws IOException {
+        var generator = objectMapper.getFactory().createGenerator(outputStream);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.writeStartArray();
+        try (Stream<ItemView> items = itemRepository.streamAll()) {
+            var count = 0;
+            for (var iterator = items.iterator(); iterator.hasNext(); ) {
+                generator.writeObject(iterator.next());
+                if (++count % EXPORT_FLUSH_EVERY == 0) {
+                    generator.flush();
+                }
+            }
+        }
+        generator.writeEndArray();
+        generator.close();
     }
 
     /**
-     * Devuelve una lista de Item con todos los items de una subcategoría específica
-     * ordenados por el campo indicado ya sea ascendente o descendente
+     * Devuelve una página de items de una subcategoría específica
+     * ordenados por el campo indicado ya sea ascendente o descendente.
+     * La subcategoría se resuelve por nombre y el filtro y el orden se resuelven en una sola consulta
+     * sobre el índice (subcategoría, campo, id), por lo que el costo es proporcional a la subcategoría
      *
      * @param category categoría a la que pertenece la subcategoría
      * @param subcategory subcategoría a ordenar
      * @param field campo por el cual ordenar
      * @param order método para ordenar ACS o DESC
-     * @return Lista de items
+     * @param cursor cursor de la página anterior, null para la primera página
+     * @param size cantidad de items por página
+     * @return Página de items, null si la subcategoría no existe
      *
      * @author Lorena Castro <Lcastro0398@gmail.com>
      * @since 1.0.0
      */
     @Override
-    @Transactional(readOnly = true)
-    public List<Item> getList(String category, String subcategory, String field, Sort.Direction order) {
-        return itemRepository.findAll(Sort.by(order, field));
+    public KeysetPage<ItemView> getList(String category, String subcategory, String field, Sort.Direction order,
+                                        String cursor, Integer size) {
+        checkSortField(field);
+        var subcategoryId = findSubcategoryId(category, subcategory);
+        if (subcategoryId == null) {
+            return null;
+        }
+        var limit = Response.pageSize(size);
+        return catalogueCache.getListings().get(
+                CatalogueCache.listingKey(field + "@" + subcategoryId, order, cursor, limit),
+                key -> loadList(subcategoryId, field, order, cursor, limit));
     }
 
     /**
@@ -116,34 +560,302 @@ public class CatalogueService implements ICatalogue {
     }
 
     /**
-     * Devuelve una lista de descargas
+     * Devuelve una página de las descargas realizadas de un item, paginada por llave (fecha, id)
+     * para no cargar todas las descargas de los items populares
+     *
+     * @param itemId Identificador del item
+     * @param since Fecha mínima de las descargas, por defecto el rango reciente si download está particionada
+     * @param cursor Cursor de la página anterior, null para la primera página
+     * @param size Cantidad de descargas por página
+     * @return Página de descargas
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public KeysetPage<DownloadSummary> getDownloadsByItem(Integer itemId, Instant since, String cursor, Integer size) {
+        // Se solicita un elemento adicional para saber si existe una página siguiente
+        var limit = Response.pageSize(size);
+        var pageable = PageRequest.of(0, limit + 1);
+        List<DownloadSummary> downloads;
+        if (cursor == null || cursor.isBlank()) {
+            downloads = downloadRepository.findFirstPageByItemId(itemId, since(since), pageable);
+        } else {
+            var pageCursor = PageCursor.decode(cursor);
+            downloads = downloadRepository.findNextPageByItemId(
+                    itemId, since(since), parseInstant(pageCursor.getValue()), pageCursor.getId(), pageable);
+        }
+        return toDownloadPage(downloads, limit);
+    }
+
+    /**
+     * Devuelve una página de las descargas realizadas por un usuario, paginada por llave (fecha, id)
      *
-     * @param item
-     * @return
+     * @param userId Identificador del usuario
+     * @param since Fecha mínima de las descargas, por defecto el rango reciente si download está particionada
+     * @param cursor Cursor de la página anterior, null para la primera página
+     * @param size Cantidad de descargas por página
+     * @return Página de descargas
      *
      * @author Lorena Castro <Lcastro0398@gmail.com>
      * @since 1.0.0
      */
     @Override
     @Transactional(readOnly = true)
-    public List<Download> getList(Item item) {
-        return downloadRepository.findAllByItem(item);
+    public KeysetPage<DownloadSummary> getDownloadsByUser(Integer userId, Instant since, String cursor, Integer size) {
+        var limit = Response.pageSize(size);
+        var pageable = PageRequest.of(0, limit + 1);
+        List<DownloadSummary> downloads;
+        if (cursor == null || cursor.isBlank()) {
+            downloads = downloadRepository.findFirstPageByUserId(userId, since(since), pageable);
+        } else {
+            var pageCursor = PageCursor.decode(cursor);
+            downloads = downloadRepository.findNextPageByUserId(
+                    userId, since(since), parseInstant(pageCursor.getValue()), pageCursor.getId(), pageable);
+        }
+        return toDownloadPage(downloads, limit);
     }
 
     /**
-     * Crea una descarga en el sistema
+     * Devuelve la cantidad de descargas realizadas por un usuario, contadas en la base de datos
      *
-     * @param download Objeto de la categoria a crear
-     * @return Objeto de la descarga creada
+     * @param userId Identificador del usuario
+     * @param since Fecha mínima de las descargas, por defecto el rango reciente si download está particionada
+     * @return Cantidad de descargas
      *
      * @author Lorena Castro <Lcastro0398@gmail.com>
      * @since 1.0.0
      */
     @Override
-    @Transactional
-    public Download createDownload(Download download) {
-        download.setCreatedAt(Instant.now());
-        return downloadRepository.save(download);
+    @Transactional(readOnly = true)
+    public long getDownloadCountByUser(Integer userId, Instant since) {
+        return downloadRepository.countByUserId(userId, since(since));
+    }
+
+    /**
+     * Devuelve la cantidad de descargas por día de un item o de un usuario, agrupadas en la base de datos
+     *
+     * @param scope Alcance (item o user)
+     * @param id Identificador del item o del usuario
+     * @param from Inicio del rango, por defecto el rango habitual de los días antes del fin
+     * @param to Fin del rango, por defecto el momento actual
+     * @return Puntos de la serie con descargas
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<RollupPoint> getDailyDownloads(String scope, Integer id, Instant from, Instant to) {
+        var end = to == null ? Instant.now() : to;
+        var start = Granularity.DAY.truncate(from == null ? end.minus(Granularity.DAY.getDefaultRange()) : from);
+        if (start.isAfter(end)) {
+            throw new IllegalArgumentException("El inicio del rango es posterior al fin");
+        }
+        if (Granularity.DAY.between(start, end) > Granularity.MAX_BUCKETS) {
+            throw new IllegalArgumentException("El rango abarca más de " + Granularity.MAX_BUCKETS + " cubetas");
+        }
+        switch (scope) {
+            case "item":
+                return downloadRollupRepository.countByDay("dwn_item_id", id, start, end);
+            case "user":
+                return downloadRollupRepository.countByDay("dwn_user_id", id, start, end);
+            default:
+                throw new IllegalArgumentException("El alcance debe ser item o user");
+        }
+    }
+
+    /**
+     * Devuelve la cantidad de descargas de un item desde su contador en memoria
+     *
+     * @param itemId Identificador del item
+     * @return Cantidad de descargas
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Override
+    public long getDownloadCount(Integer itemId) {
+        return downloadCounters.get(itemId);
+    }
+
+    /**
+     * Devuelve los items más descargados en la última hora, día o semana, con su nombre.
+     * Se omiten los items que ya no existen en el catálogo
+     *
+     * @param window Ventana de tiempo (hour, day o week)
+     * @param limit Cantidad máxima de resultados
+     * @return Listado de items en tendencia
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Override
+    public List<TrendingTracker.Trend> getTrending(String window, Integer limit) {
+        var pageSize = Response.pageSize(limit);
+        var tree = catalogueSnapshot.getTree();
+        var trending = new ArrayList<TrendingTracker.Trend>(pageSize);
+        for (var trend : trendingTracker.top(window, TrendingTracker.MAX_CANDIDATES, System.currentTimeMillis())) {
+            if (trending.size() >= pageSize) {
+                break;
+            }
+            var item = tree == null ? null : tree.getItem(trend.getItemId());
+            if (tree == null || item != null) {
+                trending.add(new TrendingTracker.Trend(
+                        trend.getItemId(), item == null ? null : item.getName(), trend.getDownloads()));
+            }
+        }
+        return trending;
+    }
+
+    /**
+     * Devuelve la serie de tiempo de descargas de un item o de una subcategoría leyendo solo los rollups
+     *
+     * @param scope Alcance de la serie (item o subcategory)
+     * @param id Identificador del item o de la subcategoría
+     * @param granularity Granularidad de las cubetas (minute, hour o day)
+     * @param from Inicio del rango, por defecto el rango habitual de la granularidad antes del fin
+     * @param to Fin del rango, por defecto el momento actual
+     * @return Puntos de la serie con descargas
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Override
+    public List<RollupPoint> getDownloadSeries(String scope, Integer id, String granularity, Instant from, Instant to) {
+        var unit = Granularity.parse(granularity);
+        var end = to == null ? Instant.now() : to;
+        var start = from == null ? end.minus(unit.getDefaultRange()) : from;
+        if (start.isAfter(end)) {
+            throw new IllegalArgumentException("El inicio del rango es posterior al fin");
+        }
+        if (unit.between(start, end) > Granularity.MAX_BUCKETS) {
+            throw new IllegalArgumentException("El rango abarca más de " + Granularity.MAX_BUCKETS + " cubetas");
+        }
+        switch (scope) {
+            case "item":
+                return downloadRollupRepository.findByItem(unit, id, unit.truncate(start), end);
+            case "subcategory":
+                return downloadRollupRepository.findBySubcategory(unit, id, unit.truncate(start), end);
+            default:
+                throw new IllegalArgumentException("El alcance debe ser item o subcategory");
+        }
+    }
+
+    /**
+     * Crea una descarga en el sistema. Con la escritura diferida o el registro en disco activos
+     * la descarga se encola o se registra y se devuelve sin identificador, se escribirá en el
+     * siguiente lote.
+     *
+     * Si la petición trae una llave de idempotencia ya usada por el usuario se devuelve la descarga
+     * que creó en lugar de crear otra. El filtro en memoria descarta las llaves nuevas sin consultar
+     * la base de datos; la llave primaria de download_idempotency resuelve los reintentos simultáneos,
+     * los de otras instancias y los anteriores a un reinicio.
+     *
+     * Con la escritura diferida o el registro en disco el usuario y el item no se verifican aquí,
+     * el escritor descarta por lotes las descargas cuyo usuario o item no existe. En la escritura
+     * directa los rechazan las llaves foráneas; solo con la tabla particionada, que no las tiene,
+     * se verifican antes de crear la descarga
+     *
+     * @param userId Identificador del usuario que descarga
+     * @param itemId Identificador del item descargado
+     * @param idempotencyKey Llave de idempotencia de la petición, puede ser null
+     * @return Descarga creada, encolada o repetida
+     * @throws IllegalArgumentException si el usuario o el item no existe (escritura directa con la tabla
+     * particionada)
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Override
+    public DownloadRecord createDownload(Integer userId, Integer itemId, String idempotencyKey) {
+        var key = idempotencyKey == null ? null : downloadIdempotency.scope(userId, idempotencyKey);
+        if (key != null && downloadIdempotency.mightContain(key)) {
+            var existing = downloadIdempotencyRepository.find(key);
+            if (existing.isPresent()) {
+                return replay(existing.get(), itemId);
+            }
+        }
+        var createdAt = Instant.now();
+        DownloadRecord download;
+        if (downloadWriteBehind != null || downloadLog != null) {
+            download = new DownloadRecord(null, userId, itemId, createdAt);
+            if (key != null && !downloadIdempotencyRepository.insert(key, download)) {
+                return replay(key, itemId);
+            }
+            try {
+                if (downloadLog != null) {
+                    downloadLog.append(download);
+                } else if (!downloadWriteBehind.enqueue(download)) {
+                    throw new IllegalStateException("No es posible registrar descargas en este momento, intente más tarde");
+                }
+            } catch (RuntimeException exception) {
+                if (key != null) {
+                    downloadIdempotencyRepository.delete(key);
+                }
+                throw exception;
+            }
+        } else {
+            if (partitioned) {
+                checkDownloadReferences(userId, itemId);
+            }
+            download = transactionTemplate.execute(status -> {
+                var saved = downloadRepository.save(new Download(
+                        null, userRepository.getById(userId), itemRepository.getById(itemId), createdAt));
+                var created = new DownloadRecord(saved.getId(), userId, itemId, createdAt);
+                if (key != null && !downloadIdempotencyRepository.insert(key, created)) {
+                    status.setRollbackOnly();
+                    return null;
+                }
+                return created;
+            });
+            if (download == null) {
+                return replay(key, itemId);
+            }
+        }
+        if (key != null) {
+            downloadIdempotency.put(key);
+        }
+        downloadRecorded(download);
+        return download;
+    }
+
+    /**
+     * Verifica que existan el usuario y el item de una descarga, el item con la instantánea del
+     * catálogo si está cargada
+     *
+     * @param userId Identificador del usuario
+     * @param itemId Identificador del item
+     * @throws IllegalArgumentException si el usuario o el item no existe
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private void checkDownloadReferences(Integer userId, Integer itemId) {
+        if (!userRepository.existsById(userId)) {
+            throw new IllegalArgumentException("El usuario no existe");
+        }
+        var tree = catalogueSnapshot.getTree();
+        if (tree != null ? tree.getItem(itemId) == null : !itemRepository.existsById(itemId)) {
+            throw new IllegalArgumentException("El item no existe");
+        }
+    }
+
+    /**
+     * Crea las descargas recibidas en formato NDJSON. Se escriben directamente por lotes JDBC
+     * sin importar el modo de escritura configurado, ya llegan agrupadas
+     *
+     * @param body Cuerpo NDJSON
+     * @return Resumen del ingreso con los errores por línea
+     * @throws IOException si falla la lectura del cuerpo
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Override
+    public DownloadBulkIngest.Report createDownloads(InputStream body) throws IOException {
+        return downloadBulkIngest.ingest(body, this::downloadRecorded);
     }
 
     /**
@@ -159,7 +871,9 @@ public class CatalogueService implements ICatalogue {
     @Transactional
     public Category createCategory(Category category) {
         category.setCreatedAt(Instant.now());
-        return categoryRepository.save(category);
+        var saved = categoryRepository.save(category);
+        categoryChanged(toView(saved), null);
+        return saved;
     }
 
     /**
@@ -175,7 +889,9 @@ public class CatalogueService implements ICatalogue {
     @Transactional
     public Subcategory createSubcategory(Subcategory subcategory) {
         subcategory.setCreatedAt(Instant.now());
-        return subcategoryRepository.save(subcategory);
+        var saved = subcategoryRepository.save(subcategory);
+        subcategoryChanged(toView(saved), null);
+        return saved;
     }
 
     /**
@@ -191,7 +907,9 @@ public class CatalogueService implements ICatalogue {
     @Transactional
     public Item createItem(Item item) {
         item.setCreatedAt(Instant.now());
-        return itemRepository.save(item);
+        var saved = itemRepository.save(item);
+        itemChanged(toView(saved), null);
+        return saved;
     }
 
     /**
@@ -210,9 +928,11 @@ public class CatalogueService implements ICatalogue {
         var cat = categoryRepository.findById(id);
         if(cat.isPresent()) {
             Category _category = cat.get();
+            var oldName = _category.getName();
             _category.setName(category.getName());
-            category = _category;
-            return categoryRepository.save(category);
+            category = categoryRepository.save(_category);
+            categoryChanged(toView(category), oldName);
+            return category;
         } else {
             return null;
         }
@@ -234,9 +954,11 @@ public class CatalogueService implements ICatalogue {
         var scat = subcategoryRepository.findById(id);
         if(scat.isPresent()) {
             Subcategory _subcategory = scat.get();
+            var oldName = _subcategory.getName();
             _subcategory.setName(subcategory.getName());
-            subcategory = _subcategory;
-            return subcategoryRepository.save(subcategory);
+            subcategory = subcategoryRepository.save(_subcategory);
+            subcategoryChanged(toView(subcategory), oldName);
+            return subcategory;
         } else {
             return null;
         }
@@ -258,9 +980,11 @@ public class CatalogueService implements ICatalogue {
         var itm = itemRepository.findById(id);
         if(itm.isPresent()) {
             Item _item = itm.get();
+            var oldName = _item.getName();
             _item.setName(item.getName());
-            item = _item;
-            return itemRepository.save(item);
+            item = itemRepository.save(_item);
+            itemChanged(toView(item), oldName);
+            return item;
         } else {
             return null;
         }
@@ -280,7 +1004,17 @@ public class CatalogueService implements ICatalogue {
     public Category deleteCategory(Integer id) {
         var category = categoryRepository.findById(id);
         if (category.isPresent()) {
+            var tree = catalogueSnapshot.getTree();
+            var subcategoryIds = new HashSet<Integer>();
+            if (tree != null) {
+                tree.getSubcategories(id).forEach(subcategory -> subcategoryIds.add(subcategory.getId()));
+            } else {
+                subcategoryRepository.findAllByCategory(category.get())
+                        .forEach(subcategory -> subcategoryIds.add(subcategory.getId()));
+            }
+            var itemIds = itemIdsOf(subcategoryIds);
             categoryRepository.delete(category.get());
+            treeChanged(itemIds);
             return category.get();
         } else {
             return null;
@@ -301,7 +1035,9 @@ public class CatalogueService implements ICatalogue {
     public Subcategory deleteSubcategory(Integer id) {
         var subcategory = subcategoryRepository.findById(id);
         if (subcategory.isPresent()) {
+            var itemIds = itemIdsOf(List.of(id));
             subcategoryRepository.delete(subcategory.get());
+            treeChanged(itemIds);
             return subcategory.get();
         } else {
             return null;
@@ -323,9 +1059,418 @@ public class CatalogueService implements ICatalogue {
         var item = itemRepository.findById(id);
         if (item.isPresent()) {
             itemRepository.delete(item.get());
+            itemDeleted(toView(item.get()));
             return item.get();
         } else {
             return null;
         }
     }
+
+    /**
+     * Inicia la sesión de un usuario. Las credenciales se verifican contra la caché de
+     * credenciales, que consulta la tabla user por nombre solo al no tenerlo; según
+     * megawarez.session.mode la sesión queda en memoria (su escritura en la tabla session es
+     * diferida) o se emite un token firmado que no se guarda
+     *
+     * @param username Nombre del usuario
+     * @param password Contraseña del usuario
+     * @return Token de la sesión, null si las credenciales no coinciden
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Override
+    public String login(String username, String password) {
+        var userId = userCredentials.verify(username, password);
+        if (userId == null) {
+            return null;
+        }
+        return signedSessionTokens != null ? signedSessionTokens.issue(userId) : sessionStore.create(userId);
+    }
+
+    /**
+     * Valida el token de una sesión sin consultar la base de datos
+     *
+     * @param token Token de la sesión
+     * @return Identificador del usuario de la sesión, null si el token no es válido o venció
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Override
+    public Integer validateToken(String token) {
+        return signedSessionTokens != null ? signedSessionTokens.validate(token) : sessionStore.validate(token);
+    }
+
+    /**
+     * Cierra la sesión de un token
+     *
+     * @param token Token de la sesión
+     * @return false si la sesión no existía
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Override
+    public boolean logout(String token) {
+        return signedSessionTokens != null ? signedSessionTokens.revoke(token) : sessionStore.revoke(token);
+    }
+
+    /**
+     * Valida que el campo de ordenamiento sea uno de los soportados (name o createdAt)
+     *
+     * @param field Campo de ordenamiento
+     * @throws IllegalArgumentException si el campo no es soportado
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private void checkSortField(String field) {
+        if (!FIELD_NAME.equals(field) && !FIELD_CREATED_AT.equals(field)) {
+            throw new IllegalArgumentException("No es posible ordenar por el campo " + field);
+        }
+    }
+
+    /**
+     * Resuelve el identificador de una subcategoría a partir de su nombre y el de su categoría,
+     * usando la copia en memoria del catálogo cuando está disponible
+     *
+     * @param category Nombre de la categoría
+     * @param subcategory Nombre de la subcategoría
+     * @return Identificador de la subcategoría, null si no existe
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private Integer findSubcategoryId(String category, String subcategory) {
+        var tree = catalogueSnapshot.getTree();
+        if (tree != null) {
+            var view = tree.findSubcategory(category, subcategory);
+            return view == null ? null : view.getId();
+        }
+        return subcategoryRepository.findIdByCategoryNameAndName(category, subcategory).orElse(null);
+    }
+
+    /**
+     * Devuelve la descarga registrada con una llave de idempotencia que otra petición acaba de usar
+     *
+     * @param key Llave con alcance de usuario
+     * @param itemId Identificador del item de la petición
+     * @return Descarga registrada
+     * @throws IllegalStateException si la llave se liberó mientras tanto
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private DownloadRecord replay(String key, Integer itemId) {
+        return downloadIdempotencyRepository.find(key)
+                .map(existing -> replay(existing, itemId))
+                .orElseThrow(() -> new IllegalStateException("La llave de idempotencia está en uso, intente más tarde"));
+    }
+
+    /**
+     * Marca como repetida una descarga registrada con una llave de idempotencia
+     *
+     * @param existing Descarga registrada
+     * @param itemId Identificador del item de la petición
+     * @return Descarga repetida
+     * @throws IllegalArgumentException si la llave se usó para descargar otro item
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private DownloadRecord replay(DownloadRecord existing, Integer itemId) {
+        if (!existing.getItemId().equals(itemId)) {
+            throw new IllegalArgumentException("La llave de idempotencia ya se usó para otra descarga");
+        }
+        return new DownloadRecord(existing.getId(), existing.getUserId(), existing.getItemId(),
+                existing.getCreatedAt(), true);
+    }
+
+    /**
+     * Fecha mínima de una consulta de descargas
+     *
+     * @param since Fecha recibida, puede ser null
+     * @return Fecha recibida, el inicio del rango reciente si download está particionada o, si no,
+     * el inicio de los tiempos
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private Instant since(Instant since) {
+        if (since != null) {
+            return since;
+        }
+        return partitioned ? Instant.now().minus(recentRange) : Instant.EPOCH;
+    }
+
+    /**
+     * Convierte el valor de un cursor en una fecha
+     *
+     * @param value Valor del cursor
+     * @return Fecha del cursor
+     * @throws IllegalArgumentException si el valor no es una fecha válida
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private Instant parseInstant(String value) {
+        try {
+            return Instant.parse(value);
+        } catch (DateTimeParseException exception) {
+            throw new IllegalArgumentException("El cursor no es válido", exception);
+        }
+    }
+
+    /**
+     * Construye la página de resultados a partir de los items consultados (limit + 1)
+     *
+     * @param items Items consultados
+     * @param limit Tamaño de la página
+     * @param field Campo de ordenamiento usado para generar el cursor
+     * @return Página de items
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private KeysetPage<ItemView> toPage(List<ItemView> items, int limit, String field) {
+        if (items.size() <= limit) {
+            return new KeysetPage<>(items, null);
+        }
+        var page = new ArrayList<>(items.subList(0, limit));
+        var last = page.get(limit - 1);
+        var value = FIELD_NAME.equals(field) ? last.getName() : last.getCreatedAt().toString();
+        return new KeysetPage<>(page, PageCursor.encode(last.getId(), value));
+    }
+
+    /**
+     * Construye la página de descargas a partir de las descargas consultadas (limit + 1)
+     *
+     * @param downloads Descargas consultadas
+     * @param limit Tamaño de la página
+     * @return Página de descargas
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private KeysetPage<DownloadSummary> toDownloadPage(List<DownloadSummary> downloads, int limit) {
+        if (downloads.size() <= limit) {
+            return new KeysetPage<>(downloads, null);
+        }
+        var page = new ArrayList<>(downloads.subList(0, limit));
+        var last = page.get(limit - 1);
+        return new KeysetPage<>(page, PageCursor.encode(last.getId(), last.getCreatedAt().toString()));
+    }
+
+    /**
+     * Convierte un item en su vista de solo lectura
+     *
+     * @param item Objeto del item
+     * @return Vista del item
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private ItemView toView(Item item) {
+        var subcategory = item.getSubcategory();
+        return new ItemView(item.getId(), item.getName(), item.getCreatedAt(),
+                subcategory == null ? null : subcategory.getId());
+    }
+
+    /**
+     * Convierte una subcategoría en su vista de solo lectura
+     *
+     * @param subcategory Objeto de la subcategoría
+     * @return Vista de la subcategoría
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private SubcategoryView toView(Subcategory subcategory) {
+        var category = subcategory.getCategory();
+        return new SubcategoryView(subcategory.getId(), category == null ? null : category.getId(),
+                subcategory.getName(), subcategory.getCreatedAt());
+    }
+
+    /**
+     * Convierte una categoría en su vista de solo lectura
+     *
+     * @param category Objeto de la categoría
+     * @return Vista de la categoría
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private CategoryView toView(Category category) {
+        return new CategoryView(category.getId(), category.getName(), category.getCreatedAt());
+    }
+
+    /**
+     * Actualiza los contadores, tendencias y rollups en memoria con una descarga registrada
+     *
+     * @param download Descarga creada o encolada
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private void downloadRecorded(DownloadRecord download) {
+        downloadCounters.increment(download.getItemId());
+        trendingTracker.record(download.getItemId(), download.getCreatedAt().toEpochMilli());
+        var tree = catalogueSnapshot.getTree();
+        var item = tree == null ? null : tree.getItem(download.getItemId());
+        var subcategoryId = item != null
+                ? item.getSubcategoryId()
+                : itemRepository.findSubcategoryIdById(download.getItemId()).orElse(null);
+        if (subcategoryId != null) {
+            downloadRollups.record(download.getItemId(), subcategoryId, download.getCreatedAt());
+        }
+    }
+
+    /**
+     * Propaga la creación o modificación de un item a las estructuras en memoria cuando la transacción confirma
+     *
+     * @param item Vista del item guardado
+     * @param oldName Nombre anterior del item, null si es nuevo
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private void itemChanged(ItemView item, String oldName) {
+        afterCommit(() -> {
+            catalogueSnapshot.onItemSaved(item);
+            catalogueCache.onItemChanged(oldName, item.getName());
+            nameIndex.putItem(item.getId(), item.getName());
+            return itemSearchIndex.index(item);
+        });
+    }
+
+    /**
+     * Propaga el borrado de un item a las estructuras en memoria cuando la transacción confirma
+     *
+     * @param item Vista del item borrado
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private void itemDeleted(ItemView item) {
+        afterCommit(() -> {
+            catalogueSnapshot.onItemDeleted(item.getId());
+            catalogueCache.onItemChanged(item.getName());
+            nameIndex.removeItem(item.getId());
+            downloadCounters.remove(List.of(item.getId()));
+            return itemSearchIndex.remove(item.getId());
+        });
+    }
+
+    /**
+     * Propaga la creación o modificación de una subcategoría a las estructuras en memoria
+     * cuando la transacción confirma
+     *
+     * @param subcategory Vista de la subcategoría guardada
+     * @param oldName Nombre anterior de la subcategoría, null si es nueva
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private void subcategoryChanged(SubcategoryView subcategory, String oldName) {
+        afterCommit(() -> {
+            catalogueSnapshot.onSubcategorySaved(subcategory);
+            catalogueCache.onSubcategoryChanged(oldName, subcategory.getName());
+            nameIndex.putSubcategory(subcategory.getId(), subcategory.getName());
+            return oldName != null
+                    ? itemSearchIndex.reindexSubcategory(subcategory.getId())
+                    : CompletableFuture.completedFuture(null);
+        });
+    }
+
+    /**
+     * Propaga la creación o modificación de una categoría a las estructuras en memoria
+     * cuando la transacción confirma
+     *
+     * @param category Vista de la categoría guardada
+     * @param oldName Nombre anterior de la categoría, null si es nueva
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private void categoryChanged(CategoryView category, String oldName) {
+        afterCommit(() -> {
+            catalogueSnapshot.onCategorySaved(category);
+            catalogueCache.onCategoryChanged(oldName, category.getName());
+            nameIndex.putCategory(category.getId(), category.getName());
+            return oldName != null
+                    ? itemSearchIndex.reindexCategory(category.getId())
+                    : CompletableFuture.completedFuture(null);
+        });
+    }
+
+    /**
+     * Reconstruye las estructuras en memoria cuando la transacción confirma, usado en los borrados
+     * de categorías y subcategorías que eliminan en cascada tuplas que no se conocen aquí
+     *
+     * @param itemIds Identificadores de los items borrados en cascada
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private void treeChanged(List<Integer> itemIds) {
+        afterCommit(() -> {
+            catalogueSnapshot.reload();
+            catalogueCache.invalidateAll();
+            nameIndex.reload();
+            downloadCounters.remove(itemIds);
+            return itemSearchIndex.reload();
+        });
+    }
+
+    /**
+     * Identificadores de los items de varias subcategorías según la copia en memoria del catálogo,
+     * o según la base de datos si aún no está cargada; usado antes de un borrado en cascada
+     *
+     * @param subcategoryIds Identificadores de las subcategorías
+     * @return Identificadores de los items
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private List<Integer> itemIdsOf(Collection<Integer> subcategoryIds) {
+        if (subcategoryIds.isEmpty()) {
+            return List.of();
+        }
+        var tree = catalogueSnapshot.getTree();
+        if (tree == null) {
+            return itemRepository.findIdsBySubcategoryIds(subcategoryIds);
+        }
+        var itemIds = new ArrayList<Integer>();
+        for (var item : tree.getItems()) {
+            if (subcategoryIds.contains(item.getSubcategoryId())) {
+                itemIds.add(item.getId());
+            }
+        }
+        return itemIds;
+    }
+
+    /**
+     * Ejecuta una acción cuando la transacción actual confirma sus cambios,
+     * o de inmediato si no hay una transacción activa, y luego aumenta la versión del catálogo.
+     * La versión cambia después de actualizar las estructuras en memoria, incluido el índice de
+     * búsqueda que se escribe en su propio hilo, para que un ETag nuevo nunca acompañe datos anteriores
+     *
+     * @param action Acción a ejecutar, devuelve la escritura del índice de búsqueda
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private void afterCommit(Supplier<CompletableFuture<Void>> action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.get().whenComplete((result, exception) -> catalogueVersion.bump());
+                }
+            });
+        } else {
+            action.get().whenComplete((result, exception) -> catalogueVersion.bump());
+        }
+    }
 }
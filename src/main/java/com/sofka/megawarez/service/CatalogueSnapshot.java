@@ -0,0 +1,511 @@
+package com.sofka.megawarez.service;
+
+import com.sofka.megawarez.domain.projection.CategoryView;
+import com.sofka.megawarez.domain.projection.ItemView;
+import com.sofka.megawarez.domain.projection.SubcategoryView;
+import com.sofka.megawarez.repository.CategoryRepository;
+import com.sofka.megawarez.repository.ItemRepository;
+import com.sofka.megawarez.repository.SubcategoryRepository;
+import com.sofka.megawarez.utility.KeysetPage;
+import com.sofka.megawarez.utility.PageCursor;
+import com.sofka.megawarez.utility.TextNormalizer;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Copia inmutable en memoria del árbol Categoría → Subcategoría → Item.
+ * Las lecturas no usan bloqueos ni consultan la base de datos: leen la referencia volátil al árbol vigente.
+ * Cada escritura construye un árbol nuevo a partir del anterior (copy-on-write) y lo publica de forma atómica
+ *
+ * @version 1.0.0 2022-04-05
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+@Slf4j
+@Component
+public class CatalogueSnapshot {
+
+    /**
+     * Comparador de nombres equivalente a la intercalación utf8mb4_0900_ai_ci de la columna itm_name
+     * (la de MySQL 8 por defecto): ignora mayúsculas y tildes. Collator sincroniza cada comparación,
+     * por eso cada hilo usa su propia copia
+     */
+    private static final ThreadLocal<Collator> COLLATOR = ThreadLocal.withInitial(() -> {
+        var collator = Collator.getInstance(Locale.ROOT);
+        collator.setStrength(Collator.PRIMARY);
+        return collator;
+    });
+
+    /**
+     * Orden de los items en el índice: nombre y luego identificador, el mismo de la base de datos
+     * para que los cursores de las páginas sirvan en ambos
+     */
+    private static final Comparator<ItemView> BY_NAME = Comparator
+            .comparing(ItemView::getName, (left, right) -> COLLATOR.get().compare(left, right))
+            .thenComparing(ItemView::getId);
+
+    /**
+     * Orden de los items por identificador
+     */
+    private static final Comparator<ItemView> BY_ID = Comparator.comparing(ItemView::getId);
+
+    /**
+     * Repositorio de Categoría
+     */
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    /**
+     * Repositorio de Subcategoría
+     */
+    @Autowired
+    private SubcategoryRepository subcategoryRepository;
+
+    /**
+     * Repositorio de Item
+     */
+    @Autowired
+    private ItemRepository itemRepository;
+
+    /**
+     * Árbol vigente, null mientras no se haya construido
+     */
+    private volatile Tree tree;
+
+    /**
+     * Construye el árbol al iniciar la aplicación
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Order(1)
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        reload();
+    }
+
+    /**
+     * Indica si el árbol ya fue construido y puede atender lecturas
+     *
+     * @return true si el árbol está disponible
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public boolean isReady() {
+        return tree != null;
+    }
+
+    /**
+     * Devuelve el árbol vigente
+     *
+     * @return Árbol del catálogo, null si aún no fue construido
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public Tree getTree() {
+        return tree;
+    }
+
+    /**
+     * Vuelve a construir el árbol completo desde la base de datos
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public synchronized void reload() {
+        var categories = categoryRepository.findAllViews();
+        var subcategories = subcategoryRepository.findAllViews();
+        var items = itemRepository.findAllViews();
+        tree = new Tree(categories, subcategories, items.toArray(new ItemView[0]));
+        log.info("Catálogo en memoria construido: {} categorías, {} subcategorías, {} items",
+                categories.size(), subcategories.size(), items.size());
+    }
+
+    /**
+     * Publica un árbol nuevo con el item creado o actualizado. Las posiciones de reemplazo e
+     * inserción se ubican con búsquedas binarias, el árbol nuevo solo copia los arreglos de items
+     *
+     * @param item Vista del item
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public synchronized void onItemSaved(ItemView item) {
+        var current = tree;
+        if (current == null) {
+            return;
+        }
+        var itemsByName = current.itemsByName;
+        var itemsById = current.itemsById;
+        var previous = current.getItem(item.getId());
+        if (previous != null) {
+            itemsByName = remove(itemsByName, Arrays.binarySearch(itemsByName, previous, BY_NAME));
+            itemsById = remove(itemsById, Arrays.binarySearch(itemsById, previous, BY_ID));
+        }
+        itemsByName = insert(itemsByName, item, BY_NAME);
+        itemsById = insert(itemsById, item, BY_ID);
+        tree = new Tree(current, itemsByName, itemsById);
+    }
+
+    /**
+     * Publica un árbol nuevo sin el item borrado, ubicado con búsquedas binarias
+     *
+     * @param id Identificador del item borrado
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public synchronized void onItemDeleted(Integer id) {
+        var current = tree;
+        var item = current == null ? null : current.getItem(id);
+        if (item == null) {
+            return;
+        }
+        tree = new Tree(current,
+                remove(current.itemsByName, Arrays.binarySearch(current.itemsByName, item, BY_NAME)),
+                remove(current.itemsById, Arrays.binarySearch(current.itemsById, item, BY_ID)));
+    }
+
+    /**
+     * Publica un árbol nuevo con la categoría creada o actualizada
+     *
+     * @param category Vista de la categoría
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public synchronized void onCategorySaved(CategoryView category) {
+        var current = tree;
+        if (current == null) {
+            return;
+        }
+        var categories = new ArrayList<CategoryView>(current.categories.size() + 1);
+        for (var existing : current.categories) {
+            if (!existing.getId().equals(category.getId())) {
+                categories.add(existing);
+            }
+        }
+        categories.add(category);
+        tree = new Tree(categories, current.subcategories, current.itemsByName, current.itemsById);
+    }
+
+    /**
+     * Publica un árbol nuevo con la subcategoría creada o actualizada
+     *
+     * @param subcategory Vista de la subcategoría
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public synchronized void onSubcategorySaved(SubcategoryView subcategory) {
+        var current = tree;
+        if (current == null) {
+            return;
+        }
+        var subcategories = new ArrayList<SubcategoryView>(current.subcategories.size() + 1);
+        for (var existing : current.subcategories) {
+            if (!existing.getId().equals(subcategory.getId())) {
+                subcategories.add(existing);
+            }
+        }
+        subcategories.add(subcategory);
+        tree = new Tree(current.categories, subcategories, current.itemsByName, current.itemsById);
+    }
+
+    /**
+     * Copia un arreglo ordenado agregando un elemento en su posición
+     *
+     * @param items Arreglo ordenado
+     * @param item Elemento a agregar, no debe estar en el arreglo
+     * @param order Orden del arreglo
+     * @return Arreglo nuevo
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private static ItemView[] insert(ItemView[] items, ItemView item, Comparator<ItemView> order) {
+        var position = -Arrays.binarySearch(items, item, order) - 1;
+        var result = new ItemView[items.length + 1];
+        System.arraycopy(items, 0, result, 0, position);
+        result[position] = item;
+        System.arraycopy(items, position, result, position + 1, items.length - position);
+        return result;
+    }
+
+    /**
+     * Copia un arreglo quitando el elemento de una posición
+     *
+     * @param items Arreglo
+     * @param position Posición del elemento a quitar
+     * @return Arreglo nuevo
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private static ItemView[] remove(ItemView[] items, int position) {
+        var result = new ItemView[items.length - 1];
+        System.arraycopy(items, 0, result, 0, position);
+        System.arraycopy(items, position + 1, result, position, items.length - position - 1);
+        return result;
+    }
+
+    /**
+     * Árbol inmutable del catálogo
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public static final class Tree {
+
+        /**
+         * Categorías del catálogo
+         */
+        @Getter
+        private final List<CategoryView> categories;
+
+        /**
+         * Subcategorías del catálogo
+         */
+        @Getter
+        private final List<SubcategoryView> subcategories;
+
+        /**
+         * Items ordenados por nombre e identificador
+         */
+        private final ItemView[] itemsByName;
+
+        /**
+         * Items ordenados por identificador, para buscarlos con una búsqueda binaria
+         */
+        private final ItemView[] itemsById;
+
+        /**
+         * Subcategorías por identificador
+         */
+        private final Map<Integer, SubcategoryView> subcategoriesById;
+
+        /**
+         * Subcategorías agrupadas por el identificador de su categoría
+         */
+        private final Map<Integer, List<SubcategoryView>> subcategoriesByCategory;
+
+        /**
+         * Constructor del árbol completo, ordena los items
+         *
+         * @param categories Categorías
+         * @param subcategories Subcategorías
+         * @param items Items en cualquier orden
+         *
+         * @author Lorena Castro <Lcastro0398@gmail.com>
+         * @since 1.0.0
+         */
+        private Tree(List<CategoryView> categories, List<SubcategoryView> subcategories, ItemView[] items) {
+            this(categories, subcategories, sorted(items, BY_NAME), sorted(items, BY_ID));
+        }
+
+        /**
+         * Constructor de un árbol con los items de otro cambiados, comparte las categorías y
+         * subcategorías del anterior
+         *
+         * @param base Árbol anterior
+         * @param itemsByName Items ordenados por nombre e identificador
+         * @param itemsById Items ordenados por identificador
+         *
+         * @author Lorena Castro <Lcastro0398@gmail.com>
+         * @since 1.0.0
+         */
+        private Tree(Tree base, ItemView[] itemsByName, ItemView[] itemsById) {
+            this.categories = base.categories;
+            this.subcategories = base.subcategories;
+            this.subcategoriesById = base.subcategoriesById;
+            this.subcategoriesByCategory = base.subcategoriesByCategory;
+            this.itemsByName = itemsByName;
+            this.itemsById = itemsById;
+        }
+
+        /**
+         * Constructor del árbol
+         *
+         * @param categories Categorías
+         * @param subcategories Subcategorías
+         * @param itemsByName Items ordenados por nombre e identificador
+         * @param itemsById Los mismos items ordenados por identificador
+         *
+         * @author Lorena Castro <Lcastro0398@gmail.com>
+         * @since 1.0.0
+         */
+        private Tree(List<CategoryView> categories, List<SubcategoryView> subcategories,
+                     ItemView[] itemsByName, ItemView[] itemsById) {
+            this.categories = Collections.unmodifiableList(new ArrayList<>(categories));
+            this.subcategories = Collections.unmodifiableList(new ArrayList<>(subcategories));
+            this.itemsByName = itemsByName;
+            this.itemsById = itemsById;
+            var byId = new HashMap<Integer, SubcategoryView>();
+            var byCategory = new HashMap<Integer, List<SubcategoryView>>();
+            for (var subcategory : subcategories) {
+                byId.put(subcategory.getId(), subcategory);
+                byCategory.computeIfAbsent(subcategory.getCategoryId(), key -> new ArrayList<>()).add(subcategory);
+            }
+            byCategory.replaceAll((key, value) -> Collections.unmodifiableList(value));
+            this.subcategoriesById = Collections.unmodifiableMap(byId);
+            this.subcategoriesByCategory = Collections.unmodifiableMap(byCategory);
+        }
+
+        /**
+         * Devuelve todos los items ordenados por nombre e identificador
+         *
+         * @return Listado de solo lectura de items
+         *
+         * @author Lorena Castro <Lcastro0398@gmail.com>
+         * @since 1.0.0
+         */
+        public List<ItemView> getItems() {
+            return Collections.unmodifiableList(Arrays.asList(itemsByName));
+        }
+
+        /**
+         * Devuelve un item por su identificador
+         *
+         * @param id Identificador del item
+         * @return Vista del item, null si no existe
+         *
+         * @author Lorena Castro <Lcastro0398@gmail.com>
+         * @since 1.0.0
+         */
+        public ItemView getItem(Integer id) {
+            var low = 0;
+            var high = itemsById.length - 1;
+            while (low <= high) {
+                var middle = (low + high) >>> 1;
+                var item = itemsById[middle];
+                var comparison = item.getId().compareTo(id);
+                if (comparison == 0) {
+                    return item;
+                }
+                if (comparison < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Devuelve una subcategoría por su identificador
+         *
+         * @param id Identificador de la subcategoría
+         * @return Vista de la subcategoría, null si no existe
+         *
+         * @author Lorena Castro <Lcastro0398@gmail.com>
+         * @since 1.0.0
+         */
+        public SubcategoryView getSubcategory(Integer id) {
+            return subcategoriesById.get(id);
+        }
+
+        /**
+         * Devuelve las subcategorías de una categoría
+         *
+         * @param categoryId Identificador de la categoría
+         * @return Listado de subcategorías
+         *
+         * @author Lorena Castro <Lcastro0398@gmail.com>
+         * @since 1.0.0
+         */
+        public List<SubcategoryView> getSubcategories(Integer categoryId) {
+            return subcategoriesByCategory.getOrDefault(categoryId, Collections.emptyList());
+        }
+
+        /**
+         * Busca una subcategoría por su nombre y el nombre de su categoría, sin distinguir mayúsculas ni tildes
+         *
+         * @param categoryName Nombre de la categoría
+         * @param subcategoryName Nombre de la subcategoría
+         * @return Vista de la subcategoría, null si no existe
+         *
+         * @author Lorena Castro <Lcastro0398@gmail.com>
+         * @since 1.0.0
+         */
+        public SubcategoryView findSubcategory(String categoryName, String subcategoryName) {
+            var category = TextNormalizer.normalize(categoryName);
+            var subcategory = TextNormalizer.normalize(subcategoryName);
+            for (var candidate : categories) {
+                if (TextNormalizer.normalize(candidate.getName()).equals(category)) {
+                    for (var child : getSubcategories(candidate.getId())) {
+                        if (TextNormalizer.normalize(child.getName()).equals(subcategory)) {
+                            return child;
+                        }
+                    }
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Cantidad de items del catálogo
+         *
+         * @return Cantidad de items
+         *
+         * @author Lorena Castro <Lcastro0398@gmail.com>
+         * @since 1.0.0
+         */
+        public int size() {
+            return itemsByName.length;
+        }
+
+        /**
+         * Devuelve la página de items ordenados por nombre posterior al cursor,
+         * la posición de inicio se ubica con una búsqueda binaria
+         *
+         * @param cursor Cursor de la página anterior, null para la primera página
+         * @param limit Tamaño de la página
+         * @return Página de items
+         *
+         * @author Lorena Castro <Lcastro0398@gmail.com>
+         * @since 1.0.0
+         */
+        public KeysetPage<ItemView> page(PageCursor cursor, int limit) {
+            var from = 0;
+            if (cursor != null) {
+                var probe = new ItemView(cursor.getId(), cursor.getValue(), null, null);
+                var position = Arrays.binarySearch(itemsByName, probe, BY_NAME);
+                from = position >= 0 ? position + 1 : -position - 1;
+            }
+            var to = Math.min(from + limit, itemsByName.length);
+            var page = Arrays.asList(Arrays.copyOfRange(itemsByName, from, to));
+            String next = null;
+            if (to < itemsByName.length && !page.isEmpty()) {
+                var last = page.get(page.size() - 1);
+                next = PageCursor.encode(last.getId(), last.getName());
+            }
+            return new KeysetPage<>(page, next);
+        }
+
+        /**
+         * Copia ordenada de un arreglo de items
+         */
+        private static ItemView[] sorted(ItemView[] items, Comparator<ItemView> order) {
+            var copy = items.clone();
+            Arrays.sort(copy, order);
+            return copy;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.sofka.megawarez.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+
+/**
+ * Versión del catálogo: un contador que aumenta con cada escritura confirmada y con el que se
+ * construyen los ETag y Last-Modified de las lecturas, de modo que una petición condicional
+ * se responde con 304 sin consultar la base de datos ni serializar nada
+ *
+ * @version 1.0.0 2022-04-06
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+@Component
+public class CatalogueVersion {
+
+    /**
+     * Identificador del arranque de la aplicación, evita que un ETag emitido antes de un reinicio
+     * coincida con la misma versión después de él
+     */
+    private final String bootId = Long.toString(System.currentTimeMillis(), 36);
+
+    /**
+     * Estampa vigente, se reemplaza completa para que versión, ETag y fecha sean consistentes
+     */
+    private volatile Stamp current = new Stamp(0, etag(0), truncate(Instant.now().toEpochMilli()));
+
+    /**
+     * Devuelve la estampa vigente del catálogo
+     *
+     * @return Estampa con la versión, el ETag y la fecha de última modificación
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public Stamp getCurrent() {
+        return current;
+    }
+
+    /**
+     * Aumenta la versión del catálogo, se llama después de aplicar cada escritura confirmada.
+     * Last-Modified tiene precisión de segundos y nunca es posterior al momento actual, así que dos
+     * escrituras dentro del mismo segundo comparten la fecha; el ETag sí las distingue y los
+     * clientes que lo envían en If-None-Match no dependen de la fecha
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public synchronized void bump() {
+        var version = current.version + 1;
+        var lastModified = Math.max(truncate(Instant.now().toEpochMilli()), current.lastModified);
+        current = new Stamp(version, etag(version), lastModified);
+    }
+
+    /**
+     * Construye el ETag de una versión. Es débil porque la misma versión se entrega comprimida con
+     * gzip o sin comprimir, y un ETag fuerte solo puede identificar una representación exacta
+     *
+     * @param version Versión del catálogo
+     * @return ETag débil (W/ y el valor entre comillas)
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private String etag(long version) {
+        return "W/\"" + bootId + "-" + version + "\"";
+    }
+
+    /**
+     * Trunca una fecha en milisegundos a segundos completos
+     *
+     * @param millis Fecha en milisegundos
+     * @return Fecha truncada
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private static long truncate(long millis) {
+        return millis - millis % 1000;
+    }
+
+    /**
+     * Versión del catálogo junto con su ETag y fecha de última modificación
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Getter
+    @AllArgsConstructor
+    public static final class Stamp {
+
+        /**
+         * Número de versión
+         */
+        private final long version;
+
+        /**
+         * ETag débil de la versión
+         */
+        private final String etag;
+
+        /**
+         * Fecha de última modificación en milisegundos
+         */
+        private final long lastModified;
+    }
+}
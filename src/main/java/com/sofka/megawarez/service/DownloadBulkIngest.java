@@ -0,0 +1,400 @@
+package com.sofka.megawarez.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sofka.megawarez.domain.projection.DownloadRecord;
+import com.sofka.megawarez.repository.DownloadBatchRepository;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Ingreso masivo de descargas en formato NDJSON: una descarga por línea, por ejemplo
+ * {"userId": 1, "itemId": 2, "createdAt": "2022-04-06T10:15:30Z"} (createdAt es opcional).
+ *
+ * El cuerpo se lee línea por línea a medida que llega. Las líneas válidas se acumulan hasta
+ * completar un lote, los usuarios e items del lote se verifican con una consulta cada uno y las
+ * descargas válidas se insertan en un lote JDBC. La memoria usada depende del tamaño del lote y
+ * no de la cantidad de líneas. Los errores se informan con su número de línea, hasta un máximo;
+ * los demás solo se cuentan.
+ *
+ * Si la base de datos falla a mitad del cuerpo el ingreso se detiene y el resumen indica la línea
+ * desde la que hay que reenviar: las anteriores ya quedaron insertadas o rechazadas
+ *
+ * @version 1.0.0 2022-04-06
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+@Component
+public class DownloadBulkIngest {
+
+    /**
+     * Longitud máxima de una línea en caracteres
+     */
+    private static final int MAX_LINE_LENGTH = 1024;
+
+    /**
+     * Cantidad máxima de errores informados con su línea
+     */
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    /**
+     * Tolerancia para fechas de descarga en el futuro (diferencia de reloj de los nodos)
+     */
+    private static final Duration CLOCK_SKEW = Duration.ofMinutes(5);
+
+    /**
+     * Repositorio JDBC de descargas
+     */
+    @Autowired
+    private DownloadBatchRepository downloadBatchRepository;
+
+    /**
+     * Verificación por lotes de usuarios e items
+     */
+    @Autowired
+    private DownloadValidator downloadValidator;
+
+    /**
+     * Conversor JSON
+     */
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * Cantidad máxima de descargas por lote
+     */
+    @Value("${megawarez.download.batch-size:500}")
+    private int batchSize;
+
+    /**
+     * Lee el cuerpo NDJSON e inserta las descargas válidas por lotes
+     *
+     * @param body Cuerpo de la petición
+     * @param onInserted Acción a ejecutar por cada descarga insertada
+     * @return Resumen del ingreso con los errores por línea, interrumpido si falla la base de datos
+     * @throws IOException si falla la lectura del cuerpo
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public Report ingest(InputStream body, Consumer<DownloadRecord> onInserted) throws IOException {
+        var report = new Report();
+        var batch = new Batch(batchSize);
+        var reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        var line = new StringBuilder(MAX_LINE_LENGTH);
+        var lineNumber = 0L;
+        var eof = false;
+        while (!eof) {
+            line.setLength(0);
+            var overflow = false;
+            int character;
+            while ((character = reader.read()) != -1 && character != '\n') {
+                if (line.length() < MAX_LINE_LENGTH) {
+                    line.append((char) character);
+                } else {
+                    overflow = true;
+                }
+            }
+            eof = character == -1;
+            lineNumber++;
+            if (overflow) {
+                report.received++;
+                report.reject(lineNumber, "La línea supera los " + MAX_LINE_LENGTH + " caracteres");
+                continue;
+            }
+            var text = line.toString().trim();
+            if (text.isEmpty()) {
+                continue;
+            }
+            report.received++;
+            try {
+                batch.add(lineNumber, parse(text));
+            } catch (IllegalArgumentException exception) {
+                report.reject(lineNumber, exception.getMessage());
+                continue;
+            }
+            if (batch.size() >= batchSize && !write(batch, report, onInserted)) {
+                return report;
+            }
+        }
+        write(batch, report, onInserted);
+        return report;
+    }
+
+    /**
+     * Convierte una línea en una descarga
+     *
+     * @param text Línea sin espacios al inicio ni al final
+     * @return Descarga
+     * @throws IllegalArgumentException si la línea no es una descarga válida
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private DownloadRecord parse(String text) {
+        JsonNode node;
+        try {
+            node = objectMapper.readTree(text);
+        } catch (JsonProcessingException exception) {
+            throw new IllegalArgumentException("JSON inválido");
+        }
+        if (node == null || !node.isObject()) {
+            throw new IllegalArgumentException("La línea debe ser un objeto JSON");
+        }
+        var userId = node.get("userId");
+        var itemId = node.get("itemId");
+        if (userId == null || !userId.canConvertToInt() || !userId.isIntegralNumber()) {
+            throw new IllegalArgumentException("userId debe ser un número entero");
+        }
+        if (itemId == null || !itemId.canConvertToInt() || !itemId.isIntegralNumber()) {
+            throw new IllegalArgumentException("itemId debe ser un número entero");
+        }
+        var now = Instant.now();
+        var createdAt = now;
+        var value = node.get("createdAt");
+        if (value != null && !value.isNull()) {
+            try {
+                createdAt = Instant.parse(value.asText());
+            } catch (DateTimeParseException exception) {
+                throw new IllegalArgumentException("createdAt debe ser una fecha ISO-8601");
+            }
+            if (createdAt.isAfter(now.plus(CLOCK_SKEW))) {
+                throw new IllegalArgumentException("createdAt está en el futuro");
+            }
+        }
+        return new DownloadRecord(null, userId.intValue(), itemId.intValue(), createdAt);
+    }
+
+    /**
+     * Verifica los usuarios e items del lote, inserta las descargas válidas y vacía el lote.
+     * Si la inserción falla por una fila inválida (por ejemplo un item borrado después de la
+     * verificación) el lote se inserta fila por fila. Si falla la base de datos el resumen se
+     * interrumpe en la primera línea que no quedó insertada ni rechazada
+     *
+     * @param batch Lote de descargas
+     * @param report Resumen del ingreso
+     * @param onInserted Acción a ejecutar por cada descarga insertada
+     * @return false si la base de datos falló y el ingreso debe detenerse
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private boolean write(Batch batch, Report report, Consumer<DownloadRecord> onInserted) {
+        if (batch.size() == 0) {
+            return true;
+        }
+        var resumeLine = batch.lines.get(0);
+        try {
+            insert(batch, report, onInserted);
+            return true;
+        } catch (InterruptedWrite exception) {
+            report.interrupt(exception.line, exception.getCause());
+            return false;
+        } catch (DataAccessException exception) {
+            report.interrupt(resumeLine, exception);
+            return false;
+        } finally {
+            batch.clear();
+        }
+    }
+
+    /**
+     * Verifica e inserta el lote
+     *
+     * @param batch Lote de descargas
+     * @param report Resumen del ingreso
+     * @param onInserted Acción a ejecutar por cada descarga insertada
+     * @throws InterruptedWrite si falla la base de datos después de insertar alguna fila del lote
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private void insert(Batch batch, Report report, Consumer<DownloadRecord> onInserted) {
+        var userIds = new HashSet<Integer>();
+        var itemIds = new HashSet<Integer>();
+        for (var download : batch.downloads) {
+            userIds.add(download.getUserId());
+            itemIds.add(download.getItemId());
+        }
+        var users = downloadValidator.existingUsers(userIds);
+        var items = downloadValidator.existingItems(itemIds);
+        var valid = new Batch(batch.size());
+        for (var i = 0; i < batch.size(); i++) {
+            var download = batch.downloads.get(i);
+            if (!users.contains(download.getUserId())) {
+                report.reject(batch.lines.get(i), "El usuario no existe");
+            } else if (!items.contains(download.getItemId())) {
+                report.reject(batch.lines.get(i), "El item no existe");
+            } else {
+                valid.add(batch.lines.get(i), download);
+            }
+        }
+        if (valid.size() == 0) {
+            return;
+        }
+        try {
+            downloadBatchRepository.insertAll(valid.downloads);
+            report.inserted += valid.size();
+            valid.downloads.forEach(onInserted);
+        } catch (DataIntegrityViolationException exception) {
+            for (var i = 0; i < valid.size(); i++) {
+                var download = valid.downloads.get(i);
+                try {
+                    downloadBatchRepository.insert(download);
+                    report.inserted++;
+                    onInserted.accept(download);
+                } catch (DataIntegrityViolationException rowException) {
+                    report.reject(valid.lines.get(i), "El usuario o el item no existe");
+                } catch (DataAccessException rowException) {
+                    throw new InterruptedWrite(valid.lines.get(i), rowException);
+                }
+            }
+        }
+    }
+
+    /**
+     * Falla de la base de datos al insertar fila por fila, con la línea desde la que reenviar
+     */
+    private static final class InterruptedWrite extends RuntimeException {
+
+        private final long line;
+
+        private InterruptedWrite(long line, DataAccessException cause) {
+            super(cause);
+            this.line = line;
+        }
+    }
+
+    /**
+     * Lote de descargas con el número de línea de cada una
+     */
+    private static final class Batch {
+
+        private final List<DownloadRecord> downloads;
+        private final List<Long> lines;
+
+        private Batch(int capacity) {
+            this.downloads = new ArrayList<>(capacity);
+            this.lines = new ArrayList<>(capacity);
+        }
+
+        private void add(long line, DownloadRecord download) {
+            lines.add(line);
+            downloads.add(download);
+        }
+
+        private int size() {
+            return downloads.size();
+        }
+
+        private void clear() {
+            downloads.clear();
+            lines.clear();
+        }
+    }
+
+    /**
+     * Resumen de un ingreso masivo
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Getter
+    public static final class Report {
+
+        /**
+         * Cantidad de líneas no vacías recibidas
+         */
+        private long received;
+
+        /**
+         * Cantidad de descargas insertadas
+         */
+        private long inserted;
+
+        /**
+         * Cantidad de líneas rechazadas
+         */
+        private long rejected;
+
+        /**
+         * Errores por línea, a lo sumo MAX_REPORTED_ERRORS
+         */
+        private final List<LineError> errors = new ArrayList<>();
+
+        /**
+         * Línea desde la que hay que reenviar el cuerpo si el ingreso se interrumpió, null si se
+         * procesó completo. Los rechazos de esa línea en adelante se vuelven a informar al reenviar
+         */
+        private Long resumeLine;
+
+        /**
+         * Causa de la interrupción, null si se procesó completo
+         */
+        private String failure;
+
+        private void reject(long line, String message) {
+            rejected++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new LineError(line, message));
+            }
+        }
+
+        private void interrupt(long line, Throwable cause) {
+            resumeLine = line;
+            failure = cause.getMessage();
+        }
+
+        /**
+         * Indica si el ingreso se interrumpió por una falla de la base de datos
+         *
+         * @return true si hay que reenviar desde resumeLine
+         *
+         * @author Lorena Castro <Lcastro0398@gmail.com>
+         * @since 1.0.0
+         */
+        public boolean isInterrupted() {
+            return resumeLine != null;
+        }
+    }
+
+    /**
+     * Error de una línea del cuerpo
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Getter
+    @AllArgsConstructor
+    public static final class LineError {
+
+        /**
+         * Número de línea, empezando en 1
+         */
+        private final long line;
+
+        /**
+         * Descripción del error
+         */
+        private final String message;
+    }
+}
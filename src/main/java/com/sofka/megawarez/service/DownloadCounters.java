@@ -0,0 +1,152 @@
+package com.sofka.megawarez.service;
+
+import com.sofka.megawarez.repository.DownloadCountRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contadores de descargas por item en memoria. Cada contador usa celdas LongAdder, de modo que
+ * muchas descargas simultáneas del mismo item no compiten por una sola variable, y la lectura
+ * es una suma de pocas celdas. Los incrementos se suman periódicamente a la tabla download_count
+ *
+ * @version 1.0.0 2022-04-06
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+@Slf4j
+@Component
+public class DownloadCounters {
+
+    /**
+     * Repositorio JDBC de los contadores
+     */
+    @Autowired
+    private DownloadCountRepository downloadCountRepository;
+
+    /**
+     * Contadores por identificador de item
+     */
+    private final ConcurrentHashMap<Integer, Counter> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Carga los contadores guardados antes de atender peticiones
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @PostConstruct
+    public void load() {
+        downloadCountRepository.findAll().forEach((itemId, count) -> counter(itemId).total.add(count));
+        log.info("Contadores de descargas cargados: {} items", counters.size());
+    }
+
+    /**
+     * Cuenta una descarga de un item
+     *
+     * @param itemId Identificador del item
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public void increment(Integer itemId) {
+        var counter = counter(itemId);
+        counter.total.increment();
+        counter.unflushed.increment();
+    }
+
+    /**
+     * Devuelve la cantidad de descargas de un item
+     *
+     * @param itemId Identificador del item
+     * @return Cantidad de descargas
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public long get(Integer itemId) {
+        var counter = counters.get(itemId);
+        return counter == null ? 0 : counter.total.sum();
+    }
+
+    /**
+     * Olvida los contadores de items borrados. Usa el mismo bloqueo que el volcado, así un volcado
+     * en curso no vuelve a crear la fila de un item después de borrarla
+     *
+     * @param itemIds Identificadores de los items
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public synchronized void remove(Collection<Integer> itemIds) {
+        if (itemIds.isEmpty()) {
+            return;
+        }
+        itemIds.forEach(counters::remove);
+        downloadCountRepository.delete(itemIds);
+    }
+
+    /**
+     * Suma a la base de datos los incrementos acumulados desde el último volcado, en un solo lote.
+     * Si la escritura falla los incrementos se devuelven a sus contadores para el siguiente intento
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${megawarez.download.count-flush-interval:PT5S}")
+    public synchronized void flush() {
+        var deltas = new HashMap<Integer, Long>();
+        counters.forEach((itemId, counter) -> {
+            var delta = counter.unflushed.sumThenReset();
+            if (delta != 0) {
+                deltas.put(itemId, delta);
+            }
+        });
+        if (deltas.isEmpty()) {
+            return;
+        }
+        try {
+            downloadCountRepository.increment(deltas);
+        } catch (DataAccessException exception) {
+            log.warn("No se pudieron guardar los contadores de {} items: {}", deltas.size(), exception.getMessage());
+            // Un item borrado mientras tanto ya no tiene contador y sus incrementos se descartan
+            deltas.forEach((itemId, delta) -> {
+                var counter = counters.get(itemId);
+                if (counter != null) {
+                    counter.unflushed.add(delta);
+                }
+            });
+        }
+    }
+
+    /**
+     * Devuelve el contador de un item, creándolo si no existe
+     *
+     * @param itemId Identificador del item
+     * @return Contador
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private Counter counter(Integer itemId) {
+        return counters.computeIfAbsent(itemId, key -> new Counter());
+    }
+
+    /**
+     * Contador de un item: el total visible y los incrementos que aún no se han guardado
+     */
+    private static final class Counter {
+        private final LongAdder total = new LongAdder();
+        private final LongAdder unflushed = new LongAdder();
+    }
+}
@@ -0,0 +1,187 @@
+package com.sofka.megawarez.service;
+
+import com.sofka.megawarez.repository.DownloadIdempotencyRepository;
+import com.sofka.megawarez.utility.BloomFilter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Filtro de llaves de idempotencia de la creación de descargas. Guarda las llaves recientes en
+ * filtros de Bloom por ventana de tiempo: la ventana vigente y la anterior. Al empezar una ventana
+ * nueva se descarta el filtro más antiguo, así que la memoria es fija (dos filtros) y cada llave
+ * se recuerda entre una y dos ventanas.
+ *
+ * Una llave que el filtro no contiene es nueva con seguridad y no requiere consultar la base de
+ * datos; solo los posibles aciertos se verifican contra download_idempotency. Las filas de esa
+ * tabla se borran después de dos ventanas
+ *
+ * @version 1.0.0 2022-04-06
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+@Slf4j
+@Component
+public class DownloadIdempotency {
+
+    /**
+     * Longitud máxima de una llave recibida
+     */
+    public static final int MAX_KEY_LENGTH = 64;
+
+    /**
+     * Repositorio JDBC de las llaves
+     */
+    @Autowired
+    private DownloadIdempotencyRepository downloadIdempotencyRepository;
+
+    /**
+     * Duración de cada ventana en milisegundos
+     */
+    private final long windowMillis;
+
+    /**
+     * Cantidad esperada de llaves por ventana
+     */
+    private final long expectedKeys;
+
+    /**
+     * Probabilidad de falso positivo de cada filtro
+     */
+    private final double falsePositiveRate;
+
+    /**
+     * Ventana vigente y anterior, se reemplazan juntas al rotar
+     */
+    private volatile Generation current;
+    private volatile Generation previous;
+
+    /**
+     * Constructor de la clase
+     *
+     * @param window Duración de cada ventana
+     * @param expectedKeys Cantidad esperada de llaves por ventana
+     * @param falsePositiveRate Probabilidad de falso positivo de cada filtro
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public DownloadIdempotency(
+            @Value("${megawarez.download.idempotency.window:PT10M}") Duration window,
+            @Value("${megawarez.download.idempotency.expected-keys:1000000}") long expectedKeys,
+            @Value("${megawarez.download.idempotency.false-positive-rate:0.01}") double falsePositiveRate
+    ) {
+        this.windowMillis = window.toMillis();
+        this.expectedKeys = expectedKeys;
+        this.falsePositiveRate = falsePositiveRate;
+        this.current = new Generation(System.currentTimeMillis() / windowMillis, expectedKeys, falsePositiveRate);
+        this.previous = current;
+    }
+
+    /**
+     * Agrega al nombre de la llave el usuario que la envía, así dos usuarios pueden usar la misma llave
+     *
+     * @param userId Identificador del usuario
+     * @param key Llave recibida
+     * @return Llave con alcance de usuario
+     * @throws IllegalArgumentException si la llave está vacía o es demasiado larga
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public String scope(Integer userId, String key) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException(
+                    "La llave de idempotencia debe tener entre 1 y " + MAX_KEY_LENGTH + " caracteres");
+        }
+        return userId + ":" + key;
+    }
+
+    /**
+     * Indica si la llave posiblemente ya se usó en la ventana vigente o en la anterior
+     *
+     * @param key Llave con alcance de usuario
+     * @return false si la llave con seguridad no se usó recientemente
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public boolean mightContain(String key) {
+        rotate();
+        return current.filter.mightContain(key) || previous.filter.mightContain(key);
+    }
+
+    /**
+     * Recuerda una llave en la ventana vigente
+     *
+     * @param key Llave con alcance de usuario
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public void put(String key) {
+        rotate();
+        current.filter.put(key);
+    }
+
+    /**
+     * Borra de la base de datos las llaves de más de dos ventanas, que el filtro ya olvidó
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Scheduled(fixedDelayString = "${megawarez.download.idempotency.purge-interval:PT1M}")
+    public void purge() {
+        try {
+            var deleted = downloadIdempotencyRepository.deleteBefore(
+                    Instant.now().minusMillis(2 * windowMillis));
+            if (deleted > 0) {
+                log.debug("Llaves de idempotencia vencidas borradas: {}", deleted);
+            }
+        } catch (DataAccessException exception) {
+            log.warn("No se pudieron borrar las llaves de idempotencia vencidas: {}", exception.getMessage());
+        }
+    }
+
+    /**
+     * Cambia de ventana si la vigente ya terminó. Si pasaron dos ventanas o más sin actividad
+     * ambas se descartan
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private void rotate() {
+        var slot = System.currentTimeMillis() / windowMillis;
+        if (current.slot >= slot) {
+            return;
+        }
+        synchronized (this) {
+            if (current.slot >= slot) {
+                return;
+            }
+            var next = new Generation(slot, expectedKeys, falsePositiveRate);
+            previous = current.slot == slot - 1 ? current : next;
+            current = next;
+        }
+    }
+
+    /**
+     * Filtro de una ventana de tiempo
+     */
+    private static final class Generation {
+
+        private final long slot;
+        private final BloomFilter filter;
+
+        private Generation(long slot, long expectedKeys, double falsePositiveRate) {
+            this.slot = slot;
+            this.filter = new BloomFilter(expectedKeys, falsePositiveRate);
+        }
+    }
+}
@@ -0,0 +1,498 @@
+package com.sofka.megawarez.service;
+
+import com.sofka.megawarez.domain.projection.DownloadRecord;
+import com.sofka.megawarez.repository.DownloadBatchRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+/**
+ * Registro de descargas en disco, de solo escritura al final, usado como búfer de ingreso:
+ * createDownload escribe la descarga en el segmento vigente (mapeado en memoria) y responde de
+ * inmediato, sin esperar a MySQL. Un proceso en segundo plano lee los registros pendientes y los
+ * escribe en la tabla download por lotes, guardando en la misma transacción hasta qué registro
+ * llegó, de modo que tras una caída retoma desde ese punto sin duplicar descargas. Las peticiones
+ * no verifican el usuario ni el item: antes de cada lote se descartan los registros cuyo usuario o
+ * item no existe, con una consulta por lote.
+ *
+ * Cada registro mide 20 bytes: usuario (int), item (int), fecha en milisegundos (long) y un CRC32
+ * de los 16 bytes anteriores. El espacio aún no escrito de un segmento está en ceros y no pasa la
+ * verificación, así que al arrancar el final del registro es el primer registro inválido.
+ * Los segmentos tienen tamaño fijo, se nombran con la posición global de su primer registro
+ * y se borran cuando todos sus registros están en la base de datos.
+ *
+ * Cada directorio de segmentos es un registro distinto con su propio punto de control: el nombre
+ * del punto de control se genera la primera vez y se guarda en el archivo node-id junto a los
+ * segmentos, así varias instancias comparten la base de datos sin pisarse las posiciones.
+ *
+ * Los registros sobreviven a la caída del proceso (quedan en la caché de páginas del sistema);
+ * ante una caída del sistema operativo se pueden perder los escritos después del último volcado
+ * a disco, que se hace en cada ciclo de escritura en la base de datos y al cambiar de segmento.
+ *
+ * Solo un ciclo de escritura corre a la vez (también el del cierre), y el punto de control solo
+ * avanza desde el valor esperado: si otro proceso lo movió, el lote se deshace y se retoma desde
+ * el valor guardado.
+ *
+ * Se activa con megawarez.download.ingest = log
+ *
+ * @version 1.0.0 2022-04-06
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "megawarez.download.ingest", havingValue = "log")
+public class DownloadLog {
+
+    /**
+     * Tamaño de cada registro en bytes
+     */
+    private static final int RECORD_SIZE = 20;
+
+    /**
+     * Extensión de los archivos de segmento
+     */
+    private static final String EXTENSION = ".log";
+
+    /**
+     * Archivo con el nombre del punto de control de este directorio
+     */
+    private static final String NODE_ID_FILE = "node-id";
+
+    /**
+     * Nombre del punto de control de los directorios anteriores al archivo node-id
+     */
+    private static final String LEGACY_NODE_ID = "download-log";
+
+    /**
+     * Repositorio JDBC de descargas
+     */
+    @Autowired
+    private DownloadBatchRepository downloadBatchRepository;
+
+    /**
+     * Verificación por lotes de usuarios e items
+     */
+    @Autowired
+    private DownloadValidator downloadValidator;
+
+    /**
+     * Plantilla de transacciones, une la inserción de cada lote con su punto de control
+     */
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * Directorio de los segmentos
+     */
+    private final Path directory;
+
+    /**
+     * Cantidad de registros por segmento
+     */
+    private final int segmentRecords;
+
+    /**
+     * Cantidad máxima de registros por lote escrito en la base de datos
+     */
+    private final int batchSize;
+
+    /**
+     * Nombre del punto de control de este directorio
+     */
+    private String nodeId;
+
+    /**
+     * Segmentos abiertos por posición global de su primer registro
+     */
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+
+    /**
+     * Segmento en el que se escribe, protegido por el monitor de la clase
+     */
+    private Segment head;
+
+    /**
+     * Posición global del siguiente registro a escribir; se publica después de escribir el registro
+     */
+    private volatile long end;
+
+    /**
+     * Posición global del siguiente registro a llevar a la base de datos, solo lo usa el proceso de escritura
+     */
+    private volatile long checkpoint;
+
+    /**
+     * Bloqueo de los ciclos de escritura en la base de datos, separado del monitor de la clase
+     * para no detener a append mientras se escribe un lote
+     */
+    private final Object replayLock = new Object();
+
+    /**
+     * Indica si el registro ya fue cerrado, protegido por replayLock
+     */
+    private boolean closed;
+
+    /**
+     * Constructor de la clase
+     *
+     * @param directory Directorio de los segmentos
+     * @param segmentRecords Cantidad de registros por segmento
+     * @param batchSize Cantidad máxima de registros por lote
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public DownloadLog(
+            @Value("${megawarez.download.log.dir:data/download-log}") String directory,
+            @Value("${megawarez.download.log.segment-records:1048576}") int segmentRecords,
+            @Value("${megawarez.download.batch-size:500}") int batchSize
+    ) {
+        this.directory = Paths.get(directory);
+        this.segmentRecords = segmentRecords;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Abre los segmentos existentes, ubica el final del registro y el punto de control,
+     * y borra los segmentos que ya fueron escritos por completo en la base de datos
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @PostConstruct
+    public synchronized void open() throws IOException {
+        Files.createDirectories(directory);
+        List<Path> files;
+        try (var listing = Files.list(directory)) {
+            files = listing.filter(path -> path.getFileName().toString().endsWith(EXTENSION))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        nodeId = readNodeId(!files.isEmpty());
+        checkpoint = downloadBatchRepository.findLogCheckpoint(nodeId);
+        for (var file : files) {
+            var name = file.getFileName().toString();
+            var base = Long.parseLong(name.substring(0, name.length() - EXTENSION.length()));
+            segments.put(base, Segment.open(file, base, segmentRecords));
+        }
+        if (segments.isEmpty()) {
+            head = createSegment(checkpoint);
+            end = checkpoint;
+        } else {
+            head = segments.lastEntry().getValue();
+            var count = 0;
+            while (count < segmentRecords && head.isValid(count)) {
+                count++;
+            }
+            end = head.base + count;
+            if (end < checkpoint) {
+                log.warn("El registro de descargas termina en {} antes del punto de control {}, se reinicia",
+                        end, checkpoint);
+                head = createSegment(checkpoint);
+                end = checkpoint;
+            }
+        }
+        deleteReplayedSegments();
+        log.info("Registro de descargas {} abierto en {}: {} pendientes desde {}",
+                nodeId, directory, end - checkpoint, checkpoint);
+    }
+
+    /**
+     * Agrega una descarga al final del registro. La descarga queda en memoria compartida con el
+     * archivo, por lo que sobrevive a una caída del proceso
+     *
+     * @param download Descarga a registrar
+     * @throws IllegalStateException si no se puede crear un nuevo segmento
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public synchronized void append(DownloadRecord download) {
+        if (end - head.base == segmentRecords) {
+            head.buffer.force();
+            try {
+                head = createSegment(end);
+            } catch (IOException exception) {
+                throw new IllegalStateException("No se pudo crear un segmento del registro de descargas", exception);
+            }
+        }
+        head.write((int) (end - head.base), download);
+        end++;
+    }
+
+    /**
+     * Cantidad de descargas registradas que aún no están en la base de datos
+     *
+     * @return Cantidad de registros pendientes
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public long pending() {
+        return end - checkpoint;
+    }
+
+    /**
+     * Lleva a la base de datos los registros pendientes, por lotes. Cada lote se inserta en la misma
+     * transacción que el nuevo punto de control. Si el lote tiene filas inválidas (por ejemplo un
+     * usuario que no existe) se repite fila por fila descartando solo las inválidas
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Scheduled(fixedDelayString = "${megawarez.download.log.replay-interval:PT0.5S}")
+    public void replay() {
+        synchronized (replayLock) {
+            if (!closed) {
+                replayPending();
+            }
+        }
+    }
+
+    /**
+     * Lleva a la base de datos lo pendiente y cierra el registro
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @PreDestroy
+    public void close() {
+        synchronized (replayLock) {
+            if (closed) {
+                return;
+            }
+            replayPending();
+            closed = true;
+            synchronized (this) {
+                head.buffer.force();
+                for (var segment : segments.values()) {
+                    segment.close();
+                }
+            }
+        }
+        log.info("Registro de descargas cerrado en {} con {} pendientes", end, end - checkpoint);
+    }
+
+    /**
+     * Ciclo de escritura, se llama con replayLock tomado
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private void replayPending() {
+        var target = end;
+        if (checkpoint >= target) {
+            return;
+        }
+        synchronized (this) {
+            head.buffer.force();
+        }
+        while (checkpoint < target) {
+            var from = checkpoint;
+            var segment = segments.floorEntry(from).getValue();
+            var to = Math.min(Math.min(from + batchSize, target), segment.base + segmentRecords);
+            var batch = new ArrayList<DownloadRecord>((int) (to - from));
+            for (var offset = from; offset < to; offset++) {
+                var index = (int) (offset - segment.base);
+                if (segment.isValid(index)) {
+                    batch.add(segment.read(index));
+                } else {
+                    log.error("Registro de descargas dañado en la posición {}, se omite", offset);
+                }
+            }
+            try {
+                write(batch, from, to);
+            } catch (OptimisticLockingFailureException exception) {
+                checkpoint = downloadBatchRepository.findLogCheckpoint(nodeId);
+                log.error("Otro proceso movió el punto de control del registro de descargas de {} a {}, se retoma desde ahí",
+                        from, checkpoint);
+                return;
+            } catch (DataAccessException exception) {
+                log.warn("No se pudo escribir el registro de descargas desde {}: {}", from, exception.getMessage());
+                return;
+            }
+            checkpoint = to;
+            deleteReplayedSegments();
+        }
+    }
+
+    /**
+     * Inserta un lote y guarda el punto de control en la misma transacción. Las descargas cuyo
+     * usuario o item no existe se descartan antes de insertar, el punto de control las cubre igual
+     *
+     * @param batch Descargas del lote
+     * @param expected Punto de control antes del lote
+     * @param offset Punto de control después del lote
+     * @throws OptimisticLockingFailureException si el punto de control guardado no es el esperado
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private void write(List<DownloadRecord> batch, long expected, long offset) {
+        downloadValidator.discardInvalid(batch);
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (!batch.isEmpty()) {
+                    downloadBatchRepository.insertAll(batch);
+                }
+                downloadBatchRepository.updateLogCheckpoint(nodeId, expected, offset);
+            });
+        } catch (DataIntegrityViolationException exception) {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (var download : batch) {
+                    try {
+                        downloadBatchRepository.insert(download);
+                    } catch (DataIntegrityViolationException rowException) {
+                        log.error("Descarga descartada {}: {}", download, rowException.getMessage());
+                    }
+                }
+                downloadBatchRepository.updateLogCheckpoint(nodeId, expected, offset);
+            });
+        }
+    }
+
+    /**
+     * Lee el nombre del punto de control del directorio, o lo genera y lo guarda si no existe.
+     * Un directorio con segmentos pero sin el archivo viene de una versión anterior y conserva el
+     * nombre que esta usaba
+     *
+     * @param hasSegments Indica si el directorio ya tiene segmentos
+     * @return Nombre del punto de control
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private String readNodeId(boolean hasSegments) throws IOException {
+        var file = directory.resolve(NODE_ID_FILE);
+        if (Files.exists(file)) {
+            return Files.readString(file, StandardCharsets.US_ASCII).trim();
+        }
+        var id = hasSegments ? LEGACY_NODE_ID : "log-" + Long.toHexString(new SecureRandom().nextLong());
+        var temporary = directory.resolve(NODE_ID_FILE + ".tmp");
+        Files.writeString(temporary, id, StandardCharsets.US_ASCII);
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+        return id;
+    }
+
+    /**
+     * Crea y registra un segmento nuevo
+     *
+     * @param base Posición global de su primer registro
+     * @return Segmento
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private Segment createSegment(long base) throws IOException {
+        var segment = Segment.open(directory.resolve(String.format("%020d", base) + EXTENSION), base, segmentRecords);
+        segments.put(base, segment);
+        return segment;
+    }
+
+    /**
+     * Cierra y borra los segmentos cuyos registros ya están todos en la base de datos
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private synchronized void deleteReplayedSegments() {
+        for (var segment : new ArrayList<>(segments.values())) {
+            if (segment == head || segment.base + segmentRecords > checkpoint) {
+                continue;
+            }
+            segments.remove(segment.base);
+            segment.close();
+            try {
+                Files.deleteIfExists(segment.path);
+            } catch (IOException exception) {
+                log.warn("No se pudo borrar el segmento {}: {}", segment.path, exception.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Segmento del registro: archivo de tamaño fijo mapeado en memoria
+     */
+    private static final class Segment {
+
+        private final Path path;
+        private final long base;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+
+        private Segment(Path path, long base, FileChannel channel, MappedByteBuffer buffer) {
+            this.path = path;
+            this.base = base;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        private static Segment open(Path path, long base, int records) throws IOException {
+            var channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            var buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) records * RECORD_SIZE);
+            return new Segment(path, base, channel, buffer);
+        }
+
+        private void write(int index, DownloadRecord download) {
+            var position = index * RECORD_SIZE;
+            buffer.putInt(position, download.getUserId());
+            buffer.putInt(position + 4, download.getItemId());
+            buffer.putLong(position + 8, download.getCreatedAt().toEpochMilli());
+            buffer.putInt(position + 16, checksum(position));
+        }
+
+        private DownloadRecord read(int index) {
+            var position = index * RECORD_SIZE;
+            return new DownloadRecord(null, buffer.getInt(position), buffer.getInt(position + 4),
+                    Instant.ofEpochMilli(buffer.getLong(position + 8)));
+        }
+
+        private boolean isValid(int index) {
+            var position = index * RECORD_SIZE;
+            return buffer.getInt(position + 16) == checksum(position);
+        }
+
+        private int checksum(int position) {
+            var crc = new CRC32();
+            crc.update(buffer.duplicate().position(position).limit(position + 16));
+            return (int) crc.getValue();
+        }
+
+        private void close() {
+            try {
+                channel.close();
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        }
+    }
+}
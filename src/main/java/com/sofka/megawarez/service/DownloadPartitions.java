@@ -0,0 +1,237 @@
+package com.sofka.megawarez.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sofka.megawarez.domain.projection.DownloadRecord;
+import com.sofka.megawarez.repository.DownloadPartitionRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Mantenimiento de las particiones mensuales de download (ver db/download_partitioning.sql):
+ * crea por adelantado las particiones de los meses siguientes y archiva las que superan la
+ * retención. Cada partición archivada se separa de download de forma atómica, se exporta a un
+ * archivo NDJSON comprimido con gzip (el mismo formato que recibe el ingreso masivo, así que se
+ * puede volver a cargar) y solo entonces se borra.
+ *
+ * Los contadores, tendencias y rollups de descargas no se recalculan, conservan la historia
+ * archivada. El mantenimiento exporta particiones completas y puede tardar, por eso corre en un
+ * hilo propio y no ocupa los hilos de las tareas programadas.
+ * Se activa con megawarez.download.partitioning.enabled = true
+ *
+ * @version 1.0.0 2022-04-06
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "megawarez.download.partitioning.enabled", havingValue = "true")
+public class DownloadPartitions {
+
+    /**
+     * Repositorio JDBC de las particiones
+     */
+    @Autowired
+    private DownloadPartitionRepository downloadPartitionRepository;
+
+    /**
+     * Conversor JSON
+     */
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /**
+     * Directorio de los archivos exportados
+     */
+    @Value("${megawarez.download.partitioning.archive-dir:data/download-archive}")
+    private String archiveDir;
+
+    /**
+     * Cantidad de meses siguientes al actual con partición creada
+     */
+    @Value("${megawarez.download.partitioning.months-ahead:3}")
+    private int monthsAhead;
+
+    /**
+     * Cantidad de meses anteriores al actual que se conservan en la tabla
+     */
+    @Value("${megawarez.download.partitioning.retention-months:12}")
+    private int retentionMonths;
+
+    /**
+     * Hilo del mantenimiento
+     */
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(task -> {
+        var thread = new Thread(task, "download-partitions");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Indica si hay un mantenimiento en espera o en curso
+     */
+    private final AtomicBoolean pending = new AtomicBoolean();
+
+    /**
+     * Programa el mantenimiento en su hilo, salvo que el anterior aún no haya terminado
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Scheduled(initialDelayString = "PT1M", fixedDelayString = "${megawarez.download.partitioning.interval:PT6H}")
+    public void schedule() {
+        if (pending.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                try {
+                    maintain();
+                } finally {
+                    pending.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Detiene el hilo del mantenimiento; una exportación interrumpida se retoma en el siguiente
+     * arranque porque su tabla de archivo sigue existiendo
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Termina de archivar lo pendiente, crea las particiones que falten y archiva las vencidas
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public synchronized void maintain() {
+        try {
+            for (var table : downloadPartitionRepository.findArchiveTables()) {
+                archive(table);
+            }
+            var partitions = downloadPartitionRepository.findPartitionNames();
+            if (!partitions.contains(DownloadPartitionRepository.FUTURE)) {
+                log.warn("La tabla download no está particionada, ver db/download_partitioning.sql");
+                return;
+            }
+            var current = YearMonth.now(ZoneOffset.UTC);
+            var last = partitions.stream()
+                    .map(DownloadPartitionRepository::partitionMonth)
+                    .filter(month -> month != null)
+                    .max(YearMonth::compareTo)
+                    .orElse(current.minusMonths(1));
+            var missing = new ArrayList<YearMonth>();
+            for (var month = last.plusMonths(1); !month.isAfter(current.plusMonths(monthsAhead)); month = month.plusMonths(1)) {
+                missing.add(month);
+            }
+            if (!missing.isEmpty()) {
+                downloadPartitionRepository.addMonths(missing);
+                log.info("Particiones de descargas creadas de {} a {}", missing.get(0), missing.get(missing.size() - 1));
+            }
+            var cutoff = current.minusMonths(retentionMonths);
+            for (var partition : partitions) {
+                var month = DownloadPartitionRepository.partitionMonth(partition);
+                if (month != null && month.isBefore(cutoff)) {
+                    archive(downloadPartitionRepository.detach(partition));
+                }
+            }
+        } catch (DataAccessException | UncheckedIOException exception) {
+            log.error("Falló el mantenimiento de las particiones de descargas: {}", exception.getMessage());
+        }
+    }
+
+    /**
+     * Exporta una tabla de archivo a un archivo gzip y luego la borra. El archivo se escribe con
+     * otro nombre, se sincroniza con el disco y se renombra, así que nunca queda uno incompleto
+     *
+     * @param table Nombre de la tabla de archivo
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private void archive(String table) {
+        var partition = table.substring(DownloadPartitionRepository.ARCHIVE_TABLE_PREFIX.length());
+        var month = DownloadPartitionRepository.partitionMonth(partition);
+        try {
+            var directory = Paths.get(archiveDir);
+            Files.createDirectories(directory);
+            var target = directory.resolve("download-" + month + ".ndjson.gz");
+            if (Files.exists(target)) {
+                target = directory.resolve("download-" + month + "-" + System.currentTimeMillis() + ".ndjson.gz");
+            }
+            var temporary = directory.resolve(target.getFileName() + ".tmp");
+            var rows = new long[1];
+            try (var output = new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                downloadPartitionRepository.stream(table, resultSet -> {
+                    var download = new DownloadRecord(resultSet.getInt(1), resultSet.getInt(2),
+                            resultSet.getInt(3), resultSet.getTimestamp(4).toInstant());
+                    try {
+                        output.write(objectMapper.writeValueAsBytes(download));
+                        output.write('\n');
+                    } catch (IOException exception) {
+                        throw new UncheckedIOException(exception);
+                    }
+                    rows[0]++;
+                });
+            }
+            if (rows[0] == 0) {
+                Files.delete(temporary);
+                log.info("Partición de descargas {} vacía, no se archiva", partition);
+            } else {
+                force(temporary);
+                Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+                force(directory);
+                log.info("Partición de descargas {} archivada en {} ({} descargas)", partition, target, rows[0]);
+            }
+            downloadPartitionRepository.dropArchiveTable(table);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    /**
+     * Sincroniza con el disco un archivo o directorio
+     *
+     * @param path Ruta
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private void force(Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException exception) {
+            if (!Files.isDirectory(path)) {
+                throw exception;
+            }
+            // Algunos sistemas de archivos no permiten sincronizar directorios
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.sofka.megawarez.service;
+
+import com.sofka.megawarez.domain.projection.RollupKey;
+import com.sofka.megawarez.repository.DownloadRollupRepository;
+import com.sofka.megawarez.utility.Granularity;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rollups de descargas: cantidad de descargas por item y subcategoría en cubetas de un minuto,
+ * una hora y un día, guardadas en download_rollup para que las series de tiempo no recorran
+ * la tabla download.
+ *
+ * Las descargas nuevas se suman en memoria y se vuelcan periódicamente en un lote. Las descargas
+ * anteriores a la activación (hasta el watermark guardado la primera vez) se agregan por tramos
+ * de dwn_id, un tramo por ejecución y en su propia transacción junto con su avance, así que el
+ * backfill se puede interrumpir y retomar sin contar dos veces
+ *
+ * @version 1.0.0 2022-04-06
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+@Slf4j
+@Component
+public class DownloadRollups {
+
+    /**
+     * Repositorio JDBC de los rollups
+     */
+    @Autowired
+    private DownloadRollupRepository downloadRollupRepository;
+
+    /**
+     * Plantilla de transacciones, usada en cada tramo del backfill
+     */
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * Cantidad de identificadores de descarga por tramo del backfill
+     */
+    @Value("${megawarez.rollup.backfill-chunk:5000}")
+    private int backfillChunk;
+
+    /**
+     * Conteos aún no guardados
+     */
+    private final ConcurrentHashMap<RollupKey, LongAdder> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Límite y avance del backfill, -1 mientras no se han leído
+     */
+    private volatile long watermark = -1;
+    private volatile long backfilled = -1;
+
+    /**
+     * Registra el límite del backfill la primera vez que arranca la aplicación con rollups,
+     * antes de contar descargas en vivo
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @PostConstruct
+    public void init() {
+        downloadRollupRepository.initState();
+        watermark = downloadRollupRepository.findState(DownloadRollupRepository.STATE_WATERMARK);
+        backfilled = downloadRollupRepository.findState(DownloadRollupRepository.STATE_BACKFILLED);
+        log.info("Rollups de descargas: backfill en {} de {}", backfilled, watermark);
+    }
+
+    /**
+     * Cuenta una descarga en sus cubetas de minuto, hora y día
+     *
+     * @param itemId Identificador del item
+     * @param subcategoryId Identificador de la subcategoría del item
+     * @param createdAt Momento de la descarga
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public void record(Integer itemId, Integer subcategoryId, Instant createdAt) {
+        for (var granularity : Granularity.values()) {
+            var key = new RollupKey(granularity, granularity.truncate(createdAt), itemId, subcategoryId);
+            pending.computeIfAbsent(key, ignored -> new LongAdder()).increment();
+        }
+    }
+
+    /**
+     * Guarda los conteos acumulados en un solo lote. Las cubetas de minutos ya cerrados se retiran
+     * de memoria, las vigentes se conservan para no crear una entrada por cada descarga.
+     * Si la escritura falla los conteos se devuelven para el siguiente intento
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${megawarez.rollup.flush-interval:PT10S}")
+    public synchronized void flush() {
+        var closed = Instant.now().truncatedTo(ChronoUnit.MINUTES).minus(2, ChronoUnit.MINUTES);
+        var deltas = new HashMap<RollupKey, Long>();
+        var iterator = pending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            var entry = iterator.next();
+            var delta = entry.getValue().sumThenReset();
+            if (delta != 0) {
+                deltas.put(entry.getKey(), delta);
+            }
+            if (entry.getKey().getGranularity() == Granularity.MINUTE && entry.getKey().getBucket().isBefore(closed)) {
+                // Ninguna descarga nueva cae en un minuto cerrado hace más de dos minutos
+                iterator.remove();
+            }
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+        try {
+            downloadRollupRepository.increment(deltas);
+        } catch (DataAccessException exception) {
+            log.warn("No se pudieron guardar {} rollups de descargas: {}", deltas.size(), exception.getMessage());
+            deltas.forEach((key, delta) -> pending.computeIfAbsent(key, ignored -> new LongAdder()).add(delta));
+        }
+    }
+
+    /**
+     * Limpia de memoria las cubetas de hora y día ya cerradas
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Scheduled(fixedDelayString = "PT1H")
+    public synchronized void evictClosedBuckets() {
+        var now = Instant.now();
+        pending.entrySet().removeIf(entry -> entry.getValue().sum() == 0
+                && entry.getKey().getGranularity() != Granularity.MINUTE
+                && entry.getKey().getBucket().isBefore(
+                        entry.getKey().getGranularity().truncate(now).minus(1, ChronoUnit.HOURS)));
+    }
+
+    /**
+     * Agrega un tramo de descargas anteriores a la activación de los rollups. El tramo se cuenta por
+     * minuto en la base de datos, se acumula aquí por hora y día, y se guarda junto con el nuevo
+     * avance en la misma transacción
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Scheduled(fixedDelayString = "${megawarez.rollup.backfill-interval:PT1S}")
+    public void backfillStep() {
+        if (backfilled < 0 || backfilled >= watermark) {
+            return;
+        }
+        var from = backfilled;
+        var to = Math.min(from + backfillChunk, watermark);
+        transactionTemplate.executeWithoutResult(status -> {
+            var minutes = downloadRollupRepository.countByMinute(from, to);
+            var deltas = new HashMap<RollupKey, Long>(minutes);
+            minutes.forEach((key, count) -> {
+                for (var granularity : new Granularity[] {Granularity.HOUR, Granularity.DAY}) {
+                    deltas.merge(new RollupKey(granularity, granularity.truncate(key.getBucket()),
+                            key.getItemId(), key.getSubcategoryId()), count, Long::sum);
+                }
+            });
+            if (!deltas.isEmpty()) {
+                downloadRollupRepository.increment(deltas);
+            }
+            downloadRollupRepository.updateState(DownloadRollupRepository.STATE_BACKFILLED, to);
+        });
+        backfilled = to;
+        if (to >= watermark) {
+            log.info("Backfill de rollups de descargas terminado en el identificador {}", to);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.sofka.megawarez.service;
+
+import com.sofka.megawarez.domain.projection.DownloadRecord;
+import com.sofka.megawarez.repository.DownloadBatchRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Verificación por lotes del usuario y el item de las descargas. Los usuarios se verifican con una
+ * consulta por lote y los items con la instantánea del catálogo, o con una consulta si aún no está
+ * cargada. Con la tabla download particionada no hay llaves foráneas, así que esta verificación es
+ * la que impide escribir descargas de usuarios o items inexistentes
+ *
+ * @version 1.0.0 2022-04-06
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+@Slf4j
+@Component
+public class DownloadValidator {
+
+    /**
+     * Repositorio JDBC de descargas
+     */
+    @Autowired
+    private DownloadBatchRepository downloadBatchRepository;
+
+    /**
+     * Instantánea del catálogo, usada para verificar los items sin consultar la base de datos
+     */
+    @Autowired
+    private CatalogueSnapshot catalogueSnapshot;
+
+    /**
+     * Devuelve cuáles de los usuarios existen, en una sola consulta
+     *
+     * @param userIds Identificadores a verificar
+     * @return Identificadores existentes
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public Set<Integer> existingUsers(Collection<Integer> userIds) {
+        return downloadBatchRepository.findExistingUserIds(userIds);
+    }
+
+    /**
+     * Devuelve cuáles de los items existen, desde la instantánea del catálogo si está cargada
+     *
+     * @param itemIds Identificadores a verificar
+     * @return Identificadores existentes
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public Set<Integer> existingItems(Collection<Integer> itemIds) {
+        var tree = catalogueSnapshot.getTree();
+        if (tree == null) {
+            return downloadBatchRepository.findExistingItemIds(itemIds);
+        }
+        var existing = new HashSet<>(itemIds);
+        existing.removeIf(itemId -> tree.getItem(itemId) == null);
+        return existing;
+    }
+
+    /**
+     * Quita del lote las descargas cuyo usuario o item no existe y las registra en el log
+     *
+     * @param batch Lote de descargas, se modifica
+     * @return Cantidad de descargas quitadas
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public int discardInvalid(List<DownloadRecord> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        var userIds = new HashSet<Integer>();
+        var itemIds = new HashSet<Integer>();
+        for (var download : batch) {
+            userIds.add(download.getUserId());
+            itemIds.add(download.getItemId());
+        }
+        var users = existingUsers(userIds);
+        var items = existingItems(itemIds);
+        var size = batch.size();
+        batch.removeIf(download -> {
+            if (!users.contains(download.getUserId())) {
+                log.error("Descarga descartada {}: el usuario no existe", download);
+                return true;
+            }
+            if (!items.contains(download.getItemId())) {
+                log.error("Descarga descartada {}: el item no existe", download);
+                return true;
+            }
+            return false;
+        });
+        return size - batch.size();
+    }
+}
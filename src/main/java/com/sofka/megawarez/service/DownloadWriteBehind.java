@@ -0,0 +1,318 @@
+package com.sofka.megawarez.service;
+
+import com.sofka.megawarez.domain.projection.DownloadRecord;
+import com.sofka.megawarez.repository.DownloadBatchRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Escritura diferida de las descargas: las peticiones encolan la descarga en una cola acotada y un
+ * hilo la escribe en lotes JDBC cuando se completa el tamaño del lote o vence el intervalo de espera.
+ * Si la cola está llena la petición espera un tiempo corto y luego se rechaza, de modo que la carga
+ * no crece sin límite en memoria. Al detener la aplicación se escribe lo que quede en la cola.
+ *
+ * Si la base de datos no responde el hilo conserva el lote y lo reintenta con esperas crecientes;
+ * mientras tanto las peticiones nuevas se rechazan de inmediato (503) en lugar de llenar la cola.
+ * Las peticiones no verifican el usuario ni el item: antes de cada lote se descartan las filas cuyo
+ * usuario o item no existe, con una consulta por lote, y luego las que la base de datos rechace por
+ * integridad
+ *
+ * Se activa con megawarez.download.ingest = write-behind
+ *
+ * @version 1.0.0 2022-04-06
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "megawarez.download.ingest", havingValue = "write-behind")
+public class DownloadWriteBehind {
+
+    /**
+     * Repositorio JDBC de descargas
+     */
+    @Autowired
+    private DownloadBatchRepository downloadBatchRepository;
+
+    /**
+     * Verificación por lotes de usuarios e items
+     */
+    @Autowired
+    private DownloadValidator downloadValidator;
+
+    /**
+     * Cola acotada de descargas pendientes
+     */
+    private final ArrayBlockingQueue<DownloadRecord> queue;
+
+    /**
+     * Cantidad máxima de descargas por lote
+     */
+    private final int batchSize;
+
+    /**
+     * Tiempo máximo que una descarga espera en la cola a que se complete su lote
+     */
+    private final long flushIntervalNanos;
+
+    /**
+     * Tiempo que una petición espera por espacio en la cola antes de ser rechazada
+     */
+    private final long offerTimeoutNanos;
+
+    /**
+     * Espera inicial y máxima entre reintentos de un lote cuando la base de datos no responde
+     */
+    private final long retryBackoffMillis;
+    private final long maxRetryBackoffMillis;
+
+    /**
+     * Hilo que escribe los lotes
+     */
+    private final Thread writer;
+
+    /**
+     * Indica si el hilo escritor debe seguir esperando descargas
+     */
+    private volatile boolean running = true;
+
+    /**
+     * Lote que el hilo escritor no logró escribir antes de la detención, lo escribe stop()
+     */
+    private List<DownloadRecord> unwritten = new ArrayList<>();
+
+    /**
+     * Indica si el último intento de escritura falló por la base de datos, las peticiones nuevas
+     * se rechazan hasta que un lote se escriba
+     */
+    private volatile boolean unavailable = false;
+
+    /**
+     * Estadísticas
+     */
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+
+    /**
+     * Constructor de la clase
+     *
+     * @param capacity Capacidad de la cola
+     * @param batchSize Cantidad máxima de descargas por lote
+     * @param flushInterval Tiempo máximo de espera de una descarga en la cola
+     * @param offerTimeout Tiempo de espera por espacio en la cola
+     * @param retryBackoff Espera inicial entre reintentos de un lote, se duplica en cada fallo
+     * @param maxRetryBackoff Espera máxima entre reintentos de un lote
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public DownloadWriteBehind(
+            @Value("${megawarez.download.queue-capacity:10000}") int capacity,
+            @Value("${megawarez.download.batch-size:500}") int batchSize,
+            @Value("${megawarez.download.flush-interval:PT1S}") Duration flushInterval,
+            @Value("${megawarez.download.offer-timeout:PT0.05S}") Duration offerTimeout,
+            @Value("${megawarez.download.retry-backoff:PT0.1S}") Duration retryBackoff,
+            @Value("${megawarez.download.max-retry-backoff:PT30S}") Duration maxRetryBackoff
+    ) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.offerTimeoutNanos = offerTimeout.toNanos();
+        this.retryBackoffMillis = Math.max(1, retryBackoff.toMillis());
+        this.maxRetryBackoffMillis = Math.max(retryBackoffMillis, maxRetryBackoff.toMillis());
+        this.writer = new Thread(this::run, "download-write-behind");
+    }
+
+    /**
+     * Inicia el hilo escritor
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @PostConstruct
+    public void start() {
+        writer.start();
+    }
+
+    /**
+     * Detiene el hilo escritor después de escribir todas las descargas pendientes, con un solo
+     * intento por lote: si la base de datos sigue sin responder esas descargas se pierden
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+        try {
+            writer.join();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+        var pending = new ArrayList<>(unwritten);
+        queue.drainTo(pending);
+        for (var from = 0; from < pending.size(); from += batchSize) {
+            var batch = new ArrayList<>(pending.subList(from, Math.min(from + batchSize, pending.size())));
+            if (!write(batch)) {
+                dropped.add(batch.size());
+                log.error("{} descargas pendientes descartadas al detener la aplicación: la base de datos no responde",
+                        batch.size());
+            }
+        }
+        log.info("Escritura diferida de descargas detenida: {} encoladas, {} escritas, {} rechazadas, {} descartadas, {} reintentos",
+                enqueued.sum(), written.sum(), rejected.sum(), dropped.sum(), retries.sum());
+    }
+
+    /**
+     * Encola una descarga, esperando un tiempo corto si la cola está llena
+     *
+     * @param download Descarga a escribir
+     * @return false si la descarga fue rechazada porque la cola siguió llena o la base de datos no responde
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public boolean enqueue(DownloadRecord download) {
+        try {
+            if (running && !unavailable && queue.offer(download, offerTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                enqueued.increment();
+                return true;
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+        rejected.increment();
+        return false;
+    }
+
+    /**
+     * Cantidad de descargas en cola
+     *
+     * @return Cantidad de descargas pendientes
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public int pending() {
+        return queue.size();
+    }
+
+    /**
+     * Ciclo del hilo escritor: espera la primera descarga, completa el lote hasta su tamaño
+     * o hasta que vence el intervalo, y lo escribe. Si la base de datos no responde reintenta el
+     * mismo lote con esperas crecientes. Termina a más tardar un intervalo (o una espera) después
+     * de la detención, lo que quede en la cola lo escribe stop()
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private void run() {
+        var batch = new ArrayList<DownloadRecord>(batchSize);
+        while (running) {
+            try {
+                var first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                var deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    var remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    var next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            var backoff = retryBackoffMillis;
+            while (!write(batch)) {
+                unavailable = true;
+                if (!running) {
+                    // stop() reintenta una vez este lote junto con lo que quede en la cola
+                    unwritten = batch;
+                    return;
+                }
+                retries.increment();
+                try {
+                    TimeUnit.MILLISECONDS.sleep(backoff);
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                    running = false;
+                }
+                backoff = Math.min(backoff * 2, maxRetryBackoffMillis);
+            }
+            unavailable = false;
+        }
+    }
+
+    /**
+     * Escribe un lote y quita del lote las filas escritas o descartadas. Primero se descartan las
+     * filas cuyo usuario o item no existe; si aun así el lote falla por una fila inválida se escribe
+     * fila por fila y solo se descartan las filas que fallan por integridad
+     *
+     * @param batch Lote de descargas
+     * @return true si el lote quedó vacío, false si la base de datos no respondió y el lote
+     * conserva las filas sin escribir
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private boolean write(List<DownloadRecord> batch) {
+        try {
+            dropped.add(downloadValidator.discardInvalid(batch));
+            if (batch.isEmpty()) {
+                return true;
+            }
+            downloadBatchRepository.insertAll(batch);
+            written.add(batch.size());
+            batch.clear();
+            return true;
+        } catch (DataIntegrityViolationException exception) {
+            log.warn("Lote de {} descargas con filas inválidas, se escribe fila por fila: {}",
+                    batch.size(), exception.getMessage());
+        } catch (DataAccessException exception) {
+            log.warn("No se pudo escribir un lote de {} descargas: {}", batch.size(), exception.getMessage());
+            return false;
+        }
+        for (var iterator = batch.iterator(); iterator.hasNext(); ) {
+            var download = iterator.next();
+            try {
+                downloadBatchRepository.insert(download);
+                written.increment();
+            } catch (DataIntegrityViolationException exception) {
+                dropped.increment();
+                log.error("Descarga descartada {}: {}", download, exception.getMessage());
+            } catch (DataAccessException exception) {
+                log.warn("No se pudo escribir la descarga {}: {}", download, exception.getMessage());
+                return false;
+            }
+            iterator.remove();
+        }
+        return true;
+    }
+}
@@ -0,0 +1,567 @@
+package com.sofka.megawarez.service;
+
+import com.sofka.megawarez.domain.projection.ItemView;
+import com.sofka.megawarez.domain.projection.SubcategoryView;
+import com.sofka.megawarez.utility.TextNormalizer;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.regex.Pattern;
+
+/**
+ * Índice invertido en memoria para la búsqueda de texto completo sobre los items.
+ * Cada item se indexa con las palabras de su nombre y, con menor peso, las de su subcategoría y categoría.
+ * Las palabras de la consulta se comparan de forma exacta, por prefijo (la última palabra) y
+ * aproximada por trigramas para tolerar errores de escritura; el resultado se ordena por relevancia.
+ *
+ * Todas las escrituras (altas, bajas, reindexaciones por cambio de nombre de una categoría o
+ * subcategoría y reconstrucciones) se ejecutan en orden en un hilo propio, no en el de la petición.
+ * Una reconstrucción arma un índice nuevo y lo publica de una vez, las búsquedas en curso siguen
+ * usando el anterior. Cada escritura devuelve un CompletableFuture que termina cuando el cambio
+ * ya es visible en las búsquedas
+ *
+ * @version 1.0.0 2022-04-06
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+@Slf4j
+@Component
+public class ItemSearchIndex {
+
+    /**
+     * Pesos de las palabras según el campo en que aparecen
+     */
+    private static final float NAME_WEIGHT = 3.0f;
+    private static final float SUBCATEGORY_WEIGHT = 1.5f;
+    private static final float CATEGORY_WEIGHT = 1.0f;
+
+    /**
+     * Similitud asignada a las coincidencias por prefijo
+     */
+    private static final float PREFIX_SIMILARITY = 0.9f;
+
+    /**
+     * Similitud mínima (coeficiente de Dice sobre trigramas) para aceptar una coincidencia aproximada
+     */
+    private static final float MIN_FUZZY_SIMILARITY = 0.5f;
+
+    /**
+     * Cantidad máxima de términos del vocabulario que puede expandir cada palabra de la consulta
+     */
+    private static final int MAX_EXPANSIONS = 32;
+
+    /**
+     * Separador de palabras
+     */
+    private static final Pattern SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    /**
+     * Copia en memoria del catálogo, de donde se toman los nombres de subcategorías y categorías
+     */
+    @Autowired
+    private CatalogueSnapshot catalogueSnapshot;
+
+    /**
+     * Índice vigente
+     */
+    private volatile Index current = new Index();
+
+    /**
+     * Hilo de las escrituras del índice, las ejecuta en orden de llegada
+     */
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(task -> {
+        var thread = new Thread(task, "item-search-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Construye el índice al iniciar la aplicación, después de la copia en memoria del catálogo
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Order(3)
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        rebuild();
+    }
+
+    /**
+     * Programa la reconstrucción completa del índice desde la copia en memoria del catálogo
+     *
+     * @return Tarea que termina cuando se publica el índice nuevo
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public CompletableFuture<Void> reload() {
+        return submit(this::rebuild);
+    }
+
+    /**
+     * Programa la indexación de un item nuevo o modificado
+     *
+     * @param item Vista del item
+     * @return Tarea que termina cuando el item está indexado
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public CompletableFuture<Void> index(ItemView item) {
+        return submit(() -> {
+            synchronized (this) {
+                var tree = catalogueSnapshot.getTree();
+                var subcategory = tree == null ? null : tree.getSubcategory(item.getSubcategoryId());
+                current.index(item, contextTerms(tree, subcategory));
+            }
+        });
+    }
+
+    /**
+     * Programa el retiro de un item del índice
+     *
+     * @param id Identificador del item
+     * @return Tarea que termina cuando el item ya no aparece en las búsquedas
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public CompletableFuture<Void> remove(Integer id) {
+        return submit(() -> {
+            synchronized (this) {
+                current.remove(id);
+            }
+        });
+    }
+
+    /**
+     * Programa la reindexación de los items de una subcategoría, usado cuando cambia su nombre
+     *
+     * @param subcategoryId Identificador de la subcategoría
+     * @return Tarea que termina cuando los items están reindexados
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public CompletableFuture<Void> reindexSubcategory(Integer subcategoryId) {
+        return submit(() -> reindex(Set.of(subcategoryId)));
+    }
+
+    /**
+     * Programa la reindexación de los items de una categoría, usado cuando cambia su nombre
+     *
+     * @param categoryId Identificador de la categoría
+     * @return Tarea que termina cuando los items están reindexados
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public CompletableFuture<Void> reindexCategory(Integer categoryId) {
+        return submit(() -> {
+            var tree = catalogueSnapshot.getTree();
+            if (tree == null) {
+                return;
+            }
+            var subcategoryIds = new HashSet<Integer>();
+            tree.getSubcategories(categoryId).forEach(subcategory -> subcategoryIds.add(subcategory.getId()));
+            reindex(subcategoryIds);
+        });
+    }
+
+    /**
+     * Detiene el hilo del índice
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Ejecuta una escritura en el hilo del índice. Si el hilo ya se detuvo (cierre de la aplicación)
+     * la escritura se descarta
+     *
+     * @param task Escritura
+     * @return Tarea que termina cuando la escritura se aplicó, o falló
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private CompletableFuture<Void> submit(Runnable task) {
+        try {
+            return CompletableFuture.runAsync(task, executor).whenComplete((result, exception) -> {
+                if (exception != null) {
+                    log.error("No se pudo actualizar el índice de búsqueda", exception);
+                }
+            });
+        } catch (RejectedExecutionException exception) {
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    /**
+     * Construye un índice nuevo con todos los items y lo publica
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private synchronized void rebuild() {
+        var tree = catalogueSnapshot.getTree();
+        if (tree == null) {
+            return;
+        }
+        var index = new Index();
+        var context = new HashMap<Integer, Map<String, Float>>();
+        for (var item : tree.getItems()) {
+            index.index(item, context.computeIfAbsent(item.getSubcategoryId(),
+                    id -> contextTerms(tree, tree.getSubcategory(id))));
+        }
+        current = index;
+        log.info("Índice de búsqueda construido: {} items, {} términos", index.documents.size(), index.vocabulary.size());
+    }
+
+    /**
+     * Vuelve a indexar en una sola pasada los items de varias subcategorías; los términos de cada
+     * subcategoría y su categoría se calculan una vez
+     *
+     * @param subcategoryIds Identificadores de las subcategorías
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private synchronized void reindex(Set<Integer> subcategoryIds) {
+        var tree = catalogueSnapshot.getTree();
+        if (tree == null || subcategoryIds.isEmpty()) {
+            return;
+        }
+        var context = new HashMap<Integer, Map<String, Float>>();
+        for (var id : subcategoryIds) {
+            context.put(id, contextTerms(tree, tree.getSubcategory(id)));
+        }
+        var index = current;
+        for (var item : tree.getItems()) {
+            var terms = context.get(item.getSubcategoryId());
+            if (terms != null) {
+                index.index(item, terms);
+            }
+        }
+    }
+
+    /**
+     * Términos que un item hereda de su subcategoría y de la categoría de esta
+     *
+     * @param tree Árbol del catálogo, puede ser null
+     * @param subcategory Subcategoría del item, puede ser null
+     * @return Términos con su peso
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private static Map<String, Float> contextTerms(CatalogueSnapshot.Tree tree, SubcategoryView subcategory) {
+        var terms = new HashMap<String, Float>();
+        if (subcategory != null) {
+            addTerms(terms, subcategory.getName(), SUBCATEGORY_WEIGHT);
+            tree.getCategories().stream()
+                    .filter(category -> category.getId().equals(subcategory.getCategoryId()))
+                    .findFirst()
+                    .ifPresent(category -> addTerms(terms, category.getName(), CATEGORY_WEIGHT));
+        }
+        return terms;
+    }
+
+    /**
+     * Busca los items más relevantes para la consulta
+     *
+     * @param query Consulta de una o varias palabras
+     * @param limit Cantidad máxima de resultados
+     * @return Listado de resultados ordenados por relevancia descendente
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public List<Hit> search(String query, int limit) {
+        var tokens = tokenize(query);
+        if (tokens.isEmpty()) {
+            return Collections.emptyList();
+        }
+        var index = current;
+        var total = Math.max(index.documents.size(), 1);
+        var scores = new HashMap<Integer, float[]>();
+        for (var position = 0; position < tokens.size(); position++) {
+            var expansions = index.expand(tokens.get(position), position == tokens.size() - 1);
+            // Mejor aporte de esta palabra para cada item, para no sumar varias expansiones del mismo término
+            var best = new HashMap<Integer, Float>();
+            expansions.forEach((term, similarity) -> {
+                var posting = index.postings.get(term);
+                if (posting == null) {
+                    return;
+                }
+                var idf = (float) Math.log(1.0 + (double) total / posting.size());
+                posting.forEach((id, weight) -> best.merge(id, similarity * weight * idf, Float::max));
+            });
+            best.forEach((id, score) -> {
+                var accumulated = scores.computeIfAbsent(id, key -> new float[2]);
+                accumulated[0] += score;
+                accumulated[1]++;
+            });
+        }
+        var heap = new PriorityQueue<Hit>(Comparator.comparingDouble(Hit::getScore));
+        var tree = catalogueSnapshot.getTree();
+        scores.forEach((id, accumulated) -> {
+            // Los items que contienen todas las palabras de la consulta quedan por encima
+            var score = accumulated[0] * accumulated[1] / tokens.size();
+            if (heap.size() < limit || score > heap.peek().getScore()) {
+                var item = tree == null ? null : tree.getItem(id);
+                heap.add(new Hit(id, item == null ? null : item.getName(),
+                        item == null ? null : item.getSubcategoryId(), score));
+                if (heap.size() > limit) {
+                    heap.poll();
+                }
+            }
+        });
+        var hits = new ArrayList<>(heap);
+        hits.sort(Comparator.comparingDouble(Hit::getScore).reversed());
+        return hits;
+    }
+
+    /**
+     * Agrega las palabras de un texto a los términos de un item con el peso indicado
+     *
+     * @param terms Términos del item
+     * @param text Texto a dividir en palabras
+     * @param weight Peso del campo
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private static void addTerms(Map<String, Float> terms, String text, float weight) {
+        for (var token : tokenize(text)) {
+            terms.merge(token, weight, Float::sum);
+        }
+    }
+
+    /**
+     * Divide un texto en palabras normalizadas
+     *
+     * @param text Texto
+     * @return Listado de palabras
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private static List<String> tokenize(String text) {
+        var tokens = new ArrayList<String>();
+        for (var token : SEPARATOR.split(TextNormalizer.normalize(text))) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Trigramas de un término, con marcas de inicio y fin para que las palabras cortas tengan trigramas
+     *
+     * @param term Término
+     * @return Conjunto de trigramas
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private static Set<String> trigramsOf(String term) {
+        var padded = "$" + term + "$";
+        var result = new HashSet<String>();
+        for (var i = 0; i + 3 <= padded.length(); i++) {
+            result.add(padded.substring(i, i + 3));
+        }
+        return result;
+    }
+
+    /**
+     * Estructuras de un índice completo
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private static final class Index {
+
+        /**
+         * Listas de ocurrencias: término → (item → peso)
+         */
+        private final ConcurrentHashMap<String, ConcurrentHashMap<Integer, Float>> postings = new ConcurrentHashMap<>();
+
+        /**
+         * Vocabulario ordenado, usado para las coincidencias por prefijo
+         */
+        private final ConcurrentSkipListSet<String> vocabulary = new ConcurrentSkipListSet<>();
+
+        /**
+         * Trigramas del vocabulario: trigrama → términos que lo contienen
+         */
+        private final ConcurrentHashMap<String, Set<String>> trigrams = new ConcurrentHashMap<>();
+
+        /**
+         * Términos indexados de cada item, usados para retirarlo del índice
+         */
+        private final ConcurrentHashMap<Integer, Map<String, Float>> documents = new ConcurrentHashMap<>();
+
+        /**
+         * Indexa o vuelve a indexar un item
+         *
+         * @param item Vista del item
+         * @param context Términos heredados de su subcategoría y categoría
+         *
+         * @author Lorena Castro <Lcastro0398@gmail.com>
+         * @since 1.0.0
+         */
+        private void index(ItemView item, Map<String, Float> context) {
+            remove(item.getId());
+            var terms = new HashMap<>(context);
+            addTerms(terms, item.getName(), NAME_WEIGHT);
+            terms.forEach((term, weight) -> {
+                postings.computeIfAbsent(term, key -> {
+                    vocabulary.add(key);
+                    for (var trigram : trigramsOf(key)) {
+                        trigrams.computeIfAbsent(trigram, ignored -> ConcurrentHashMap.newKeySet()).add(key);
+                    }
+                    return new ConcurrentHashMap<>();
+                }).put(item.getId(), weight);
+            });
+            documents.put(item.getId(), terms);
+        }
+
+        /**
+         * Retira un item del índice
+         *
+         * @param id Identificador del item
+         *
+         * @author Lorena Castro <Lcastro0398@gmail.com>
+         * @since 1.0.0
+         */
+        private void remove(Integer id) {
+            var terms = documents.remove(id);
+            if (terms == null) {
+                return;
+            }
+            for (var term : terms.keySet()) {
+                var posting = postings.get(term);
+                if (posting == null) {
+                    continue;
+                }
+                posting.remove(id);
+                if (posting.isEmpty()) {
+                    postings.remove(term);
+                    vocabulary.remove(term);
+                    for (var trigram : trigramsOf(term)) {
+                        var sharing = trigrams.get(trigram);
+                        if (sharing != null) {
+                            sharing.remove(term);
+                            if (sharing.isEmpty()) {
+                                trigrams.remove(trigram);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Términos del vocabulario que corresponden a una palabra de la consulta, con su similitud
+         *
+         * @param token Palabra normalizada de la consulta
+         * @param allowPrefix Indica si se aceptan coincidencias por prefijo (última palabra de la consulta)
+         * @return Términos y similitud en (0, 1]
+         *
+         * @author Lorena Castro <Lcastro0398@gmail.com>
+         * @since 1.0.0
+         */
+        private Map<String, Float> expand(String token, boolean allowPrefix) {
+            var expansions = new LinkedHashMap<String, Float>();
+            if (postings.containsKey(token)) {
+                expansions.put(token, 1.0f);
+            }
+            if (allowPrefix) {
+                for (var term : vocabulary.tailSet(token, false)) {
+                    if (!term.startsWith(token) || expansions.size() >= MAX_EXPANSIONS) {
+                        break;
+                    }
+                    expansions.put(term, PREFIX_SIMILARITY);
+                }
+            }
+            var tokenTrigrams = trigramsOf(token);
+            var shared = new HashMap<String, Integer>();
+            for (var trigram : tokenTrigrams) {
+                var terms = trigrams.get(trigram);
+                if (terms != null) {
+                    terms.forEach(term -> shared.merge(term, 1, Integer::sum));
+                }
+            }
+            shared.entrySet().stream()
+                    .filter(entry -> !expansions.containsKey(entry.getKey()))
+                    .map(entry -> Map.entry(entry.getKey(), 2.0f * entry.getValue()
+                            / (tokenTrigrams.size() + trigramsOf(entry.getKey()).size())))
+                    .filter(entry -> entry.getValue() >= MIN_FUZZY_SIMILARITY)
+                    .sorted(Map.Entry.<String, Float>comparingByValue().reversed())
+                    .limit(Math.max(0, MAX_EXPANSIONS - expansions.size()))
+                    .forEach(entry -> expansions.put(entry.getKey(), entry.getValue() * PREFIX_SIMILARITY));
+            return expansions;
+        }
+    }
+
+    /**
+     * Resultado de una búsqueda
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Getter
+    @AllArgsConstructor
+    public static final class Hit {
+
+        /**
+         * Identificador del item
+         */
+        private final Integer id;
+
+        /**
+         * Nombre del item
+         */
+        private final String name;
+
+        /**
+         * Identificador de la subcategoría del item
+         */
+        private final Integer subcategoryId;
+
+        /**
+         * Relevancia del item para la consulta
+         */
+        private final double score;
+    }
+}
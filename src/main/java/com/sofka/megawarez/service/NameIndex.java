@@ -0,0 +1,164 @@
+package com.sofka.megawarez.service;
+
+import com.sofka.megawarez.utility.PrefixIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Índices de prefijos de los nombres de categorías, subcategorías e items usados por el autocompletado.
+ * Se construyen a partir de la copia en memoria del catálogo y se mantienen con cada escritura.
+ * Una reconstrucción arma índices nuevos y los publica juntos, las búsquedas en curso siguen
+ * usando los anteriores completos
+ *
+ * @version 1.0.0 2022-04-06
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+@Slf4j
+@Component
+public class NameIndex {
+
+    /**
+     * Índices vigentes
+     */
+    private volatile Indexes indexes = new Indexes();
+
+    /**
+     * Copia en memoria del catálogo
+     */
+    @Autowired
+    private CatalogueSnapshot catalogueSnapshot;
+
+    /**
+     * Construye los índices al iniciar la aplicación, después de la copia en memoria del catálogo
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Order(2)
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        reload();
+    }
+
+    /**
+     * Vuelve a construir los índices desde la copia en memoria del catálogo
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public synchronized void reload() {
+        var tree = catalogueSnapshot.getTree();
+        if (tree == null) {
+            return;
+        }
+        var rebuilt = new Indexes();
+        tree.getCategories().forEach(category -> rebuilt.categories.put(category.getId(), category.getName()));
+        tree.getSubcategories().forEach(subcategory -> rebuilt.subcategories.put(subcategory.getId(), subcategory.getName()));
+        tree.getItems().forEach(item -> rebuilt.items.put(item.getId(), item.getName()));
+        indexes = rebuilt;
+        log.info("Índices de nombres construidos: {} categorías, {} subcategorías, {} items",
+                rebuilt.categories.size(), rebuilt.subcategories.size(), rebuilt.items.size());
+    }
+
+    /**
+     * Devuelve el índice de nombres de categorías
+     *
+     * @return Índice vigente
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public PrefixIndex getCategories() {
+        return indexes.categories;
+    }
+
+    /**
+     * Devuelve el índice de nombres de subcategorías
+     *
+     * @return Índice vigente
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public PrefixIndex getSubcategories() {
+        return indexes.subcategories;
+    }
+
+    /**
+     * Devuelve el índice de nombres de items
+     *
+     * @return Índice vigente
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public PrefixIndex getItems() {
+        return indexes.items;
+    }
+
+    /**
+     * Agrega o reemplaza el nombre de una categoría. Espera a que termine una reconstrucción en
+     * curso para no escribir en los índices que está por reemplazar
+     *
+     * @param id Identificador de la categoría
+     * @param name Nombre de la categoría
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public synchronized void putCategory(Integer id, String name) {
+        indexes.categories.put(id, name);
+    }
+
+    /**
+     * Agrega o reemplaza el nombre de una subcategoría
+     *
+     * @param id Identificador de la subcategoría
+     * @param name Nombre de la subcategoría
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public synchronized void putSubcategory(Integer id, String name) {
+        indexes.subcategories.put(id, name);
+    }
+
+    /**
+     * Agrega o reemplaza el nombre de un item
+     *
+     * @param id Identificador del item
+     * @param name Nombre del item
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public synchronized void putItem(Integer id, String name) {
+        indexes.items.put(id, name);
+    }
+
+    /**
+     * Borra el nombre de un item
+     *
+     * @param id Identificador del item
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public synchronized void removeItem(Integer id) {
+        indexes.items.remove(id);
+    }
+
+    /**
+     * Índices de un mismo momento del catálogo
+     */
+    private static final class Indexes {
+        private final PrefixIndex categories = new PrefixIndex();
+        private final PrefixIndex subcategories = new PrefixIndex();
+        private final PrefixIndex items = new PrefixIndex();
+    }
+}
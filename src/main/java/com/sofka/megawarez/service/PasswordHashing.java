@@ -0,0 +1,190 @@
+package com.sofka.megawarez.service;
+
+import com.sofka.megawarez.utility.PasswordHash;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ejecutor acotado para calcular y verificar contraseñas. Los algoritmos lentos (PBKDF2) se
+ * ejecutan en unos pocos hilos propios con una cola limitada, así un pico de inicios de sesión no
+ * ocupa los hilos de Tomcat que atienden los demás endpoints. Si la cola está llena, o el cálculo
+ * no termina a tiempo, la petición se rechaza de inmediato con IllegalStateException (503).
+ *
+ * Al verificar una contraseña guardada con un algoritmo anterior (md5) o con menos iteraciones que
+ * las vigentes se recalcula en la misma tarea, para que quien la usa la actualice.
+ *
+ * Para los usuarios inexistentes se verifica la contraseña contra un valor fijo calculado al
+ * arrancar con el algoritmo y las iteraciones vigentes, así su respuesta tarda lo mismo que la de
+ * un usuario real y el tiempo no revela qué nombres existen
+ *
+ * @version 1.0.0 2022-04-06
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+@Slf4j
+@Component
+public class PasswordHashing {
+
+    /**
+     * Algoritmos que se pueden configurar
+     */
+    private static final List<String> ALGORITHMS =
+            List.of(PasswordHash.MD5, PasswordHash.PBKDF2_SHA256, PasswordHash.PBKDF2_SHA512);
+
+    /**
+     * Algoritmo de las contraseñas nuevas o recalculadas
+     */
+    private final String algorithm;
+
+    /**
+     * Iteraciones de PBKDF2
+     */
+    private final int iterations;
+
+    /**
+     * Valor guardado de una contraseña aleatoria, usado al verificar usuarios inexistentes
+     */
+    private final String unknownUserHash;
+
+    /**
+     * Tiempo máximo de espera de una petición, en cola y en cálculo
+     */
+    private final long timeoutNanos;
+
+    /**
+     * Hilos de cálculo con cola acotada, rechaza las tareas cuando la cola está llena
+     */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Constructor de la clase
+     *
+     * @param algorithm Algoritmo de las contraseñas nuevas o recalculadas
+     * @param iterations Iteraciones de PBKDF2
+     * @param threads Cantidad de hilos de cálculo
+     * @param queueSize Cantidad máxima de cálculos en espera
+     * @param timeout Tiempo máximo de espera de una petición
+     * @throws IllegalStateException si el algoritmo no es soportado
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public PasswordHashing(
+            @Value("${megawarez.password.algorithm:pbkdf2-sha256}") String algorithm,
+            @Value("${megawarez.password.iterations:310000}") int iterations,
+            @Value("${megawarez.password.threads:2}") int threads,
+            @Value("${megawarez.password.queue-size:32}") int queueSize,
+            @Value("${megawarez.password.timeout:PT2S}") Duration timeout
+    ) {
+        if (!ALGORITHMS.contains(algorithm)) {
+            throw new IllegalStateException("megawarez.password.algorithm debe ser uno de " + ALGORITHMS);
+        }
+        this.algorithm = algorithm;
+        this.iterations = iterations;
+        this.unknownUserHash = PasswordHash.hash(algorithm, iterations, UUID.randomUUID().toString());
+        this.timeoutNanos = timeout.toNanos();
+        var counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), task -> {
+                    var thread = new Thread(task, "password-hashing-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Verifica una contraseña contra el valor guardado
+     *
+     * @param password Contraseña recibida
+     * @param stored Valor guardado
+     * @return Valor a guardar: el mismo si no cambió el algoritmo ni las iteraciones, uno
+     * recalculado si cambiaron, null si la contraseña no coincide
+     * @throws IllegalStateException si el ejecutor está saturado o el cálculo no termina a tiempo
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public String verify(String password, String stored) {
+        return execute(() -> {
+            if (!PasswordHash.matches(password, stored)) {
+                return null;
+            }
+            return PasswordHash.needsRehash(stored, algorithm, iterations)
+                    ? PasswordHash.hash(algorithm, iterations, password)
+                    : stored;
+        });
+    }
+
+    /**
+     * Verifica una contraseña para un usuario inexistente: hace el mismo cálculo que verify contra
+     * un valor fijo, una contraseña aleatoria que nadie conoce
+     *
+     * @param password Contraseña recibida
+     * @throws IllegalStateException si el ejecutor está saturado o el cálculo no termina a tiempo
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public void verifyUnknown(String password) {
+        verify(password, unknownUserHash);
+    }
+
+    /**
+     * Detiene los hilos de cálculo
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Ejecuta un cálculo en el ejecutor y espera su resultado
+     *
+     * @param task Cálculo
+     * @return Resultado del cálculo
+     * @throws IllegalStateException si el ejecutor está saturado o el cálculo no termina a tiempo
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private String execute(Callable<String> task) {
+        var start = System.nanoTime();
+        try {
+            var future = executor.submit(task);
+            try {
+                return future.get(timeoutNanos, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException exception) {
+                future.cancel(true);
+                log.warn("Cálculo de contraseña cancelado tras {} ms", (System.nanoTime() - start) / 1_000_000);
+                throw new IllegalStateException("Hay demasiados inicios de sesión en curso, intente más tarde");
+            }
+        } catch (RejectedExecutionException exception) {
+            throw new IllegalStateException("Hay demasiados inicios de sesión en curso, intente más tarde");
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Se interrumpió el cálculo de la contraseña");
+        } catch (ExecutionException exception) {
+            if (exception.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) exception.getCause();
+            }
+            throw new IllegalStateException(exception.getCause());
+        }
+    }
+}
@@ -0,0 +1,465 @@
+package com.sofka.megawarez.service;
+
+import com.sofka.megawarez.domain.Session;
+import com.sofka.megawarez.repository.SessionRepository;
+import com.sofka.megawarez.repository.UserRepository;
+import com.sofka.megawarez.utility.TimingWheel;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sesiones vigentes en memoria, indexadas por token: validar un token es una búsqueda en el mapa,
+ * sin consultar la base de datos. Los vencimientos se programan en una rueda de tiempo jerárquica
+ * que se avanza cada segundo.
+ *
+ * Las sesiones nuevas y las cerradas se escriben en la tabla session de forma diferida, en lotes.
+ * Al arrancar se cargan las sesiones vigentes de la tabla, así que un reinicio no cierra las
+ * sesiones de los usuarios (salvo las creadas en el último intervalo de escritura).
+ *
+ * Mientras la base de datos no responde lo pendiente se acumula hasta megawarez.session.max-pending
+ * por cola; lo que no cabe se descarta y se informa en el registro: la sesión sigue vigente en
+ * memoria pero no sobrevive a un reinicio (o, si es un cierre, la fila se borra al vencer). Las
+ * filas que la base de datos rechaza, por ejemplo de un usuario ya borrado, se descartan una a una
+ * para no bloquear a las demás
+ *
+ * Es el modo por defecto (megawarez.session.mode = store); con varias instancias de la aplicación
+ * se usa el modo signed (ver SignedSessionTokens)
+ *
+ * @version 1.0.0 2022-04-06
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "megawarez.session.mode", havingValue = "store", matchIfMissing = true)
+public class SessionStore {
+
+    /**
+     * Generador de tokens
+     */
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    /**
+     * Dígitos hexadecimales de los tokens
+     */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * Repositorio de sesiones
+     */
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    /**
+     * Repositorio de usuarios, entrega referencias sin consultar la tabla
+     */
+    @Autowired
+    private UserRepository userRepository;
+
+    /**
+     * Plantilla de transacciones, usada en las escrituras diferidas
+     */
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * Tiempo de vida de una sesión desde su creación
+     */
+    private final Duration ttl;
+
+    /**
+     * Sesiones vigentes por token
+     */
+    private final ConcurrentHashMap<String, Entry> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * Vencimientos programados: ticks de un segundo, 3 niveles de 64 casillas (unos 3 días)
+     */
+    private final TimingWheel<String> wheel = new TimingWheel<>(1000, 64, 3, System.currentTimeMillis());
+
+    /**
+     * Sesiones pendientes de escribir y tokens pendientes de borrar
+     */
+    private final ConcurrentLinkedQueue<Entry> pendingInserts = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<String> pendingDeletes = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Tamaño de cada cola pendiente, ConcurrentLinkedQueue.size() recorre la cola
+     */
+    private final AtomicInteger pendingInsertCount = new AtomicInteger();
+    private final AtomicInteger pendingDeleteCount = new AtomicInteger();
+
+    /**
+     * Sesiones y cierres descartados por falta de espacio en las colas
+     */
+    private final LongAdder droppedInserts = new LongAdder();
+    private final LongAdder droppedDeletes = new LongAdder();
+
+    /**
+     * Descartes ya informados en el registro, solo se usan dentro de flush()
+     */
+    private long reportedInserts;
+    private long reportedDeletes;
+
+    /**
+     * Sesiones nuevas rechazadas por la base de datos
+     */
+    private final LongAdder rejectedInserts = new LongAdder();
+
+    /**
+     * Cantidad máxima de elementos de cada cola pendiente
+     */
+    private final int maxPending;
+
+    /**
+     * Constructor de la clase
+     *
+     * @param ttl Tiempo de vida de una sesión
+     * @param maxPending Cantidad máxima de sesiones nuevas y de cierres pendientes de escribir
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public SessionStore(
+            @Value("${megawarez.session.ttl:PT12H}") Duration ttl,
+            @Value("${megawarez.session.max-pending:100000}") int maxPending
+    ) {
+        this.ttl = ttl;
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Carga las sesiones vigentes de la tabla session
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @PostConstruct
+    public void load() {
+        var now = Instant.now();
+        var loaded = 0;
+        for (var session : sessionRepository.findCreatedAfter(now.minus(ttl))) {
+            var entry = new Entry(session.getToken(), session.getUserId(), session.getCreatedAt(),
+                    session.getCreatedAt().plus(ttl).toEpochMilli());
+            sessions.put(entry.token, entry);
+            wheel.schedule(entry.token, entry.expiresAt);
+            loaded++;
+        }
+        log.info("Sesiones vigentes cargadas: {}", loaded);
+    }
+
+    /**
+     * Crea una sesión para un usuario
+     *
+     * @param userId Identificador del usuario
+     * @return Token de la sesión
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public String create(Integer userId) {
+        var createdAt = Instant.now();
+        var entry = new Entry(newToken(), userId, createdAt, createdAt.plus(ttl).toEpochMilli());
+        sessions.put(entry.token, entry);
+        wheel.schedule(entry.token, entry.expiresAt);
+        if (pendingInsertCount.incrementAndGet() <= maxPending) {
+            pendingInserts.add(entry);
+        } else {
+            pendingInsertCount.decrementAndGet();
+            droppedInserts.increment();
+        }
+        return entry.token;
+    }
+
+    /**
+     * Valida un token
+     *
+     * @param token Token de la sesión
+     * @return Identificador del usuario de la sesión, null si el token no existe o venció
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public Integer validate(String token) {
+        var entry = token == null ? null : sessions.get(token);
+        return entry == null || entry.expiresAt <= System.currentTimeMillis() ? null : entry.userId;
+    }
+
+    /**
+     * Cierra una sesión
+     *
+     * @param token Token de la sesión
+     * @return false si la sesión no existía
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public boolean revoke(String token) {
+        if (token == null || sessions.remove(token) == null) {
+            return false;
+        }
+        if (pendingDeleteCount.incrementAndGet() <= maxPending) {
+            pendingDeletes.add(token);
+        } else {
+            pendingDeleteCount.decrementAndGet();
+            droppedDeletes.increment();
+        }
+        return true;
+    }
+
+    /**
+     * Retira de memoria las sesiones vencidas. Sus filas se borran en purge()
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Scheduled(fixedDelayString = "PT1S")
+    public void expire() {
+        var now = System.currentTimeMillis();
+        for (var token : wheel.advance(now)) {
+            sessions.computeIfPresent(token, (key, entry) -> entry.expiresAt <= now ? null : entry);
+        }
+    }
+
+    /**
+     * Escribe en la tabla session las sesiones nuevas y borra las cerradas, en una transacción.
+     * Si la base de datos rechaza alguna fila se escriben una por una y se descartan las rechazadas;
+     * si falla por otra causa, lo pendiente se conserva para el siguiente intento
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${megawarez.session.flush-interval:PT1S}")
+    public synchronized void flush() {
+        reportDropped();
+        var inserts = new ArrayList<Entry>();
+        var deletes = new ArrayList<String>();
+        for (Entry entry; (entry = pendingInserts.poll()) != null; ) {
+            pendingInsertCount.decrementAndGet();
+            inserts.add(entry);
+        }
+        for (String token; (token = pendingDeletes.poll()) != null; ) {
+            pendingDeleteCount.decrementAndGet();
+            deletes.add(token);
+        }
+        if (inserts.isEmpty() && deletes.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> write(inserts, deletes));
+        } catch (DataIntegrityViolationException exception) {
+            flushOneByOne(inserts, deletes);
+        } catch (DataAccessException exception) {
+            log.warn("No se pudieron escribir {} sesiones y borrar {}: {}",
+                    inserts.size(), deletes.size(), exception.getMessage());
+            requeue(inserts, deletes);
+        }
+    }
+
+    /**
+     * Devuelve la cantidad de sesiones nuevas que no se escribieron por falta de espacio en la cola
+     *
+     * @return Sesiones descartadas desde el arranque
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public long getDroppedInserts() {
+        return droppedInserts.sum();
+    }
+
+    /**
+     * Devuelve la cantidad de cierres de sesión que no se escribieron por falta de espacio en la cola
+     *
+     * @return Cierres descartados desde el arranque
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public long getDroppedDeletes() {
+        return droppedDeletes.sum();
+    }
+
+    /**
+     * Devuelve la cantidad de sesiones nuevas que la base de datos rechazó
+     *
+     * @return Sesiones rechazadas desde el arranque
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public long getRejectedInserts() {
+        return rejectedInserts.sum();
+    }
+
+    /**
+     * Borra de la tabla session las sesiones vencidas
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Scheduled(fixedDelayString = "${megawarez.session.purge-interval:PT1H}")
+    public void purge() {
+        try {
+            var deleted = transactionTemplate.execute(
+                    status -> sessionRepository.deleteCreatedBefore(Instant.now().minus(ttl)));
+            log.debug("Sesiones vencidas borradas: {}", deleted);
+        } catch (DataAccessException exception) {
+            log.warn("No se pudieron borrar las sesiones vencidas: {}", exception.getMessage());
+        }
+    }
+
+    /**
+     * Inserta las sesiones nuevas y borra las cerradas, dentro de la transacción en curso
+     *
+     * @param inserts Sesiones nuevas
+     * @param deletes Tokens de las sesiones cerradas
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private void write(List<Entry> inserts, List<String> deletes) {
+        var entities = new ArrayList<Session>(inserts.size());
+        for (var entry : inserts) {
+            var session = new Session();
+            session.setUser(userRepository.getById(entry.userId));
+            session.setToken(entry.token);
+            session.setCreatedAt(entry.createdAt);
+            entities.add(session);
+        }
+        sessionRepository.saveAll(entities);
+        sessionRepository.flush();
+        if (!deletes.isEmpty()) {
+            sessionRepository.deleteByTokens(deletes);
+        }
+    }
+
+    /**
+     * Escribe cada sesión nueva en su propia transacción y descarta las que la base de datos
+     * rechaza; luego borra las cerradas. Si la base de datos falla por otra causa, lo que falta
+     * se conserva para el siguiente intento
+     *
+     * @param inserts Sesiones nuevas
+     * @param deletes Tokens de las sesiones cerradas
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private void flushOneByOne(List<Entry> inserts, List<String> deletes) {
+        for (var i = 0; i < inserts.size(); i++) {
+            var entry = inserts.get(i);
+            try {
+                transactionTemplate.executeWithoutResult(status -> write(List.of(entry), List.of()));
+            } catch (DataIntegrityViolationException exception) {
+                rejectedInserts.increment();
+                log.warn("Sesión del usuario {} descartada, la base de datos la rechazó: {}",
+                        entry.userId, exception.getMessage());
+            } catch (DataAccessException exception) {
+                log.warn("No se pudieron escribir {} sesiones y borrar {}: {}",
+                        inserts.size() - i, deletes.size(), exception.getMessage());
+                requeue(inserts.subList(i, inserts.size()), deletes);
+                return;
+            }
+        }
+        if (deletes.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> sessionRepository.deleteByTokens(deletes));
+        } catch (DataAccessException exception) {
+            log.warn("No se pudieron borrar {} sesiones: {}", deletes.size(), exception.getMessage());
+            requeue(List.of(), deletes);
+        }
+    }
+
+    /**
+     * Devuelve a las colas lo que no se pudo escribir. Puede superar momentáneamente el máximo:
+     * ya estaba contado antes del intento
+     *
+     * @param inserts Sesiones nuevas
+     * @param deletes Tokens de las sesiones cerradas
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private void requeue(List<Entry> inserts, List<String> deletes) {
+        pendingInsertCount.addAndGet(inserts.size());
+        pendingInserts.addAll(inserts);
+        pendingDeleteCount.addAndGet(deletes.size());
+        pendingDeletes.addAll(deletes);
+    }
+
+    /**
+     * Informa en el registro las sesiones y los cierres descartados desde el último volcado
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private void reportDropped() {
+        var inserts = droppedInserts.sum();
+        var deletes = droppedDeletes.sum();
+        if (inserts > reportedInserts || deletes > reportedDeletes) {
+            log.warn("Colas de la tabla session llenas, descartados: {} sesiones nuevas y {} cierres",
+                    inserts - reportedInserts, deletes - reportedDeletes);
+            reportedInserts = inserts;
+            reportedDeletes = deletes;
+        }
+    }
+
+    /**
+     * Genera un token aleatorio de 32 caracteres hexadecimales (128 bits)
+     *
+     * @return Token
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private static String newToken() {
+        var bytes = new byte[16];
+        RANDOM.nextBytes(bytes);
+        var token = new char[32];
+        for (var i = 0; i < bytes.length; i++) {
+            token[2 * i] = HEX[(bytes[i] >> 4) & 0xF];
+            token[2 * i + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(token);
+    }
+
+    /**
+     * Sesión vigente
+     */
+    private static final class Entry {
+
+        private final String token;
+        private final Integer userId;
+        private final Instant createdAt;
+        private final long expiresAt;
+
+        private Entry(String token, Integer userId, Instant createdAt, long expiresAt) {
+            this.token = token;
+            this.userId = userId;
+            this.createdAt = createdAt;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,443 @@
+package com.sofka.megawarez.service;
+
+import com.sofka.megawarez.domain.Session;
+import com.sofka.megawarez.repository.SessionRepository;
+import com.sofka.megawarez.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tokens de sesión firmados con HMAC-SHA256: cualquier instancia de la aplicación los valida con
+ * la llave compartida, sin consultar la base de datos ni otras instancias. Cada token lleva la
+ * llave con que se firmó, el usuario, el vencimiento y un identificador aleatorio; son 33 bytes
+ * que se envían como 44 caracteres Base64 URL.
+ *
+ * Las llaves se rotan por configuración: primero se agrega la llave nueva en todas las instancias,
+ * luego se activa y la anterior se retira cuando vencen los tokens firmados con ella.
+ *
+ * Al cerrar una sesión el identificador del token se registra como revocado en la tabla session;
+ * cada instancia sincroniza periódicamente esas revocaciones y las conserva hasta que el token
+ * vence, así que la lista es pequeña. La validación no crea objetos salvo el resultado.
+ *
+ * Se activa con megawarez.session.mode = signed
+ *
+ * @version 1.0.0 2022-04-06
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "megawarez.session.mode", havingValue = "signed")
+public class SignedSessionTokens {
+
+    /**
+     * Algoritmo de la firma
+     */
+    private static final String ALGORITHM = "HmacSHA256";
+
+    /**
+     * Bytes del contenido (llave, usuario, vencimiento, identificador) y de la firma truncada
+     */
+    private static final int PAYLOAD_LENGTH = 17;
+    private static final int SIGNATURE_LENGTH = 16;
+    private static final int TOKEN_BYTES = PAYLOAD_LENGTH + SIGNATURE_LENGTH;
+
+    /**
+     * Longitud del token en Base64 URL, sin relleno porque TOKEN_BYTES es múltiplo de 3
+     */
+    private static final int TOKEN_LENGTH = TOKEN_BYTES / 3 * 4;
+
+    /**
+     * Longitud mínima de cada llave en bytes
+     */
+    private static final int MIN_KEY_LENGTH = 32;
+
+    /**
+     * Valor de cada carácter Base64 URL, -1 si no es válido
+     */
+    private static final byte[] BASE64_URL = new byte[128];
+
+    static {
+        Arrays.fill(BASE64_URL, (byte) -1);
+        var alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+        for (var i = 0; i < alphabet.length(); i++) {
+            BASE64_URL[alphabet.charAt(i)] = (byte) i;
+        }
+    }
+
+    /**
+     * Generador de los identificadores de token
+     */
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    /**
+     * Repositorio de sesiones, donde se registran las revocaciones
+     */
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    /**
+     * Repositorio de usuarios, entrega referencias sin consultar la tabla
+     */
+    @Autowired
+    private UserRepository userRepository;
+
+    /**
+     * Plantilla de transacciones
+     */
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * Llaves por identificador (0 a 255), null en las posiciones sin llave
+     */
+    private final SecretKeySpec[] keys = new SecretKeySpec[256];
+
+    /**
+     * Identificador de la llave con que se firman los tokens nuevos
+     */
+    private final int activeKey;
+
+    /**
+     * Tiempo de vida de un token desde su emisión
+     */
+    private final Duration ttl;
+
+    /**
+     * Memoria de trabajo de la validación por hilo: token decodificado, firma calculada y
+     * un Mac por llave (Mac no es seguro para hilos)
+     */
+    private final ThreadLocal<Buffers> buffers = ThreadLocal.withInitial(Buffers::new);
+
+    /**
+     * Revocaciones vigentes: identificador del token y su vencimiento en segundos
+     */
+    private final Map<Long, Long> revocations = new HashMap<>();
+
+    /**
+     * Identificadores revocados en orden, se reemplaza completo en cada cambio
+     */
+    private volatile long[] revoked = new long[0];
+
+    /**
+     * Momento de la última revocación sincronizada
+     */
+    private Instant watermark;
+
+    /**
+     * Constructor de la clase
+     *
+     * @param keys Llaves en formato id:secreto separadas por coma, el secreto en Base64
+     * @param activeKey Identificador de la llave activa
+     * @param ttl Tiempo de vida de un token
+     * @throws IllegalStateException si las llaves no son válidas o falta la llave activa
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public SignedSessionTokens(
+            @Value("${megawarez.session.signed.keys:}") String keys,
+            @Value("${megawarez.session.signed.active-key:0}") int activeKey,
+            @Value("${megawarez.session.ttl:PT12H}") Duration ttl
+    ) {
+        for (var entry : keys.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            var separator = entry.indexOf(':');
+            try {
+                var id = Integer.parseInt(entry.substring(0, separator).trim());
+                var secret = Base64.getDecoder().decode(entry.substring(separator + 1).trim());
+                if (id < 0 || id >= this.keys.length || secret.length < MIN_KEY_LENGTH) {
+                    throw new IllegalArgumentException("identificador o longitud no válidos");
+                }
+                this.keys[id] = new SecretKeySpec(secret, ALGORITHM);
+            } catch (IllegalArgumentException | IndexOutOfBoundsException exception) {
+                throw new IllegalStateException("Llave de sesión no válida en megawarez.session.signed.keys: "
+                        + exception.getMessage() + " (formato id:secreto, secreto en Base64 de al menos "
+                        + MIN_KEY_LENGTH + " bytes)");
+            }
+        }
+        if (activeKey < 0 || activeKey >= this.keys.length || this.keys[activeKey] == null) {
+            throw new IllegalStateException("La llave activa " + activeKey + " no está en megawarez.session.signed.keys");
+        }
+        this.activeKey = activeKey;
+        this.ttl = ttl;
+        this.watermark = Instant.now().minus(ttl);
+    }
+
+    /**
+     * Carga las revocaciones de los tokens vigentes
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @PostConstruct
+    public void load() {
+        sync();
+        log.info("Tokens firmados con la llave {}, revocaciones vigentes: {}", activeKey, revoked.length);
+    }
+
+    /**
+     * Emite un token para un usuario
+     *
+     * @param userId Identificador del usuario
+     * @return Token firmado
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public String issue(Integer userId) {
+        var token = new byte[TOKEN_BYTES];
+        token[0] = (byte) activeKey;
+        writeInt(token, 1, userId);
+        writeInt(token, 5, (int) Instant.now().plus(ttl).getEpochSecond());
+        writeLong(token, 9, RANDOM.nextLong());
+        var buffer = buffers.get();
+        sign(buffer, activeKey, token);
+        System.arraycopy(buffer.signature, 0, token, PAYLOAD_LENGTH, SIGNATURE_LENGTH);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token);
+    }
+
+    /**
+     * Valida un token: formato, llave, firma, vencimiento y revocación
+     *
+     * @param token Token firmado
+     * @return Identificador del usuario, null si el token no es válido, venció o fue revocado
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public Integer validate(String token) {
+        var buffer = buffers.get();
+        return verify(token, buffer) ? readInt(buffer.token, 1) : null;
+    }
+
+    /**
+     * Revoca un token válido y registra la revocación en la tabla session para las demás instancias
+     *
+     * @param token Token firmado
+     * @return false si el token no es válido, venció o ya estaba revocado
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public boolean revoke(String token) {
+        var buffer = buffers.get();
+        if (!verify(token, buffer)) {
+            return false;
+        }
+        var userId = readInt(buffer.token, 1);
+        var expiresAt = Integer.toUnsignedLong(readInt(buffer.token, 5));
+        var id = readLong(buffer.token, 9);
+        var registered = true;
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                var session = new Session();
+                session.setUser(userRepository.getById(userId));
+                session.setToken(String.format("%016x", id));
+                session.setCreatedAt(Instant.ofEpochSecond(expiresAt).minus(ttl));
+                session.setRevokedAt(Instant.now());
+                sessionRepository.save(session);
+            });
+        } catch (DataIntegrityViolationException exception) {
+            // Otra instancia ya lo revocó y aún no se sincroniza
+            registered = false;
+        }
+        synchronized (this) {
+            revocations.put(id, expiresAt);
+            publish();
+        }
+        return registered;
+    }
+
+    /**
+     * Agrega las revocaciones registradas por cualquier instancia desde la última sincronización
+     * y descarta las de tokens vencidos. Relee un minuto hacia atrás para no perder revocaciones
+     * cuya transacción terminó después de la lectura anterior
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Scheduled(fixedDelayString = "${megawarez.session.signed.revocation-sync-interval:PT5S}")
+    public synchronized void sync() {
+        try {
+            var rows = sessionRepository.findRevokedAfter(watermark.minus(Duration.ofMinutes(1)));
+            for (var row : rows) {
+                revocations.put(Long.parseUnsignedLong(row.getToken(), 16),
+                        row.getCreatedAt().plus(ttl).getEpochSecond());
+                if (row.getRevokedAt().isAfter(watermark)) {
+                    watermark = row.getRevokedAt();
+                }
+            }
+        } catch (DataAccessException | NumberFormatException exception) {
+            log.warn("No se pudieron sincronizar las revocaciones de tokens: {}", exception.getMessage());
+        }
+        var now = Instant.now().getEpochSecond();
+        revocations.values().removeIf(expiresAt -> expiresAt <= now);
+        publish();
+    }
+
+    /**
+     * Borra de la tabla session las revocaciones de tokens vencidos
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Scheduled(fixedDelayString = "${megawarez.session.purge-interval:PT1H}")
+    public void purge() {
+        try {
+            var deleted = transactionTemplate.execute(
+                    status -> sessionRepository.deleteCreatedBefore(Instant.now().minus(ttl)));
+            log.debug("Revocaciones de tokens vencidos borradas: {}", deleted);
+        } catch (DataAccessException exception) {
+            log.warn("No se pudieron borrar las revocaciones de tokens vencidos: {}", exception.getMessage());
+        }
+    }
+
+    /**
+     * Decodifica y verifica un token en la memoria de trabajo del hilo
+     *
+     * @param token Token firmado
+     * @param buffer Memoria de trabajo del hilo, queda con el token decodificado
+     * @return true si el token es válido, está vigente y no fue revocado
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private boolean verify(String token, Buffers buffer) {
+        if (token == null || token.length() != TOKEN_LENGTH || !decode(token, buffer.token)) {
+            return false;
+        }
+        var key = buffer.token[0] & 0xFF;
+        if (keys[key] == null) {
+            return false;
+        }
+        if (Integer.toUnsignedLong(readInt(buffer.token, 5)) <= System.currentTimeMillis() / 1000) {
+            return false;
+        }
+        sign(buffer, key, buffer.token);
+        // Comparación en tiempo constante
+        var difference = 0;
+        for (var i = 0; i < SIGNATURE_LENGTH; i++) {
+            difference |= buffer.signature[i] ^ buffer.token[PAYLOAD_LENGTH + i];
+        }
+        return difference == 0 && Arrays.binarySearch(revoked, readLong(buffer.token, 9)) < 0;
+    }
+
+    /**
+     * Firma el contenido de un token y deja la firma completa en buffer.signature
+     *
+     * @param buffer Memoria de trabajo del hilo
+     * @param key Identificador de la llave
+     * @param token Token con el contenido en sus primeros PAYLOAD_LENGTH bytes
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private void sign(Buffers buffer, int key, byte[] token) {
+        try {
+            var mac = buffer.macs[key];
+            if (mac == null) {
+                mac = Mac.getInstance(ALGORITHM);
+                mac.init(keys[key]);
+                buffer.macs[key] = mac;
+            }
+            mac.update(token, 0, PAYLOAD_LENGTH);
+            mac.doFinal(buffer.signature, 0);
+        } catch (GeneralSecurityException exception) {
+            throw new IllegalStateException("No se pudo firmar el token", exception);
+        }
+    }
+
+    /**
+     * Reemplaza la lista ordenada de identificadores revocados, se llama con el monitor tomado
+     */
+    private void publish() {
+        var ids = new long[revocations.size()];
+        var i = 0;
+        for (var id : revocations.keySet()) {
+            ids[i++] = id;
+        }
+        Arrays.sort(ids);
+        revoked = ids;
+    }
+
+    /**
+     * Decodifica Base64 URL sin relleno en el arreglo indicado
+     */
+    private static boolean decode(String text, byte[] output) {
+        for (int in = 0, out = 0; in < text.length(); in += 4, out += 3) {
+            var bits = 0;
+            for (var j = 0; j < 4; j++) {
+                var c = text.charAt(in + j);
+                var value = c < 128 ? BASE64_URL[c] : -1;
+                if (value < 0) {
+                    return false;
+                }
+                bits = bits << 6 | value;
+            }
+            output[out] = (byte) (bits >>> 16);
+            output[out + 1] = (byte) (bits >>> 8);
+            output[out + 2] = (byte) bits;
+        }
+        return true;
+    }
+
+    private static void writeInt(byte[] bytes, int offset, int value) {
+        for (var i = 0; i < 4; i++) {
+            bytes[offset + i] = (byte) (value >>> (24 - 8 * i));
+        }
+    }
+
+    private static void writeLong(byte[] bytes, int offset, long value) {
+        for (var i = 0; i < 8; i++) {
+            bytes[offset + i] = (byte) (value >>> (56 - 8 * i));
+        }
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        var value = 0;
+        for (var i = 0; i < 4; i++) {
+            value = value << 8 | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        var value = 0L;
+        for (var i = 0; i < 8; i++) {
+            value = value << 8 | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    /**
+     * Memoria de trabajo de un hilo
+     */
+    private static final class Buffers {
+
+        private final byte[] token = new byte[TOKEN_BYTES];
+        private final byte[] signature = new byte[32];
+        private final Mac[] macs = new Mac[256];
+    }
+}
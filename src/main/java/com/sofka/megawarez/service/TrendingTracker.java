@@ -0,0 +1,219 @@
+package com.sofka.megawarez.service;
+
+import com.sofka.megawarez.utility.CountMinSketch;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Items en tendencia: los más descargados en la última hora, día o semana, calculados en flujo
+ * a medida que llegan las descargas, sin consultar la tabla download.
+ *
+ * Cada ventana se divide en cubetas de tiempo que rotan (12 de 5 minutos, 24 de 1 hora y 7 de
+ * 1 día). Cada cubeta tiene un sketch Count-Min con las frecuencias aproximadas y un conjunto
+ * acotado de candidatos con los items más frecuentes de la cubeta. La consulta suma las
+ * estimaciones de los candidatos en las cubetas vigentes. La memoria es fija sin importar
+ * el tamaño del catálogo
+ *
+ * @version 1.0.0 2022-04-06
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+@Component
+public class TrendingTracker {
+
+    /**
+     * Filas de cada sketch
+     */
+    private static final int SKETCH_DEPTH = 4;
+
+    /**
+     * Contadores por fila de cada sketch
+     */
+    private static final int SKETCH_WIDTH = 2048;
+
+    /**
+     * Cantidad máxima de candidatos por cubeta, también es el máximo de resultados de una consulta
+     */
+    public static final int MAX_CANDIDATES = 100;
+
+    /**
+     * Ventanas disponibles
+     */
+    private final Map<String, Window> windows = Map.of(
+            "hour", new Window(Duration.ofMinutes(5), 12),
+            "day", new Window(Duration.ofHours(1), 24),
+            "week", new Window(Duration.ofDays(1), 7));
+
+    /**
+     * Cuenta una descarga de un item
+     *
+     * @param itemId Identificador del item
+     * @param timestamp Momento de la descarga en milisegundos
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public void record(Integer itemId, long timestamp) {
+        for (var window : windows.values()) {
+            window.record(itemId, timestamp);
+        }
+    }
+
+    /**
+     * Devuelve los items más descargados de una ventana
+     *
+     * @param window Nombre de la ventana (hour, day o week)
+     * @param limit Cantidad máxima de resultados
+     * @param now Momento de la consulta en milisegundos
+     * @return Listado de items con su cantidad estimada de descargas, de mayor a menor
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public List<Trend> top(String window, int limit, long now) {
+        var selected = windows.get(window == null ? "" : window.toLowerCase(Locale.ROOT));
+        if (selected == null) {
+            throw new IllegalArgumentException("La ventana debe ser hour, day o week");
+        }
+        return selected.top(Math.min(limit, MAX_CANDIDATES), now);
+    }
+
+    /**
+     * Ventana deslizante formada por un anillo de cubetas
+     */
+    private static final class Window {
+
+        private final long bucketMillis;
+        private final Bucket[] buckets;
+
+        private Window(Duration bucket, int count) {
+            this.bucketMillis = bucket.toMillis();
+            this.buckets = new Bucket[count];
+            for (var i = 0; i < count; i++) {
+                buckets[i] = new Bucket();
+            }
+        }
+
+        private void record(Integer itemId, long timestamp) {
+            var slot = timestamp / bucketMillis;
+            var bucket = buckets[(int) (slot % buckets.length)];
+            synchronized (bucket) {
+                if (bucket.slot != slot) {
+                    if (bucket.slot > slot) {
+                        // Descarga más antigua que la ventana vigente de esta cubeta
+                        return;
+                    }
+                    bucket.reset(slot);
+                }
+                bucket.add(itemId);
+            }
+        }
+
+        private List<Trend> top(int limit, long now) {
+            var current = now / bucketMillis;
+            var live = new ArrayList<Bucket>(buckets.length);
+            var candidates = new HashSet<Integer>();
+            for (var bucket : buckets) {
+                synchronized (bucket) {
+                    if (bucket.slot > current - buckets.length && bucket.slot <= current) {
+                        live.add(bucket);
+                        candidates.addAll(bucket.candidates.keySet());
+                    }
+                }
+            }
+            var trends = new ArrayList<Trend>(candidates.size());
+            for (var itemId : candidates) {
+                var downloads = 0L;
+                for (var bucket : live) {
+                    synchronized (bucket) {
+                        downloads += bucket.sketch.estimate(itemId);
+                    }
+                }
+                trends.add(new Trend(itemId, null, downloads));
+            }
+            trends.sort(Comparator.comparingLong(Trend::getDownloads).reversed()
+                    .thenComparing(Trend::getItemId));
+            return trends.size() > limit ? new ArrayList<>(trends.subList(0, limit)) : trends;
+        }
+    }
+
+    /**
+     * Cubeta de tiempo: sketch de frecuencias y candidatos más frecuentes con su estimación
+     */
+    private static final class Bucket {
+
+        private final CountMinSketch sketch = new CountMinSketch(SKETCH_DEPTH, SKETCH_WIDTH);
+        private final HashMap<Integer, Long> candidates = new HashMap<>();
+        private long slot = Long.MIN_VALUE;
+        private long minimum;
+
+        private void reset(long slot) {
+            this.slot = slot;
+            sketch.clear();
+            candidates.clear();
+            minimum = 0;
+        }
+
+        private void add(Integer itemId) {
+            var estimate = sketch.add(itemId);
+            var previous = candidates.get(itemId);
+            if (previous == null && candidates.size() >= MAX_CANDIDATES) {
+                if (estimate <= minimum) {
+                    return;
+                }
+                // Reemplaza al candidato de menor frecuencia
+                candidates.entrySet().stream()
+                        .min(Map.Entry.comparingByValue())
+                        .map(Map.Entry::getKey)
+                        .ifPresent(candidates::remove);
+                candidates.put(itemId, estimate);
+                minimum = minimum();
+                return;
+            }
+            candidates.put(itemId, estimate);
+            if (candidates.size() == MAX_CANDIDATES && (previous == null || previous == minimum)) {
+                minimum = minimum();
+            }
+        }
+
+        private long minimum() {
+            return candidates.values().stream().mapToLong(Long::longValue).min().orElse(0);
+        }
+    }
+
+    /**
+     * Item en tendencia
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Getter
+    @AllArgsConstructor
+    public static final class Trend {
+
+        /**
+         * Identificador del item
+         */
+        private final Integer itemId;
+
+        /**
+         * Nombre del item, lo completa el servicio
+         */
+        private final String name;
+
+        /**
+         * Cantidad estimada de descargas en la ventana
+         */
+        private final long downloads;
+    }
+}
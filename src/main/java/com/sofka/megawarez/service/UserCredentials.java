@@ -0,0 +1,173 @@
+package com.sofka.megawarez.service;
+
+import com.sofka.megawarez.repository.UserRepository;
+import com.sofka.megawarez.utility.BoundedCache;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Verificación de credenciales con caché: guarda la contraseña guardada de cada usuario consultado y
+ * recuerda también los nombres que no existen, así que una ráfaga de intentos de inicio de sesión,
+ * con nombres válidos o inventados, no se convierte en una consulta por intento.
+ *
+ * Los nombres inexistentes van en una caché aparte para que una ráfaga de nombres inventados no
+ * desplace a los usuarios reales. Ambas se vencen por tiempo, un cambio de contraseña hecho en
+ * otra instancia se ve como mucho después de megawarez.credentials.ttl.
+ *
+ * La comparación de la contraseña se hace en el ejecutor de PasswordHashing; si la contraseña
+ * guardada usa un algoritmo anterior se reemplaza por la recalculada. Con los nombres que no
+ * existen también se calcula la contraseña, contra un valor fijo, para que el tiempo de respuesta
+ * no revele qué usuarios existen
+ *
+ * @version 1.0.0 2022-04-06
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+@Slf4j
+@Component
+public class UserCredentials {
+
+    /**
+     * Longitud máxima de un nombre de usuario, la de la columna usr_username
+     */
+    private static final int MAX_USERNAME_LENGTH = 80;
+
+    /**
+     * Repositorio de usuarios
+     */
+    @Autowired
+    private UserRepository userRepository;
+
+    /**
+     * Ejecutor acotado de cálculo de contraseñas
+     */
+    @Autowired
+    private PasswordHashing passwordHashing;
+
+    /**
+     * Plantilla de transacciones, usada al actualizar contraseñas recalculadas
+     */
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * Credenciales de usuarios existentes por nombre
+     */
+    private final BoundedCache<String, Credential> credentials;
+
+    /**
+     * Nombres de usuario que no existen
+     */
+    private final BoundedCache<String, Boolean> unknownUsernames;
+
+    /**
+     * Constructor de la clase
+     *
+     * @param maxSize Cantidad máxima de usuarios en caché
+     * @param ttl Tiempo de vida de las credenciales en caché
+     * @param unknownMaxSize Cantidad máxima de nombres inexistentes en caché
+     * @param unknownTtl Tiempo de vida de los nombres inexistentes en caché
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public UserCredentials(
+            @Value("${megawarez.credentials.max-size:10000}") int maxSize,
+            @Value("${megawarez.credentials.ttl:PT5M}") Duration ttl,
+            @Value("${megawarez.credentials.unknown-max-size:10000}") int unknownMaxSize,
+            @Value("${megawarez.credentials.unknown-ttl:PT1M}") Duration unknownTtl
+    ) {
+        credentials = new BoundedCache<>("credentials", maxSize, ttl);
+        unknownUsernames = new BoundedCache<>("unknownUsernames", unknownMaxSize, unknownTtl);
+    }
+
+    /**
+     * Verifica las credenciales de un usuario
+     *
+     * @param username Nombre del usuario
+     * @param password Contraseña del usuario
+     * @return Identificador del usuario, null si el usuario no existe o la contraseña no coincide
+     * @throws IllegalStateException si el ejecutor de contraseñas está saturado
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public Integer verify(String username, String password) {
+        if (username == null || password == null || username.isEmpty() || username.length() > MAX_USERNAME_LENGTH) {
+            return null;
+        }
+        if (unknownUsernames.getIfPresent(username) != null) {
+            passwordHashing.verifyUnknown(password);
+            return null;
+        }
+        var credential = credentials.getIfPresent(username);
+        if (credential == null) {
+            var user = userRepository.findCredentialByUsername(username);
+            if (user.isEmpty()) {
+                unknownUsernames.put(username, Boolean.TRUE);
+                passwordHashing.verifyUnknown(password);
+                return null;
+            }
+            credential = new Credential(user.get().getId(), user.get().getPassword());
+            credentials.put(username, credential);
+        }
+        var current = passwordHashing.verify(password, credential.password);
+        if (current == null) {
+            return null;
+        }
+        if (!current.equals(credential.password)) {
+            upgrade(username, credential.id, current);
+        }
+        return credential.id;
+    }
+
+    /**
+     * Devuelve las estadísticas de las cachés de credenciales
+     *
+     * @return Listado de estadísticas
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public List<BoundedCache.Stats> getStats() {
+        return Arrays.asList(credentials.getStats(), unknownUsernames.getStats());
+    }
+
+    /**
+     * Guarda una contraseña recalculada con el algoritmo vigente. Si falla el inicio de sesión
+     * continúa y se vuelve a intentar en el siguiente
+     *
+     * @param username Nombre del usuario
+     * @param id Identificador del usuario
+     * @param password Contraseña recalculada
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private void upgrade(String username, Integer id, String password) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> userRepository.updatePassword(id, password));
+            credentials.put(username, new Credential(id, password));
+        } catch (DataAccessException exception) {
+            log.warn("No se pudo actualizar la contraseña del usuario {}: {}", id, exception.getMessage());
+        }
+    }
+
+    /**
+     * Credenciales en caché
+     */
+    @AllArgsConstructor
+    private static final class Credential {
+        private final Integer id;
+        private final String password;
+    }
+}
@@ -3,9 +3,26 @@ package com.sofka.megawarez.service.interfaces;
 import com.sofka.megawarez.domain.Category;
 import com.sofka.megawarez.domain.Subcategory;
 import com.sofka.megawarez.domain.Item;
-import com.sofka.megawarez.domain.Download;
+import com.sofka.megawarez.domain.projection.CategoryView;
+import com.sofka.megawarez.domain.projection.DownloadRecord;
+import com.sofka.megawarez.domain.projection.DownloadSummary;
+import com.sofka.megawarez.domain.projection.ItemView;
+import com.sofka.megawarez.domain.projection.RollupPoint;
+import com.sofka.megawarez.domain.projection.SubcategoryView;
+import com.sofka.megawarez.service.CatalogueVersion;
+import com.sofka.megawarez.service.DownloadBulkIngest;
+import com.sofka.megawarez.service.ItemSearchIndex;
+import com.sofka.megawarez.service.TrendingTracker;
+import com.sofka.megawarez.utility.BoundedCache;
+import com.sofka.megawarez.utility.CompressedPayload;
+import com.sofka.megawarez.utility.KeysetPage;
+import com.sofka.megawarez.utility.PrefixIndex;
 import org.springframework.data.domain.Sort;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Instant;
 import java.util.List;
 
 /**
@@ -18,42 +35,150 @@ import java.util.List;
 public interface ICatalogue {
 
     /**
-     * Devuelve una lista de Item con todos los items del sistema
+     * Devuelve una página de items del sistema ordenados por nombre
      *
-     * @return
+     * @param cursor cursor de la página anterior, null para la primera página
+     * @param size cantidad de items por página
+     * @return Página de items
      *
      * @author Lorena Castro <Lcastro0398@gmail.com>
      * @since 1.0.0
      */
-    public List<Item> getList();
+    public KeysetPage<ItemView> getList(String cursor, Integer size);
 
     /**
-     * Devuelve una lista de Item con todos los items del sistema ordenados por el campo indicado
+     * Devuelve una página del index ya serializada y comprimida
+     *
+     * @param cursor cursor de la página anterior, null para la primera página
+     * @param size cantidad de items por página
+     * @return Cuerpo de la respuesta listo para escribir
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public CompressedPayload getIndexPayload(String cursor, Integer size);
+
+    /**
+     * Devuelve una página de items del sistema ordenados por el campo indicado
      * (name o createdAt) ya sea ascendente o descentente
      *
      * @param field campo por el cual ordenar
      * @param order método para ordenar ACS o DESC
-     * @return Lista de items
+     * @param cursor cursor de la página anterior, null para la primera página
+     * @param size cantidad de items por página
+     * @return Página de items
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public KeysetPage<ItemView> getList(String field, Sort.Direction order, String cursor, Integer size);
+
+    /**
+     * Busca las categorías cuyo nombre empieza por el dato indicado
+     *
+     * @param name Dato a buscar
+     * @return Listado de categorías encontradas
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public List<CategoryView> findCategories(String name);
+
+    /**
+     * Busca las subcategorías cuyo nombre empieza por el dato indicado
+     *
+     * @param name Dato a buscar
+     * @return Listado de subcategorías encontradas
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public List<SubcategoryView> findSubcategories(String name);
+
+    /**
+     * Busca los items cuyo nombre empieza por el dato indicado
+     *
+     * @param name Dato a buscar
+     * @return Listado de items encontrados
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public List<ItemView> findItems(String name);
+
+    /**
+     * Autocompleta nombres de categorías, subcategorías o items a partir de un prefijo
+     *
+     * @param type Tipo de nombre a buscar (category, subcategory o item)
+     * @param prefix Prefijo escrito por el usuario
+     * @param limit Cantidad máxima de resultados
+     * @return Listado de coincidencias
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public List<PrefixIndex.Match> autocomplete(String type, String prefix, Integer limit);
+
+    /**
+     * Búsqueda de texto completo sobre los items, ordenada por relevancia
+     *
+     * @param query Consulta de una o varias palabras
+     * @param limit Cantidad máxima de resultados
+     * @return Listado de resultados
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public List<ItemSearchIndex.Hit> search(String query, Integer limit);
+
+    /**
+     * Devuelve la versión vigente del catálogo
+     *
+     * @return Estampa de la versión
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public CatalogueVersion.Stamp getVersion();
+
+    /**
+     * Devuelve las estadísticas de las cachés del catálogo
+     *
+     * @return Listado de estadísticas
      *
      * @author Lorena Castro <Lcastro0398@gmail.com>
      * @since 1.0.0
      */
-    public List<Item> getList(String field, Sort.Direction order);
+    public List<BoundedCache.Stats> getCacheStats();
 
     /**
-     * Devuelve una lista de Item con los items de una subcategoría ordenados por el campo indicado
+     * Escribe todos los items del sistema como un arreglo JSON a medida que se leen de la base de datos
+     *
+     * @param outputStream Flujo de salida donde se escribe el arreglo
+     * @throws IOException si no es posible escribir en el flujo
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public void exportCatalogue(OutputStream outputStream) throws IOException;
+
+    /**
+     * Devuelve una página de items de una subcategoría ordenados por el campo indicado
      * (name o createdAt) ya sea ascendente o descentente
      *
      * @param category categoría a la que pertenece la subcategoría
      * @param subcategory subcategoría a ordenar
      * @param field campo por el cual ordenar
      * @param order método para ordenar ACS o DESC
-     * @return Lista de items
+     * @param cursor cursor de la página anterior, null para la primera página
+     * @param size cantidad de items por página
+     * @return Página de items, null si la subcategoría no existe
      *
      * @author Lorena Castro <Lcastro0398@gmail.com>
      * @since 1.0.0
      */
-    public List<Item> getList(String category, String subcategory, String field, Sort.Direction order);
+    public KeysetPage<ItemView> getList(String category, String subcategory, String field, Sort.Direction order,
+                                        String cursor, Integer size);
 
     /**
      * Devuelve una lista de Item
@@ -66,26 +191,121 @@ public interface ICatalogue {
     public List<Item> getList(Integer id);
 
     /**
-     * Devuelve una lista de las descargar realizadas de un item
+     * Devuelve una página de las descargas realizadas de un item, de la más reciente a la más antigua
+     *
+     * @param itemId Identificador del item
+     * @param since Fecha mínima de las descargas, puede ser null
+     * @param cursor Cursor de la página anterior, null para la primera página
+     * @param size Cantidad de descargas por página
+     * @return Página de descargas
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public KeysetPage<DownloadSummary> getDownloadsByItem(Integer itemId, Instant since, String cursor, Integer size);
+
+    /**
+     * Devuelve una página de las descargas realizadas por un usuario, de la más reciente a la más antigua
+     *
+     * @param userId Identificador del usuario
+     * @param since Fecha mínima de las descargas, puede ser null
+     * @param cursor Cursor de la página anterior, null para la primera página
+     * @param size Cantidad de descargas por página
+     * @return Página de descargas
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public KeysetPage<DownloadSummary> getDownloadsByUser(Integer userId, Instant since, String cursor, Integer size);
+
+    /**
+     * Devuelve la cantidad de descargas realizadas por un usuario
+     *
+     * @param userId Identificador del usuario
+     * @param since Fecha mínima de las descargas, puede ser null
+     * @return Cantidad de descargas
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public long getDownloadCountByUser(Integer userId, Instant since);
+
+    /**
+     * Devuelve la cantidad de descargas por día de un item o de un usuario
+     *
+     * @param scope Alcance (item o user)
+     * @param id Identificador del item o del usuario
+     * @param from Inicio del rango, puede ser null
+     * @param to Fin del rango, puede ser null
+     * @return Puntos de la serie con descargas
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public List<RollupPoint> getDailyDownloads(String scope, Integer id, Instant from, Instant to);
+
+    /**
+     * Devuelve la cantidad de descargas de un item
+     *
+     * @param itemId Identificador del item
+     * @return Cantidad de descargas
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public long getDownloadCount(Integer itemId);
+
+    /**
+     * Devuelve los items más descargados en una ventana de tiempo
+     *
+     * @param window Ventana de tiempo (hour, day o week)
+     * @param limit Cantidad máxima de resultados
+     * @return Listado de items en tendencia
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public List<TrendingTracker.Trend> getTrending(String window, Integer limit);
+
+    /**
+     * Devuelve la serie de tiempo de descargas de un item o de una subcategoría
      *
-     * @param item
-     * @return Lista de descargas
+     * @param scope Alcance de la serie (item o subcategory)
+     * @param id Identificador del item o de la subcategoría
+     * @param granularity Granularidad de las cubetas (minute, hour o day)
+     * @param from Inicio del rango, puede ser null
+     * @param to Fin del rango, puede ser null
+     * @return Puntos de la serie con descargas
      *
      * @author Lorena Castro <Lcastro0398@gmail.com>
      * @since 1.0.0
      */
-    public List<Download> getList(Item item);
+    public List<RollupPoint> getDownloadSeries(String scope, Integer id, String granularity, Instant from, Instant to);
 
     /**
      * Crea una descarga en el sistema
      *
-     * @param download Objeto de la categoria a crear
-     * @return Objeto de la categoria creado
+     * @param userId Identificador del usuario que descarga
+     * @param itemId Identificador del item descargado
+     * @param idempotencyKey Llave de idempotencia de la petición, puede ser null
+     * @return Descarga creada, encolada o repetida
      *
      * @author Lorena Castro <Lcastro0398@gmail.com>
      * @since 1.0.0
      */
-    public Download createDownload(Download download);
+    public DownloadRecord createDownload(Integer userId, Integer itemId, String idempotencyKey);
+
+    /**
+     * Crea las descargas recibidas en formato NDJSON, una por línea
+     *
+     * @param body Cuerpo NDJSON
+     * @return Resumen del ingreso con los errores por línea
+     * @throws IOException si falla la lectura del cuerpo
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public DownloadBulkIngest.Report createDownloads(InputStream body) throws IOException;
 
     /**
      * Crea una categoría en el sistema
@@ -185,4 +405,38 @@ public interface ICatalogue {
      */
     Item deleteItem(Integer id);
 
+    /**
+     * Inicia la sesión de un usuario
+     *
+     * @param username Nombre del usuario
+     * @param password Contraseña del usuario
+     * @return Token de la sesión, null si las credenciales no coinciden
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    String login(String username, String password);
+
+    /**
+     * Valida el token de una sesión
+     *
+     * @param token Token de la sesión
+     * @return Identificador del usuario de la sesión, null si el token no es válido o venció
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    Integer validateToken(String token);
+
+    /**
+     * Cierra la sesión de un token
+     *
+     * @param token Token de la sesión
+     * @return false si la sesión no existía
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    boolean logout(String token);
+
 }
@@ -0,0 +1,120 @@
+package com.sofka.megawarez.utility;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Filtro de Bloom sobre cadenas: indica si una llave posiblemente fue agregada o con seguridad no
+ * lo fue, usando una cantidad fija de bits sin importar el tamaño de las llaves. Los falsos
+ * positivos ocurren con la probabilidad indicada mientras no se superen las inserciones esperadas;
+ * no hay falsos negativos. Es seguro para hilos
+ *
+ * @version 1.0.0 2022-04-06
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+public class BloomFilter {
+
+    /**
+     * Bits del filtro, agrupados en palabras de 64
+     */
+    private final AtomicLongArray words;
+
+    /**
+     * Cantidad de bits del filtro
+     */
+    private final long size;
+
+    /**
+     * Cantidad de funciones de dispersión
+     */
+    private final int hashes;
+
+    /**
+     * Constructor de la clase, dimensiona el filtro para la cantidad de llaves y la probabilidad
+     * de falso positivo indicadas
+     *
+     * @param expectedInsertions Cantidad esperada de llaves
+     * @param falsePositiveRate Probabilidad de falso positivo, entre 0 y 1
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions < 1) {
+            throw new IllegalArgumentException("La cantidad esperada de llaves debe ser positiva");
+        }
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("La probabilidad de falso positivo debe estar entre 0 y 1");
+        }
+        var bits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.words = new AtomicLongArray((int) ((bits + 63) / 64));
+        this.size = words.length() * 64L;
+        this.hashes = Math.max(1, (int) Math.round((double) size / expectedInsertions * Math.log(2)));
+    }
+
+    /**
+     * Agrega una llave al filtro
+     *
+     * @param key Llave
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public void put(String key) {
+        var hash = hash(key);
+        var h1 = mix(hash);
+        var h2 = mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+        for (var i = 0; i < hashes; i++) {
+            var bit = Long.remainderUnsigned(h1 + i * h2, size);
+            var index = (int) (bit >>> 6);
+            var mask = 1L << bit;
+            var word = words.get(index);
+            while ((word & mask) == 0 && !words.compareAndSet(index, word, word | mask)) {
+                word = words.get(index);
+            }
+        }
+    }
+
+    /**
+     * Indica si la llave posiblemente fue agregada
+     *
+     * @param key Llave
+     * @return false si la llave con seguridad no fue agregada
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public boolean mightContain(String key) {
+        var hash = hash(key);
+        var h1 = mix(hash);
+        var h2 = mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+        for (var i = 0; i < hashes; i++) {
+            var bit = Long.remainderUnsigned(h1 + i * h2, size);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Dispersión FNV-1a de 64 bits de los caracteres de la llave
+     */
+    private static long hash(String key) {
+        var hash = 0xCBF29CE484222325L;
+        for (var i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Mezcla final de SplitMix64, reparte los bits de la dispersión
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+}
@@ -0,0 +1,230 @@
+package com.sofka.megawarez.utility;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Caché de lectura acotada por cantidad de entradas (se descarta la menos usada recientemente)
+ * y por tiempo de vida, con estadísticas de aciertos, fallos y descartes
+ *
+ * @version 1.0.0 2022-04-05
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+public class BoundedCache<K, V> {
+
+    /**
+     * Nombre de la caché, usado en las estadísticas
+     */
+    private final String name;
+
+    /**
+     * Cantidad máxima de entradas
+     */
+    private final int maxSize;
+
+    /**
+     * Tiempo de vida de cada entrada en nanosegundos
+     */
+    private final long ttlNanos;
+
+    /**
+     * Entradas en orden de acceso, protegidas por el monitor de la caché
+     */
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    /**
+     * Generación de la caché, cambia con cada invalidación para descartar cargas que iniciaron antes
+     */
+    private long generation;
+
+    /**
+     * Estadísticas
+     */
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * Constructor de la clase
+     *
+     * @param name Nombre de la caché
+     * @param maxSize Cantidad máxima de entradas
+     * @param ttl Tiempo de vida de cada entrada
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public BoundedCache(String name, int maxSize, Duration ttl) {
+        this.name = name;
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > BoundedCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Devuelve el valor asociado a la llave, si no está en caché (o expiró) lo calcula con el cargador.
+     * El cargador se ejecuta fuera del bloqueo y su resultado solo se guarda si la caché no fue invalidada
+     * mientras tanto
+     *
+     * @param key Llave
+     * @param loader Función que calcula el valor a partir de la llave
+     * @return Valor asociado a la llave
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public V get(K key, Function<K, V> loader) {
+        long startGeneration;
+        synchronized (this) {
+            var entry = entries.get(key);
+            if (entry != null) {
+                if (System.nanoTime() - entry.createdAt < ttlNanos) {
+                    hits.increment();
+                    return entry.value;
+                }
+                entries.remove(key);
+                expirations.increment();
+            }
+            startGeneration = generation;
+        }
+        misses.increment();
+        var value = loader.apply(key);
+        synchronized (this) {
+            if (generation == startGeneration) {
+                entries.put(key, new Entry<>(value, System.nanoTime()));
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Devuelve el valor asociado a la llave sin cargarlo
+     *
+     * @param key Llave
+     * @return Valor asociado a la llave, null si no está en caché o expiró
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public synchronized V getIfPresent(K key) {
+        var entry = entries.get(key);
+        if (entry != null) {
+            if (System.nanoTime() - entry.createdAt < ttlNanos) {
+                hits.increment();
+                return entry.value;
+            }
+            entries.remove(key);
+            expirations.increment();
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Guarda un valor calculado fuera de la caché
+     *
+     * @param key Llave
+     * @param value Valor
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public synchronized void put(K key, V value) {
+        entries.put(key, new Entry<>(value, System.nanoTime()));
+    }
+
+    /**
+     * Borra las entradas cuya llave cumple la condición
+     *
+     * @param condition Condición sobre la llave
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public synchronized void invalidateIf(Predicate<K> condition) {
+        generation++;
+        var iterator = entries.keySet().iterator();
+        while (iterator.hasNext()) {
+            if (condition.test(iterator.next())) {
+                iterator.remove();
+                invalidations.increment();
+            }
+        }
+    }
+
+    /**
+     * Borra todas las entradas
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public synchronized void invalidateAll() {
+        generation++;
+        invalidations.add(entries.size());
+        entries.clear();
+    }
+
+    /**
+     * Devuelve las estadísticas de la caché
+     *
+     * @return Estadísticas
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public Stats getStats() {
+        int size;
+        synchronized (this) {
+            size = entries.size();
+        }
+        return new Stats(name, size, maxSize, hits.sum(), misses.sum(),
+                evictions.sum(), expirations.sum(), invalidations.sum());
+    }
+
+    /**
+     * Entrada de la caché
+     */
+    @AllArgsConstructor
+    private static final class Entry<V> {
+        private final V value;
+        private final long createdAt;
+    }
+
+    /**
+     * Estadísticas de una caché
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Getter
+    @AllArgsConstructor
+    public static final class Stats {
+        private final String name;
+        private final int size;
+        private final int maxSize;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long expirations;
+        private final long invalidations;
+    }
+}
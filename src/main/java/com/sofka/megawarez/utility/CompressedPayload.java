@@ -0,0 +1,102 @@
+package com.sofka.megawarez.utility;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cuerpo de respuesta ya serializado, junto con su variante comprimida con gzip.
+ * Se construye una sola vez y se escribe tal cual en cada respuesta
+ *
+ * @version 1.0.0 2022-04-06
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+@Getter
+@AllArgsConstructor
+public final class CompressedPayload {
+
+    /**
+     * Tamaño por debajo del cual no vale la pena comprimir
+     */
+    private static final int MIN_COMPRESSIBLE_SIZE = 256;
+
+    /**
+     * Bytes sin comprimir
+     */
+    private final byte[] identity;
+
+    /**
+     * Bytes comprimidos con gzip, null si comprimir no reduce el tamaño
+     */
+    private final byte[] gzip;
+
+    /**
+     * Construye el cuerpo y su variante gzip con la máxima compresión, ya que se calcula
+     * una sola vez y se sirve muchas
+     *
+     * @param identity Bytes sin comprimir
+     * @return Cuerpo con sus variantes
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public static CompressedPayload of(byte[] identity) {
+        if (identity.length < MIN_COMPRESSIBLE_SIZE) {
+            return new CompressedPayload(identity, null);
+        }
+        var buffer = new ByteArrayOutputStream(identity.length / 4);
+        try (var gzip = new GZIPOutputStream(buffer) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gzip.write(identity);
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+        var compressed = buffer.toByteArray();
+        return new CompressedPayload(identity, compressed.length < identity.length ? compressed : null);
+    }
+
+    /**
+     * Indica si la cabecera Accept-Encoding del cliente admite gzip (sin q=0)
+     *
+     * @param acceptEncoding Valor de la cabecera, puede ser null
+     * @return true si el cliente acepta gzip
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (var coding : acceptEncoding.toLowerCase(Locale.ROOT).split(",")) {
+            var parts = coding.split(";");
+            var name = parts[0].trim();
+            if (!name.equals("gzip") && !name.equals("*")) {
+                continue;
+            }
+            var accepted = true;
+            for (var i = 1; i < parts.length; i++) {
+                var parameter = parts[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        accepted = Double.parseDouble(parameter.substring(2)) > 0;
+                    } catch (NumberFormatException exception) {
+                        accepted = false;
+                    }
+                }
+            }
+            return accepted;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,117 @@
+package com.sofka.megawarez.utility;
+
+import java.util.Arrays;
+
+/**
+ * Sketch Count-Min: estima la frecuencia de cada llave en memoria fija (depth x width contadores),
+ * sin importar cuántas llaves distintas se cuenten. La estimación nunca es menor que el valor real
+ * y lo excede a lo sumo en total * e / width con probabilidad 1 - e^-depth.
+ * No es seguro para hilos, quien lo usa debe sincronizar el acceso
+ *
+ * @version 1.0.0 2022-04-06
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+public class CountMinSketch {
+
+    /**
+     * Semillas de las funciones de dispersión, una por fila
+     */
+    private static final long[] SEEDS = {
+            0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L,
+            0xFF51AFD7ED558CCDL, 0xC4CEB9FE1A85EC53L, 0x85EBCA77C2B2AE63L, 0x27D4EB2F165667C5L
+    };
+
+    /**
+     * Contadores, fila por fila
+     */
+    private final long[] counts;
+
+    /**
+     * Cantidad de filas
+     */
+    private final int depth;
+
+    /**
+     * Cantidad de contadores por fila, potencia de dos
+     */
+    private final int width;
+
+    /**
+     * Constructor de la clase
+     *
+     * @param depth Cantidad de filas (máximo 8)
+     * @param width Cantidad de contadores por fila, se redondea a la siguiente potencia de dos
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public CountMinSketch(int depth, int width) {
+        if (depth < 1 || depth > SEEDS.length) {
+            throw new IllegalArgumentException("La profundidad debe estar entre 1 y " + SEEDS.length);
+        }
+        this.depth = depth;
+        this.width = Integer.highestOneBit(Math.max(width - 1, 1)) << 1;
+        this.counts = new long[depth * this.width];
+    }
+
+    /**
+     * Suma una ocurrencia a la llave
+     *
+     * @param key Llave
+     * @return Frecuencia estimada de la llave después de sumar
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public long add(int key) {
+        var estimate = Long.MAX_VALUE;
+        for (var row = 0; row < depth; row++) {
+            var index = row * width + slot(key, row);
+            estimate = Math.min(estimate, ++counts[index]);
+        }
+        return estimate;
+    }
+
+    /**
+     * Devuelve la frecuencia estimada de la llave
+     *
+     * @param key Llave
+     * @return Frecuencia estimada
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public long estimate(int key) {
+        var estimate = Long.MAX_VALUE;
+        for (var row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counts[row * width + slot(key, row)]);
+        }
+        return estimate;
+    }
+
+    /**
+     * Pone todos los contadores en cero
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public void clear() {
+        Arrays.fill(counts, 0);
+    }
+
+    /**
+     * Posición de la llave en una fila
+     *
+     * @param key Llave
+     * @param row Fila
+     * @return Posición dentro de la fila
+     */
+    private int slot(int key, int row) {
+        var hash = (key + SEEDS[row]) * 0xBF58476D1CE4E5B9L;
+        hash ^= hash >>> 31;
+        hash *= 0x94D049BB133111EBL;
+        hash ^= hash >>> 29;
+        return (int) hash & (width - 1);
+    }
+}
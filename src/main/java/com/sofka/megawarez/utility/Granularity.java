@@ -0,0 +1,94 @@
+package com.sofka.megawarez.utility;
+
+import lombok.Getter;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Locale;
+
+/**
+ * Granularidad de las cubetas de tiempo de los rollups de descargas
+ *
+ * @version 1.0.0 2022-04-06
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+public enum Granularity {
+
+    MINUTE("m", ChronoUnit.MINUTES, Duration.ofHours(1)),
+    HOUR("h", ChronoUnit.HOURS, Duration.ofDays(2)),
+    DAY("d", ChronoUnit.DAYS, Duration.ofDays(30));
+
+    /**
+     * Cantidad máxima de cubetas que puede abarcar una consulta
+     */
+    public static final long MAX_BUCKETS = 10_000;
+
+    /**
+     * Código guardado en la columna dro_granularity
+     */
+    @Getter
+    private final String code;
+
+    /**
+     * Unidad de tiempo de la cubeta
+     */
+    private final ChronoUnit unit;
+
+    /**
+     * Rango consultado cuando el cliente no indica el inicio
+     */
+    @Getter
+    private final Duration defaultRange;
+
+    Granularity(String code, ChronoUnit unit, Duration defaultRange) {
+        this.code = code;
+        this.unit = unit;
+        this.defaultRange = defaultRange;
+    }
+
+    /**
+     * Inicio de la cubeta que contiene el momento indicado (en UTC)
+     *
+     * @param instant Momento
+     * @return Inicio de la cubeta
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public Instant truncate(Instant instant) {
+        return instant.truncatedTo(unit);
+    }
+
+    /**
+     * Cantidad de cubetas entre dos momentos
+     *
+     * @param from Inicio
+     * @param to Fin
+     * @return Cantidad de cubetas
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public long between(Instant from, Instant to) {
+        return unit.between(truncate(from), truncate(to)) + 1;
+    }
+
+    /**
+     * Convierte el nombre recibido en la API (minute, hour o day)
+     *
+     * @param name Nombre de la granularidad
+     * @return Granularidad
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public static Granularity parse(String name) {
+        try {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException | NullPointerException exception) {
+            throw new IllegalArgumentException("La granularidad debe ser minute, hour o day");
+        }
+    }
+}
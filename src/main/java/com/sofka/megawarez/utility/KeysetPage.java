@@ -0,0 +1,28 @@
+package com.sofka.megawarez.utility;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Página de resultados obtenida mediante paginación por llave (keyset / seek)
+ *
+ * @version 1.0.0 2022-04-05
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+@Getter
+@AllArgsConstructor
+public class KeysetPage<T> {
+
+    /**
+     * Elementos de la página
+     */
+    private final List<T> items;
+
+    /**
+     * Cursor para solicitar la siguiente página, null si no hay más resultados
+     */
+    private final String next;
+}
@@ -0,0 +1,65 @@
+package com.sofka.megawarez.utility;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Cursor opaco para la paginación por llave, contiene el valor del campo de ordenamiento
+ * y el identificador de la última tupla entregada
+ *
+ * @version 1.0.0 2022-04-05
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+@Getter
+@AllArgsConstructor
+public class PageCursor {
+
+    /**
+     * Identificador de la última tupla entregada
+     */
+    private final Integer id;
+
+    /**
+     * Valor del campo de ordenamiento de la última tupla entregada
+     */
+    private final String value;
+
+    /**
+     * Codifica el cursor en una cadena segura para URL
+     *
+     * @param id Identificador de la última tupla
+     * @param value Valor del campo de ordenamiento de la última tupla
+     * @return Cursor codificado
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public static String encode(Integer id, String value) {
+        var raw = id + ":" + value;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodifica un cursor generado por {@link #encode(Integer, String)}
+     *
+     * @param cursor Cursor codificado
+     * @return Objeto del cursor
+     * @throws IllegalArgumentException si el cursor no es válido
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public static PageCursor decode(String cursor) {
+        try {
+            var raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            var separator = raw.indexOf(':');
+            return new PageCursor(Integer.valueOf(raw.substring(0, separator)), raw.substring(separator + 1));
+        } catch (RuntimeException exception) {
+            throw new IllegalArgumentException("El cursor no es válido", exception);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.sofka.megawarez.utility;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Cálculo y verificación de contraseñas. Los valores guardados tienen uno de dos formatos:
+ *
+ * - md5: 32 caracteres hexadecimales, el formato original de usr_password
+ * - pbkdf2-sha256 y pbkdf2-sha512: algoritmo$iteraciones$sal$hash, sal y hash en Base64
+ *
+ * Todos los cálculos son deliberadamente costosos salvo md5; deben ejecutarse fuera de los
+ * hilos que atienden peticiones
+ *
+ * @version 1.0.0 2022-04-06
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+public final class PasswordHash {
+
+    /**
+     * Nombres de los algoritmos soportados
+     */
+    public static final String MD5 = "md5";
+    public static final String PBKDF2_SHA256 = "pbkdf2-sha256";
+    public static final String PBKDF2_SHA512 = "pbkdf2-sha512";
+
+    /**
+     * Bytes de la sal y del hash de PBKDF2
+     */
+    private static final int SALT_LENGTH = 16;
+    private static final int HASH_LENGTH = 32;
+
+    /**
+     * Generador de sales
+     */
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private PasswordHash() {
+    }
+
+    /**
+     * Calcula el valor a guardar de una contraseña
+     *
+     * @param algorithm Algoritmo (md5, pbkdf2-sha256 o pbkdf2-sha512)
+     * @param iterations Iteraciones de PBKDF2, se ignora con md5
+     * @param password Contraseña
+     * @return Valor a guardar
+     * @throws IllegalArgumentException si el algoritmo no es soportado
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public static String hash(String algorithm, int iterations, String password) {
+        if (MD5.equals(algorithm)) {
+            return md5(password);
+        }
+        var salt = new byte[SALT_LENGTH];
+        RANDOM.nextBytes(salt);
+        var encoder = Base64.getEncoder().withoutPadding();
+        return algorithm + "$" + iterations + "$" + encoder.encodeToString(salt) + "$" +
+                encoder.encodeToString(pbkdf2(algorithm, iterations, salt, password, HASH_LENGTH));
+    }
+
+    /**
+     * Verifica una contraseña contra el valor guardado, en tiempo constante respecto al contenido
+     *
+     * @param password Contraseña recibida
+     * @param stored Valor guardado
+     * @return true si coinciden
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public static boolean matches(String password, String stored) {
+        var parts = stored.split("\\$");
+        if (parts.length == 1) {
+            return MessageDigest.isEqual(md5(password).getBytes(StandardCharsets.US_ASCII),
+                    stored.getBytes(StandardCharsets.US_ASCII));
+        }
+        if (parts.length != 4) {
+            return false;
+        }
+        try {
+            var salt = Base64.getDecoder().decode(parts[2]);
+            var expected = Base64.getDecoder().decode(parts[3]);
+            var actual = pbkdf2(parts[0], Integer.parseInt(parts[1]), salt, password, expected.length);
+            return MessageDigest.isEqual(actual, expected);
+        } catch (IllegalArgumentException exception) {
+            return false;
+        }
+    }
+
+    /**
+     * Indica si el valor guardado debe recalcularse con el algoritmo y las iteraciones vigentes
+     *
+     * @param stored Valor guardado
+     * @param algorithm Algoritmo vigente
+     * @param iterations Iteraciones vigentes
+     * @return true si el valor usa otro algoritmo o menos iteraciones
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public static boolean needsRehash(String stored, String algorithm, int iterations) {
+        if (MD5.equals(algorithm)) {
+            return false;
+        }
+        var parts = stored.split("\\$");
+        try {
+            return parts.length != 4 || !parts[0].equals(algorithm) || Integer.parseInt(parts[1]) < iterations;
+        } catch (NumberFormatException exception) {
+            return true;
+        }
+    }
+
+    /**
+     * MD5 en hexadecimal, el formato original de las contraseñas
+     */
+    private static String md5(String password) {
+        try {
+            var digest = MessageDigest.getInstance("MD5").digest(password.getBytes(StandardCharsets.UTF_8));
+            var hex = new StringBuilder(32);
+            for (var b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (GeneralSecurityException exception) {
+            throw new IllegalStateException("MD5 no está disponible", exception);
+        }
+    }
+
+    /**
+     * PBKDF2 con HMAC-SHA256 o HMAC-SHA512
+     */
+    private static byte[] pbkdf2(String algorithm, int iterations, byte[] salt, String password, int length) {
+        String name;
+        if (PBKDF2_SHA256.equals(algorithm)) {
+            name = "PBKDF2WithHmacSHA256";
+        } else if (PBKDF2_SHA512.equals(algorithm)) {
+            name = "PBKDF2WithHmacSHA512";
+        } else {
+            throw new IllegalArgumentException("Algoritmo de contraseñas no soportado: " + algorithm);
+        }
+        var spec = new PBEKeySpec(password.toCharArray(), salt, iterations, length * 8);
+        try {
+            return SecretKeyFactory.getInstance(name).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException exception) {
+            throw new IllegalStateException("No se pudo calcular " + algorithm, exception);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
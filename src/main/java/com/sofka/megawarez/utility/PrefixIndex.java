@@ -0,0 +1,159 @@
+package com.sofka.megawarez.utility;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Índice en memoria de nombres normalizados ordenados, para búsquedas por prefijo sin distinguir
+ * mayúsculas ni tildes. Las lecturas no usan bloqueos y cada alta, cambio o baja cuesta O(log n)
+ *
+ * @version 1.0.0 2022-04-06
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+public class PrefixIndex {
+
+    /**
+     * Entradas ordenadas por nombre normalizado e identificador, el valor es el nombre original
+     */
+    private final ConcurrentSkipListMap<Key, String> entries = new ConcurrentSkipListMap<>();
+
+    /**
+     * Llave vigente de cada identificador, usada para reemplazar o borrar su entrada
+     */
+    private final ConcurrentHashMap<Integer, Key> keys = new ConcurrentHashMap<>();
+
+    /**
+     * Agrega o reemplaza el nombre asociado a un identificador
+     *
+     * @param id Identificador
+     * @param name Nombre
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public synchronized void put(Integer id, String name) {
+        var key = new Key(TextNormalizer.normalize(name), id);
+        var previous = keys.put(id, key);
+        entries.put(key, name);
+        if (previous != null && !previous.equals(key)) {
+            entries.remove(previous);
+        }
+    }
+
+    /**
+     * Borra la entrada de un identificador
+     *
+     * @param id Identificador
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public synchronized void remove(Integer id) {
+        var previous = keys.remove(id);
+        if (previous != null) {
+            entries.remove(previous);
+        }
+    }
+
+    /**
+     * Borra todas las entradas
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public synchronized void clear() {
+        keys.clear();
+        entries.clear();
+    }
+
+    /**
+     * Cantidad de entradas del índice
+     *
+     * @return Cantidad de entradas
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public int size() {
+        return keys.size();
+    }
+
+    /**
+     * Devuelve las primeras entradas (en orden alfabético) cuyo nombre empieza por el prefijo
+     *
+     * @param prefix Prefijo buscado
+     * @param limit Cantidad máxima de resultados
+     * @return Listado de coincidencias
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public List<Match> search(String prefix, int limit) {
+        var normalized = TextNormalizer.normalize(prefix);
+        var matches = new ArrayList<Match>(limit);
+        for (var entry : entries.tailMap(new Key(normalized, Integer.MIN_VALUE)).entrySet()) {
+            if (matches.size() >= limit || !entry.getKey().name.startsWith(normalized)) {
+                break;
+            }
+            matches.add(new Match(entry.getKey().id, entry.getValue()));
+        }
+        return matches;
+    }
+
+    /**
+     * Coincidencia de una búsqueda por prefijo
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    @Getter
+    @AllArgsConstructor
+    public static final class Match {
+
+        /**
+         * Identificador de la tupla
+         */
+        private final Integer id;
+
+        /**
+         * Nombre original de la tupla
+         */
+        private final String name;
+    }
+
+    /**
+     * Llave del índice: nombre normalizado y luego identificador
+     */
+    private static final class Key implements Comparable<Key> {
+
+        private final String name;
+        private final int id;
+
+        private Key(String name, int id) {
+            this.name = name;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            var result = name.compareTo(other.name);
+            return result != 0 ? result : Integer.compare(id, other.id);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key && compareTo((Key) other) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * name.hashCode() + id;
+        }
+    }
+}
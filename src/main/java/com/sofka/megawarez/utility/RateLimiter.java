@@ -0,0 +1,225 @@
+package com.sofka.megawarez.utility;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limitador de peticiones por cliente con cubetas de fichas, calculadas como GCRA: por cada cliente
+ * solo se guarda el momento teórico de la siguiente petición, que avanza un intervalo por cada
+ * petición admitida. Se admiten ráfagas de hasta burst peticiones y luego rate por segundo.
+ *
+ * Los clientes se guardan en una tabla de tamaño fijo con direccionamiento abierto sobre un
+ * AtomicLongArray (llave y momento en posiciones contiguas), así la memoria no crece con la
+ * cantidad de clientes y ninguna operación bloquea ni crea objetos. Un cliente inactivo (su cubeta
+ * ya está llena) no aporta información, así que su posición se reutiliza para otro cliente sin
+ * necesidad de un barrido. Si todas las posiciones cercanas están ocupadas por clientes activos la
+ * petición se cuenta contra una cubeta de desborde compartida con la misma tasa, así una tabla
+ * saturada (por ejemplo por muchas direcciones distintas) limita de más en lugar de dejar de limitar.
+ *
+ * Las llaves son dispersiones de 64 bits de la dirección IP o del usuario; dos clientes con la
+ * misma dispersión compartirían la cubeta. Es seguro para hilos
+ *
+ * @version 1.0.0 2022-04-06
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+public class RateLimiter {
+
+    /**
+     * Posiciones revisadas a partir de la que le corresponde a una llave
+     */
+    private static final int MAX_PROBES = 16;
+
+    /**
+     * Llave de las posiciones nunca usadas
+     */
+    private static final long EMPTY = 0;
+
+    /**
+     * Llave y momento teórico de la siguiente petición de cada posición; la última posición es la
+     * cubeta de desborde
+     */
+    private final AtomicLongArray slots;
+
+    /**
+     * Índice del momento teórico de la cubeta de desborde
+     */
+    private final int overflowIndex;
+
+    /**
+     * Peticiones contadas contra la cubeta de desborde
+     */
+    private final LongAdder overflows = new LongAdder();
+
+    /**
+     * Máscara del índice de posición
+     */
+    private final int mask;
+
+    /**
+     * Intervalo entre peticiones en nanosegundos
+     */
+    private final long intervalNanos;
+
+    /**
+     * Adelanto máximo del momento teórico respecto al actual, define la ráfaga
+     */
+    private final long toleranceNanos;
+
+    /**
+     * Origen de los momentos, hace que las posiciones nuevas (momento 0) estén inactivas
+     */
+    private final long origin = System.nanoTime();
+
+    /**
+     * Constructor de la clase
+     *
+     * @param rate Peticiones por segundo
+     * @param burst Peticiones admitidas seguidas
+     * @param capacity Cantidad de clientes en la tabla, se redondea a la siguiente potencia de dos
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public RateLimiter(double rate, int burst, int capacity) {
+        if (rate <= 0 || burst < 1 || capacity < MAX_PROBES) {
+            throw new IllegalArgumentException("La tasa, la ráfaga y la capacidad del limitador deben ser positivas");
+        }
+        var size = Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new AtomicLongArray(2 * size + 2);
+        this.overflowIndex = 2 * size + 1;
+        this.mask = size - 1;
+        this.intervalNanos = Math.max(1, (long) (1e9 / rate));
+        this.toleranceNanos = intervalNanos * burst;
+    }
+
+    /**
+     * Intenta admitir una petición del cliente
+     *
+     * @param key Llave del cliente (ver key)
+     * @return 0 si se admite, en otro caso los nanosegundos que faltan para que se admita
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public long acquire(long key) {
+        var now = System.nanoTime() - origin;
+        var slot = find(key == EMPTY ? 1 : key, now);
+        int index;
+        if (slot < 0) {
+            overflows.increment();
+            index = overflowIndex;
+        } else {
+            index = 2 * slot + 1;
+        }
+        while (true) {
+            var theoretical = slots.get(index);
+            var next = Math.max(theoretical, now) + intervalNanos;
+            if (next - now > toleranceNanos) {
+                return next - toleranceNanos - now;
+            }
+            if (slots.compareAndSet(index, theoretical, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Devuelve la cantidad de peticiones que no encontraron posición en la tabla y se contaron
+     * contra la cubeta de desborde. Si crece, la capacidad es chica para la cantidad de clientes
+     *
+     * @return Peticiones desbordadas desde la creación del limitador
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public long getOverflows() {
+        return overflows.sum();
+    }
+
+    /**
+     * Llave de un cliente identificado por texto, por ejemplo una dirección IP
+     *
+     * @param value Texto
+     * @return Llave
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public static long key(String value) {
+        // FNV-1a de 64 bits
+        var hash = 0xCBF29CE484222325L;
+        for (var i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Llave de un cliente identificado por número, por ejemplo un usuario
+     *
+     * @param value Número
+     * @return Llave
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public static long key(long value) {
+        return mix(value + 0x9E3779B97F4A7C15L);
+    }
+
+    /**
+     * Busca la posición de la llave o reclama una libre o inactiva para ella
+     *
+     * @param key Llave del cliente
+     * @param now Momento actual
+     * @return Posición, -1 si todas las posiciones cercanas están ocupadas por clientes activos
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private int find(long key, long now) {
+        var home = (int) key & mask;
+        // Dos intentos: otro hilo puede reclamar la misma posición al mismo tiempo
+        for (var attempt = 0; attempt < 2; attempt++) {
+            var free = -1;
+            long freeKey = EMPTY;
+            for (var probe = 0; probe < MAX_PROBES; probe++) {
+                var slot = (home + probe) & mask;
+                var current = slots.get(2 * slot);
+                if (current == key) {
+                    return slot;
+                }
+                // Las posiciones nunca vuelven a estar vacías: la llave no está más adelante
+                if (current == EMPTY) {
+                    if (free < 0) {
+                        free = slot;
+                        freeKey = EMPTY;
+                    }
+                    break;
+                }
+                if (free < 0 && slots.get(2 * slot + 1) <= now) {
+                    free = slot;
+                    freeKey = current;
+                }
+            }
+            if (free < 0) {
+                return -1;
+            }
+            if (slots.compareAndSet(2 * free, freeKey, key)) {
+                return free;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Mezcla final de SplitMix64, reparte los bits de la dispersión
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+}
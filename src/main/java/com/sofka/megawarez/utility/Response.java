@@ -9,6 +9,16 @@ package com.sofka.megawarez.utility;
  */
 public class Response {
 
+    /**
+     * Cantidad de elementos por página cuando el cliente no la indica
+     */
+    public static final int DEFAULT_PAGE_SIZE = 20;
+
+    /**
+     * Cantidad máxima de elementos que puede devolver una página
+     */
+    public static final int MAX_PAGE_SIZE = 100;
+
     /**
      * Indica si existe un error o no en la respuesta del API
      */
@@ -24,6 +34,11 @@ public class Response {
      */
     public Object data;
 
+    /**
+     * Cursor para solicitar la siguiente página cuando la información es paginada
+     */
+    public String next;
+
     /**
      * Constructor de la clase
      *
@@ -34,6 +49,7 @@ public class Response {
         error = false;
         message = "";
         data = null;
+        next = null;
     }
 
     /**
@@ -46,5 +62,22 @@ public class Response {
         error = false;
         message = "";
         data = null;
+        next = null;
+    }
+
+    /**
+     * Ajusta el tamaño de página solicitado al rango permitido
+     *
+     * @param size Tamaño de página solicitado, puede ser null
+     * @return Tamaño de página a usar
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public static int pageSize(Integer size) {
+        if (size == null || size < 1) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        return Math.min(size, MAX_PAGE_SIZE);
     }
 }
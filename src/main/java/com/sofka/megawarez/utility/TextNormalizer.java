@@ -0,0 +1,44 @@
+package com.sofka.megawarez.utility;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Normalización de textos para comparaciones insensibles a mayúsculas y tildes
+ *
+ * @version 1.0.0 2022-04-05
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+public final class TextNormalizer {
+
+    /**
+     * Marcas diacríticas que quedan separadas después de descomponer el texto
+     */
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+
+    /**
+     * Constructor privado, clase de utilidades
+     */
+    private TextNormalizer() {
+    }
+
+    /**
+     * Normaliza un texto: elimina tildes y diéresis, lo pasa a minúsculas y recorta los espacios extremos
+     * ("Canción Ñandú" → "cancion nandu")
+     *
+     * @param text Texto a normalizar
+     * @return Texto normalizado, cadena vacía si el texto es null
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        var decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        return DIACRITICS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT).trim();
+    }
+}
@@ -0,0 +1,197 @@
+package com.sofka.megawarez.utility;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rueda de tiempo jerárquica: programa vencimientos de llaves con costo constante sin importar
+ * cuántas haya. Cada nivel tiene wheelSize casillas; una casilla del nivel 0 cubre un tick y una
+ * del nivel n cubre wheelSize^n ticks. Al completar una vuelta de un nivel, la casilla que toca del
+ * nivel superior se redistribuye en los inferiores. Los vencimientos más allá del último nivel se
+ * guardan en su última casilla y se redistribuyen al llegar a ella.
+ *
+ * La rueda no verifica si una llave se reprogramó o se eliminó; quien la usa debe confirmar el
+ * vencimiento contra su propio estado. Es segura para hilos
+ *
+ * @version 1.0.0 2022-04-06
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+public class TimingWheel<K> {
+
+    /**
+     * Duración de un tick en milisegundos
+     */
+    private final long tickMillis;
+
+    /**
+     * Bits del índice de casilla de cada nivel (wheelSize = 2^bits)
+     */
+    private final int bits;
+
+    /**
+     * Máscara del índice de casilla
+     */
+    private final long mask;
+
+    /**
+     * Casillas por nivel
+     */
+    private final List<List<Timer<K>>> slots;
+
+    /**
+     * Cantidad de niveles
+     */
+    private final int levels;
+
+    /**
+     * Último tick procesado
+     */
+    private long currentTick;
+
+    /**
+     * Cantidad de llaves programadas
+     */
+    private int size;
+
+    /**
+     * Constructor de la clase
+     *
+     * @param tickMillis Duración de un tick en milisegundos
+     * @param wheelSize Casillas por nivel, se redondea a la siguiente potencia de dos
+     * @param levels Cantidad de niveles
+     * @param nowMillis Momento actual en milisegundos
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public TimingWheel(long tickMillis, int wheelSize, int levels, long nowMillis) {
+        if (tickMillis < 1 || levels < 1) {
+            throw new IllegalArgumentException("El tick y la cantidad de niveles deben ser positivos");
+        }
+        this.tickMillis = tickMillis;
+        this.bits = Integer.numberOfTrailingZeros(Integer.highestOneBit(Math.max(wheelSize - 1, 1)) << 1);
+        if (bits * levels >= 62) {
+            throw new IllegalArgumentException("La rueda abarca demasiados ticks");
+        }
+        this.mask = (1L << bits) - 1;
+        this.levels = levels;
+        this.slots = new ArrayList<>(levels << bits);
+        for (var i = 0; i < levels << bits; i++) {
+            slots.add(new ArrayList<>());
+        }
+        this.currentTick = nowMillis / tickMillis;
+    }
+
+    /**
+     * Programa el vencimiento de una llave
+     *
+     * @param key Llave
+     * @param deadlineMillis Momento del vencimiento en milisegundos
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public synchronized void schedule(K key, long deadlineMillis) {
+        // Redondea hacia arriba: nunca vence antes de su momento
+        place(new Timer<>(key, (deadlineMillis + tickMillis - 1) / tickMillis), null);
+        size++;
+    }
+
+    /**
+     * Avanza la rueda hasta el momento indicado y devuelve las llaves vencidas
+     *
+     * @param nowMillis Momento actual en milisegundos
+     * @return Llaves vencidas, en orden de vencimiento aproximado
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public synchronized List<K> advance(long nowMillis) {
+        var expired = new ArrayList<K>();
+        var target = nowMillis / tickMillis;
+        while (currentTick < target) {
+            currentTick++;
+            // Redistribuye primero los niveles superiores que completaron una vuelta
+            for (var level = levels - 1; level > 0; level--) {
+                if ((currentTick & ((1L << (bits * level)) - 1)) == 0) {
+                    var slot = slot(level, (currentTick >>> (bits * level)) & mask);
+                    var timers = new ArrayList<>(slot);
+                    slot.clear();
+                    for (var timer : timers) {
+                        place(timer, expired);
+                    }
+                }
+            }
+            var slot = slot(0, currentTick & mask);
+            for (var timer : slot) {
+                expired.add(timer.key);
+            }
+            slot.clear();
+        }
+        size -= expired.size();
+        return expired;
+    }
+
+    /**
+     * Cantidad de llaves programadas, incluidas las que ya no son válidas para quien usa la rueda
+     *
+     * @return Cantidad de llaves
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Ubica un temporizador en la casilla que le corresponde según lo que falta para su vencimiento
+     *
+     * @param timer Temporizador
+     * @param expired Lista de vencidos, null si el temporizador es nuevo
+     *
+     * @author Lorena Castro <Lcastro0398@gmail.com>
+     * @since 1.0.0
+     */
+    private void place(Timer<K> timer, List<K> expired) {
+        var delta = timer.tick - currentTick;
+        if (delta <= 0) {
+            if (expired != null) {
+                expired.add(timer.key);
+                return;
+            }
+            // Ya vencido al programarlo: vence en el siguiente tick
+            delta = 1;
+        }
+        var tick = currentTick + delta;
+        for (var level = 0; level < levels; level++) {
+            if (delta < 1L << (bits * (level + 1))) {
+                slot(level, (tick >>> (bits * level)) & mask).add(timer);
+                return;
+            }
+        }
+        // Más allá del alcance de la rueda: última casilla alcanzable del nivel superior
+        var level = levels - 1;
+        var last = currentTick + (1L << (bits * levels)) - (1L << (bits * level));
+        slot(level, (last >>> (bits * level)) & mask).add(timer);
+    }
+
+    private List<Timer<K>> slot(int level, long index) {
+        return slots.get((level << bits) + (int) index);
+    }
+
+    /**
+     * Vencimiento programado de una llave
+     */
+    private static final class Timer<K> {
+
+        private final K key;
+        private final long tick;
+
+        private Timer(K key, long tick) {
+            this.key = key;
+            this.tick = tick;
+        }
+    }
+}
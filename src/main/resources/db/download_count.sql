@@ -0,0 +1,14 @@
+-- Contador de descargas por item, lo mantiene DownloadCounters: los incrementos se acumulan
+-- en memoria y se suman a esta tabla periódicamente.
+-- No tiene llave foránea hacia item para que el volcado de contadores no falle por un item
+-- borrado entre dos volcados; esas filas se borran junto con el item.
+CREATE TABLE IF NOT EXISTS download_count (
+    dcn_item_id INT    NOT NULL,
+    dcn_count   BIGINT NOT NULL,
+    PRIMARY KEY (dcn_item_id)
+) ENGINE = InnoDB;
+
+-- Carga inicial a partir de las descargas existentes
+INSERT INTO download_count (dcn_item_id, dcn_count)
+SELECT dwn_item_id, COUNT(*) FROM download GROUP BY dwn_item_id
+ON DUPLICATE KEY UPDATE dcn_count = VALUES(dcn_count);
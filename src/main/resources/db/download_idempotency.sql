@@ -0,0 +1,12 @@
+-- Llaves de idempotencia de la creación de descargas (cabecera Idempotency-Key), con alcance
+-- por usuario. dik_download_id queda en null cuando la descarga se escribe de forma diferida.
+-- Las filas se borran cuando superan dos ventanas de megawarez.download.idempotency.window.
+CREATE TABLE IF NOT EXISTS download_idempotency (
+    dik_key         VARCHAR(80) NOT NULL,
+    dik_user_id     INT         NOT NULL,
+    dik_item_id     INT         NOT NULL,
+    dik_download_id INT         NULL,
+    dik_created_at  DATETIME    NOT NULL,
+    PRIMARY KEY (dik_key),
+    INDEX idx_dik_created_at (dik_created_at)
+) ENGINE = InnoDB;
@@ -0,0 +1,7 @@
+-- Índices de la tabla download para las consultas paginadas y agregadas por item y por usuario.
+-- InnoDB agrega dwn_id al final de cada índice secundario, así que (dueño, fecha) también
+-- resuelve el orden (fecha, id) de la paginación por llave.
+
+CREATE INDEX idx_dwn_item_created_at ON download (dwn_item_id, dwn_created_at);
+
+CREATE INDEX idx_dwn_user_created_at ON download (dwn_user_id, dwn_created_at);
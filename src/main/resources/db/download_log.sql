@@ -0,0 +1,10 @@
+-- Punto de control del registro de descargas en disco (megawarez.download.ingest = log).
+-- dlc_offset es la cantidad de registros del log ya escritos en download; se actualiza en la
+-- misma transacción que esas inserciones, así que tras una caída se retoma sin duplicados.
+-- Hay una fila por directorio de segmentos: dlc_name es el nombre guardado en su archivo node-id
+-- ("download-log" para los directorios creados antes de ese archivo).
+CREATE TABLE IF NOT EXISTS download_log_checkpoint (
+    dlc_name   VARCHAR(32) NOT NULL,
+    dlc_offset BIGINT      NOT NULL,
+    PRIMARY KEY (dlc_name)
+) ENGINE = InnoDB;
@@ -0,0 +1,44 @@
+-- Particionado mensual de download por dwn_created_at (megawarez.download.partitioning.enabled = true).
+-- MySQL exige que la columna de partición forme parte de la llave primaria y no admite llaves
+-- foráneas en tablas particionadas, así que la llave primaria pasa a (dwn_id, dwn_created_at) y se
+-- quitan las llaves foráneas hacia user e item. Sin ellas la base de datos ya no rechaza descargas
+-- de usuarios o items inexistentes: la aplicación los verifica por lotes antes de escribir las
+-- descargas (DownloadValidator, usado por la escritura diferida, el registro en disco y el ingreso
+-- masivo) y, en la escritura directa, antes de crear cada descarga (CatalogueService.createDownload);
+-- además borra las descargas de un usuario o item junto con él.
+-- Cada partición pAAAAMM guarda un mes; p_future recibe lo posterior al último mes creado.
+-- Las particiones de los meses siguientes las crea DownloadPartitions, que también archiva y
+-- borra las que superan la retención.
+
+-- 1. Llaves foráneas, sus nombres los generó Hibernate
+SET @drops = (SELECT GROUP_CONCAT(CONCAT('DROP FOREIGN KEY ', CONSTRAINT_NAME))
+              FROM information_schema.REFERENTIAL_CONSTRAINTS
+              WHERE CONSTRAINT_SCHEMA = DATABASE() AND TABLE_NAME = 'download');
+SET @sql = IF(@drops IS NULL, 'DO 0', CONCAT('ALTER TABLE download ', @drops));
+PREPARE statement FROM @sql;
+EXECUTE statement;
+DEALLOCATE PREPARE statement;
+
+-- 2. Llave primaria con la columna de partición
+ALTER TABLE download DROP PRIMARY KEY, ADD PRIMARY KEY (dwn_id, dwn_created_at);
+
+-- 3. Una partición por cada mes desde la descarga más antigua hasta el mes actual
+SET SESSION group_concat_max_len = 65535;
+SET @first = (SELECT CAST(DATE_FORMAT(COALESCE(MIN(dwn_created_at), UTC_TIMESTAMP()), '%Y-%m-01') AS DATE)
+              FROM download);
+SET @partitions = (
+    WITH RECURSIVE months (month_start) AS (
+        SELECT @first
+        UNION ALL
+        SELECT month_start + INTERVAL 1 MONTH FROM months
+        WHERE month_start < CAST(DATE_FORMAT(UTC_TIMESTAMP(), '%Y-%m-01') AS DATE)
+    )
+    SELECT GROUP_CONCAT(CONCAT('PARTITION p', DATE_FORMAT(month_start, '%Y%m'),
+                               ' VALUES LESS THAN (''', month_start + INTERVAL 1 MONTH, ''')')
+                        ORDER BY month_start)
+    FROM months);
+SET @sql = CONCAT('ALTER TABLE download PARTITION BY RANGE COLUMNS (dwn_created_at) (',
+                  @partitions, ', PARTITION p_future VALUES LESS THAN (MAXVALUE))');
+PREPARE statement FROM @sql;
+EXECUTE statement;
+DEALLOCATE PREPARE statement;
@@ -0,0 +1,20 @@
+-- Descargas agregadas por item y subcategoría en cubetas de un minuto (m), una hora (h) y un día (d).
+-- Las mantiene DownloadRollups: las descargas nuevas se suman en memoria y se vuelcan periódicamente,
+-- las anteriores a la activación se agregan por tramos de dwn_id (backfill).
+CREATE TABLE IF NOT EXISTS download_rollup (
+    dro_granularity    CHAR(1)  NOT NULL,
+    dro_item_id        INT      NOT NULL,
+    dro_bucket         DATETIME NOT NULL,
+    dro_subcategory_id INT      NOT NULL,
+    dro_count          BIGINT   NOT NULL,
+    PRIMARY KEY (dro_granularity, dro_item_id, dro_bucket),
+    INDEX idx_dro_subcategory_bucket (dro_granularity, dro_subcategory_id, dro_bucket)
+) ENGINE = InnoDB;
+
+-- Estado del backfill: watermark es el mayor dwn_id existente al activar los rollups
+-- (lo posterior se cuenta en vivo) y backfilled el último dwn_id ya agregado
+CREATE TABLE IF NOT EXISTS download_rollup_state (
+    drs_name  VARCHAR(32) NOT NULL,
+    drs_value BIGINT      NOT NULL,
+    PRIMARY KEY (drs_name)
+) ENGINE = InnoDB;
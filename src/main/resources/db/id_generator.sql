@@ -0,0 +1,31 @@
+-- Tabla de los generadores de identificadores por bloques (pooled-lo) de las entidades.
+-- Cada fila guarda el primer identificador del siguiente bloque; Hibernate la lee y la aumenta
+-- en el tamaño del bloque (allocationSize) en una transacción aparte, una vez por bloque.
+-- Las columnas de identificador conservan su AUTO_INCREMENT, las descargas lo siguen usando
+-- en sus inserciones por lotes JDBC.
+CREATE TABLE IF NOT EXISTS id_generator (
+    gen_name       VARCHAR(64) NOT NULL,
+    gen_next_value BIGINT      NOT NULL,
+    PRIMARY KEY (gen_name)
+) ENGINE = InnoDB;
+
+-- Cada generador arranca después del mayor identificador existente
+INSERT INTO id_generator (gen_name, gen_next_value)
+SELECT 'category', COALESCE(MAX(cat_id), 0) + 1 FROM category
+ON DUPLICATE KEY UPDATE gen_next_value = GREATEST(gen_next_value, VALUES(gen_next_value));
+
+INSERT INTO id_generator (gen_name, gen_next_value)
+SELECT 'subcategory', COALESCE(MAX(scat_id), 0) + 1 FROM subcategory
+ON DUPLICATE KEY UPDATE gen_next_value = GREATEST(gen_next_value, VALUES(gen_next_value));
+
+INSERT INTO id_generator (gen_name, gen_next_value)
+SELECT 'item', COALESCE(MAX(itm_id), 0) + 1 FROM item
+ON DUPLICATE KEY UPDATE gen_next_value = GREATEST(gen_next_value, VALUES(gen_next_value));
+
+INSERT INTO id_generator (gen_name, gen_next_value)
+SELECT 'user', COALESCE(MAX(usr_id), 0) + 1 FROM `user`
+ON DUPLICATE KEY UPDATE gen_next_value = GREATEST(gen_next_value, VALUES(gen_next_value));
+
+INSERT INTO id_generator (gen_name, gen_next_value)
+SELECT 'session', COALESCE(MAX(ses_id), 0) + 1 FROM session
+ON DUPLICATE KEY UPDATE gen_next_value = GREATEST(gen_next_value, VALUES(gen_next_value));
@@ -0,0 +1,13 @@
+-- Índices de la tabla item para la paginación por llave del index y de los listados ordenados.
+-- Cada índice termina en itm_id, el desempate del orden, así la búsqueda (valor, id) > (?, ?)
+-- se resuelve con un recorrido de rango sin ordenar en memoria.
+
+CREATE INDEX idx_itm_name_id ON item (itm_name, itm_id);
+
+CREATE INDEX idx_itm_created_at_id ON item (itm_created_at, itm_id);
+
+-- Listado de los items de una subcategoría filtrado y ordenado en la misma consulta.
+
+CREATE INDEX idx_itm_subcategory_name_id ON item (itm_subcategory_id, itm_name, itm_id);
+
+CREATE INDEX idx_itm_subcategory_created_at_id ON item (itm_subcategory_id, itm_created_at, itm_id);
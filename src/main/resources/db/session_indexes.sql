@@ -0,0 +1,7 @@
+-- Índices de la tabla session. El índice único del token respalda el borrado de las sesiones
+-- cerradas y evita tokens repetidos; el de la fecha de creación respalda la carga de las
+-- sesiones vigentes al arrancar y el borrado de las vencidas.
+
+CREATE UNIQUE INDEX idx_ses_token ON session (ses_token);
+
+CREATE INDEX idx_ses_created_at ON session (ses_created_at);
@@ -0,0 +1,7 @@
+-- Revocaciones de tokens firmados (megawarez.session.mode = signed). Al cerrar una sesión se
+-- guarda en session una fila con el identificador del token en ses_token y la fecha de la
+-- revocación en ses_revoked_at; cada instancia lee las revocaciones nuevas por ese índice.
+
+ALTER TABLE session ADD COLUMN ses_revoked_at DATETIME(6) NULL;
+
+CREATE INDEX idx_ses_revoked_at ON session (ses_revoked_at);
@@ -0,0 +1,4 @@
+-- Índice único del nombre de usuario: el inicio de sesión busca las credenciales por nombre y
+-- dos usuarios no pueden compartirlo. Falla si ya hay nombres repetidos, que deben resolverse antes.
+
+CREATE UNIQUE INDEX idx_usr_username ON user (usr_username);
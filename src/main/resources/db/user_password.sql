@@ -0,0 +1,4 @@
+-- Amplía usr_password para guardar contraseñas PBKDF2 (algoritmo$iteraciones$sal$hash). Las
+-- contraseñas md5 existentes siguen siendo válidas y se recalculan al iniciar sesión.
+
+ALTER TABLE user MODIFY usr_password VARCHAR(255) NOT NULL;
@@ -0,0 +1,137 @@
+package com.sofka.megawarez.benchmark;
+
+import com.sofka.megawarez.domain.Category;
+import com.sofka.megawarez.repository.CategoryRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compara las inserciones por segundo de una fila por viaje con identificador AUTO_INCREMENT
+ * (lo que hacía GenerationType.IDENTITY) contra las inserciones por lotes que permite el generador
+ * por bloques. Las inserciones con AUTO_INCREMENT van a una tabla temporal con la forma de
+ * category, así no consumen identificadores de los bloques ya reservados en id_generator.
+ * Necesita la base de datos configurada, por eso solo se ejecuta con -Dmegawarez.benchmark=true
+ *
+ * @version 1.0.0 2022-04-06
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+@Slf4j
+@SpringBootTest
+@EnabledIfSystemProperty(named = "megawarez.benchmark", matches = "true")
+class IdGenerationBenchmark {
+
+    /**
+     * Prefijo de los nombres de las categorías creadas por la prueba
+     */
+    private static final String PREFIX = "bench-";
+
+    /**
+     * Tabla temporal de las inserciones con AUTO_INCREMENT
+     */
+    private static final String IDENTITY_TABLE = "bench_identity_category";
+
+    /**
+     * Cantidad de filas por medición
+     */
+    private static final int ROWS = Integer.getInteger("megawarez.benchmark.rows", 5000);
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void createIdentityTable() {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + IDENTITY_TABLE);
+        jdbcTemplate.execute("CREATE TABLE " + IDENTITY_TABLE + " LIKE category");
+    }
+
+    @Test
+    void identityVersusPooled() {
+        // Calentamiento de conexiones, sentencias y JIT
+        identityInserts(ROWS / 10, "warmup-identity-");
+        pooledInserts(ROWS / 10, "warmup-pooled-");
+
+        var identity = identityInserts(ROWS, "identity-");
+        var pooled = pooledInserts(ROWS, "pooled-");
+        log.info("IDENTITY (una fila por viaje): {} inserciones/s", Math.round(identity));
+        log.info("Pooled-lo + lotes JDBC: {} inserciones/s", Math.round(pooled));
+        log.info("Mejora: {}x", Math.round(pooled / identity * 10) / 10.0);
+
+        assertEquals(ROWS + ROWS / 10, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM " + IDENTITY_TABLE, Integer.class));
+        assertEquals(ROWS + ROWS / 10, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM category WHERE cat_name LIKE ?", Integer.class, PREFIX + "%"));
+        assertTrue(pooled > identity, "Las inserciones por lotes deben superar a las de una fila por viaje");
+    }
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("DELETE FROM category WHERE cat_name LIKE ?", PREFIX + "%");
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + IDENTITY_TABLE);
+    }
+
+    /**
+     * Inserta las filas una por una en la tabla temporal leyendo la llave generada, como lo hace
+     * Hibernate con IDENTITY
+     *
+     * @return Inserciones por segundo
+     */
+    private double identityInserts(int rows, String name) {
+        var start = System.nanoTime();
+        transactionTemplate.executeWithoutResult(status -> {
+            for (var i = 0; i < rows; i++) {
+                var index = i;
+                var keyHolder = new GeneratedKeyHolder();
+                jdbcTemplate.update(connection -> {
+                    var statement = connection.prepareStatement(
+                            "INSERT INTO " + IDENTITY_TABLE + " (cat_name, cat_created_at) VALUES (?, ?)",
+                            Statement.RETURN_GENERATED_KEYS);
+                    statement.setString(1, PREFIX + name + index);
+                    statement.setTimestamp(2, Timestamp.from(Instant.now()));
+                    return statement;
+                }, keyHolder);
+            }
+        });
+        return rows / ((System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Inserta las filas con el repositorio, que ahora reserva identificadores por bloques y envía lotes
+     *
+     * @return Inserciones por segundo
+     */
+    private double pooledInserts(int rows, String name) {
+        var categories = new ArrayList<Category>(rows);
+        for (var i = 0; i < rows; i++) {
+            var category = new Category();
+            category.setName(PREFIX + name + i);
+            category.setCreatedAt(Instant.now());
+            categories.add(category);
+        }
+        var start = System.nanoTime();
+        transactionTemplate.executeWithoutResult(status -> categoryRepository.saveAll(categories));
+        return rows / ((System.nanoTime() - start) / 1e9);
+    }
+}
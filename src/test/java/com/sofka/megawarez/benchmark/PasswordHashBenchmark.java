@@ -0,0 +1,74 @@
+package com.sofka.megawarez.benchmark;
+
+import com.sofka.megawarez.utility.PasswordHash;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compara el costo por contraseña de cada algoritmo e iteraciones de PBKDF2, para dimensionar
+ * megawarez.password.iterations y los hilos de megawarez.password.threads: con un costo de c ms
+ * cada hilo atiende unos 1000 / c inicios de sesión por segundo. md5 ignora las iteraciones.
+ * No necesita la base de datos, pero tarda varios minutos, por eso solo se ejecuta con
+ * -Dmegawarez.benchmark=true
+ *
+ * @version 1.0.0 2022-04-06
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+public class PasswordHashBenchmark {
+
+    private static final String PASSWORD = "correct horse battery staple";
+
+    @Param({PasswordHash.MD5, PasswordHash.PBKDF2_SHA256, PasswordHash.PBKDF2_SHA512})
+    public String algorithm;
+
+    @Param({"10000", "100000", "310000"})
+    public int iterations;
+
+    private String stored;
+
+    @Setup
+    public void setUp() {
+        stored = PasswordHash.hash(algorithm, iterations, PASSWORD);
+    }
+
+    /**
+     * Verificación de una contraseña correcta, lo que cuesta un inicio de sesión
+     */
+    @Benchmark
+    public boolean verify() {
+        return PasswordHash.matches(PASSWORD, stored);
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "megawarez.benchmark", matches = "true")
+    void run() throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PasswordHashBenchmark.class.getSimpleName())
+                // Surefire no pasa el classpath completo a un proceso hijo, se mide en el mismo proceso
+                .forks(0)
+                .build()).run();
+    }
+}
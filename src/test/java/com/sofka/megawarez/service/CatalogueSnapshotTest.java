@@ -0,0 +1,141 @@
+package com.sofka.megawarez.service;
+
+import com.sofka.megawarez.domain.projection.ItemView;
+import com.sofka.megawarez.repository.CategoryRepository;
+import com.sofka.megawarez.repository.ItemRepository;
+import com.sofka.megawarez.repository.SubcategoryRepository;
+import com.sofka.megawarez.utility.PageCursor;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pruebas de la copia en memoria del catálogo. Los repositorios solo se usan al construir el árbol,
+ * se reemplazan por simulaciones que devuelven los items iniciales
+ *
+ * @version 1.0.0 2022-04-06
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+class CatalogueSnapshotTest {
+
+    /**
+     * Nombres que empatan de a grupos en la intercalación, que ignora mayúsculas y tildes
+     */
+    private static final String[] NAMES = {"Árbol", "arbol", "ARBOL", "Avión", "avion", "Zeta", "zeta", "Ñandú",
+            "nandu"};
+
+    @Test
+    void keepsBothIndexesConsistentAfterMixedWrites() {
+        var random = new Random(42);
+        var expected = new HashMap<Integer, ItemView>();
+        for (var id = 1; id <= 20; id++) {
+            expected.put(id, item(id, NAMES[random.nextInt(NAMES.length)] + random.nextInt(3)));
+        }
+        var snapshot = load(new ArrayList<>(expected.values()));
+        assertConsistent(snapshot, expected);
+
+        for (var i = 0; i < 500; i++) {
+            var id = 1 + random.nextInt(40);
+            if (random.nextInt(4) == 0) {
+                snapshot.onItemDeleted(id);
+                expected.remove(id);
+            } else {
+                // Crea el item o lo renombra, lo que suele moverlo en el orden por nombre
+                var saved = item(id, NAMES[random.nextInt(NAMES.length)] + random.nextInt(3));
+                snapshot.onItemSaved(saved);
+                expected.put(id, saved);
+            }
+            assertConsistent(snapshot, expected);
+        }
+    }
+
+    @Test
+    void ordersCollationTiesById() {
+        var snapshot = load(List.of(item(3, "Árbol"), item(5, "avion"), item(1, "arbol"), item(2, "ARBOL")));
+        snapshot.onItemSaved(item(4, "arból"));
+
+        var tree = snapshot.getTree();
+        assertEquals(List.of(1, 2, 3, 4, 5), ids(tree.getItems()));
+
+        // El cursor de una página dentro del empate continúa en el identificador siguiente
+        var first = tree.page(null, 2);
+        assertEquals(List.of(1, 2), ids(first.getItems()));
+        var second = tree.page(PageCursor.decode(first.getNext()), 2);
+        assertEquals(List.of(3, 4), ids(second.getItems()));
+    }
+
+    @Test
+    void ignoresWritesBeforeTheFirstLoad() {
+        var snapshot = new CatalogueSnapshot();
+
+        snapshot.onItemSaved(item(1, "Árbol"));
+        snapshot.onItemDeleted(1);
+
+        assertNull(snapshot.getTree());
+    }
+
+    /**
+     * Verifica que los dos índices del árbol tengan exactamente los items esperados
+     */
+    private static void assertConsistent(CatalogueSnapshot snapshot, Map<Integer, ItemView> expected) {
+        var tree = snapshot.getTree();
+        var collator = Collator.getInstance(Locale.ROOT);
+        collator.setStrength(Collator.PRIMARY);
+        var byName = expected.values().stream()
+                .sorted(Comparator.comparing(ItemView::getName, collator::compare).thenComparing(ItemView::getId))
+                .collect(Collectors.toList());
+
+        assertEquals(byName, tree.getItems());
+        assertEquals(expected.size(), tree.size());
+        for (var id = 0; id <= 41; id++) {
+            var item = expected.get(id);
+            if (item == null) {
+                assertNull(tree.getItem(id), "El item " + id + " no debería existir");
+            } else {
+                assertSame(item, tree.getItem(id), "El item " + id + " no coincide");
+            }
+        }
+    }
+
+    /**
+     * Copia del catálogo construida con los items dados, sin categorías ni subcategorías
+     */
+    private static CatalogueSnapshot load(List<ItemView> items) {
+        var categoryRepository = mock(CategoryRepository.class);
+        var subcategoryRepository = mock(SubcategoryRepository.class);
+        var itemRepository = mock(ItemRepository.class);
+        when(categoryRepository.findAllViews()).thenReturn(List.of());
+        when(subcategoryRepository.findAllViews()).thenReturn(List.of());
+        when(itemRepository.findAllViews()).thenReturn(items);
+        var snapshot = new CatalogueSnapshot();
+        ReflectionTestUtils.setField(snapshot, "categoryRepository", categoryRepository);
+        ReflectionTestUtils.setField(snapshot, "subcategoryRepository", subcategoryRepository);
+        ReflectionTestUtils.setField(snapshot, "itemRepository", itemRepository);
+        snapshot.reload();
+        return snapshot;
+    }
+
+    private static ItemView item(int id, String name) {
+        return new ItemView(id, name, null, 1);
+    }
+
+    private static List<Integer> ids(List<ItemView> items) {
+        return items.stream().map(ItemView::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,309 @@
+package com.sofka.megawarez.service;
+
+import com.sofka.megawarez.domain.projection.DownloadRecord;
+import com.sofka.megawarez.repository.DownloadBatchRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pruebas de recuperación del registro de descargas en disco. La base de datos se reemplaza por un
+ * repositorio en memoria que guarda las descargas y los puntos de control, y cada reapertura del
+ * directorio simula un reinicio del proceso
+ *
+ * @version 1.0.0 2022-04-06
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+class DownloadLogTest {
+
+    @TempDir
+    Path directory;
+
+    private final Database database = new Database();
+
+    @Test
+    void replaysEveryDownloadInOrder() throws IOException {
+        var downloadLog = open(4, 3);
+        for (var i = 0; i < 10; i++) {
+            downloadLog.append(download(i));
+        }
+        assertEquals(10, downloadLog.pending());
+
+        downloadLog.replay();
+
+        assertEquals(0, downloadLog.pending());
+        assertEquals(users(0, 10), database.users());
+        assertEquals(10L, database.checkpoint());
+        // Solo queda el segmento en el que se escribe
+        assertEquals(List.of("00000000000000000008.log"), segments());
+        downloadLog.close();
+    }
+
+    @Test
+    void resumesFromTheCheckpointAfterARestart() throws IOException {
+        var downloadLog = open(4, 3);
+        for (var i = 0; i < 7; i++) {
+            downloadLog.append(download(i));
+        }
+        // El segundo lote falla: solo el primero queda escrito junto con su punto de control
+        database.failInsertsAfter = 1;
+        downloadLog.replay();
+        assertEquals(users(0, 3), database.users());
+        assertEquals(4, downloadLog.pending());
+
+        // Reinicio sin cierre ordenado: el registro se reabre desde los segmentos en disco
+        database.failInsertsAfter = Integer.MAX_VALUE;
+        var restarted = open(4, 3);
+        assertEquals(4, restarted.pending());
+        restarted.append(download(7));
+        restarted.replay();
+
+        assertEquals(users(0, 8), database.users());
+        assertEquals(8L, database.checkpoint());
+        restarted.close();
+
+        // El proceso anterior, si siguiera vivo, no puede volver a escribir lo ya escrito
+        downloadLog.close();
+        assertEquals(users(0, 8), database.users());
+    }
+
+    @Test
+    void stopsAtTheFirstTornRecord() throws IOException {
+        var downloadLog = open(8, 10);
+        for (var i = 0; i < 3; i++) {
+            downloadLog.append(download(i));
+        }
+        // Escritura interrumpida del tercer registro: su CRC no coincide
+        var segment = directory.resolve("00000000000000000000.log");
+        try (var channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            var crc = ByteBuffer.allocate(1);
+            channel.read(crc, 2 * 20 + 16);
+            crc.put(0, (byte) ~crc.get(0)).rewind();
+            channel.write(crc, 2 * 20 + 16);
+        }
+
+        var restarted = open(8, 10);
+        assertEquals(2, restarted.pending());
+        restarted.append(download(3));
+        restarted.replay();
+
+        assertEquals(List.of(0, 1, 3), database.users());
+        restarted.close();
+    }
+
+    @Test
+    void keepsOneCheckpointPerDirectory() throws IOException {
+        var downloadLog = open(4, 3);
+        downloadLog.append(download(0));
+        downloadLog.replay();
+        downloadLog.close();
+        var name = Files.readString(directory.resolve("node-id"));
+
+        var restarted = open(4, 3);
+        restarted.close();
+
+        assertTrue(name.startsWith("log-"), name);
+        assertTrue(name.length() <= 32, name);
+        assertEquals(name, Files.readString(directory.resolve("node-id")));
+        assertEquals(Map.of(name, 1L), database.checkpoints);
+    }
+
+    @Test
+    void reloadsTheCheckpointWhenAnotherProcessMovedIt() throws IOException {
+        var downloadLog = open(8, 2);
+        for (var i = 0; i < 6; i++) {
+            downloadLog.append(download(i));
+        }
+        database.checkpoints.put(Files.readString(directory.resolve("node-id")), 4L);
+
+        downloadLog.replay();
+        assertEquals(List.of(), database.users());
+        assertEquals(2, downloadLog.pending());
+
+        downloadLog.replay();
+        assertEquals(users(4, 6), database.users());
+        downloadLog.close();
+    }
+
+    @Test
+    void dropsDownloadsOfMissingUsersAndKeepsTheCheckpoint() throws IOException {
+        var downloadLog = open(8, 4);
+        for (var i = 0; i < 6; i++) {
+            downloadLog.append(download(i));
+        }
+        database.missingUsers.addAll(List.of(1, 4));
+
+        downloadLog.replay();
+
+        assertEquals(List.of(0, 2, 3, 5), database.users());
+        assertEquals(6L, database.checkpoint());
+        assertEquals(0, downloadLog.pending());
+        downloadLog.close();
+    }
+
+    @Test
+    void writesPendingDownloadsOnClose() throws IOException {
+        var downloadLog = open(4, 3);
+        for (var i = 0; i < 5; i++) {
+            downloadLog.append(download(i));
+        }
+        downloadLog.close();
+        downloadLog.close();
+
+        assertEquals(users(0, 5), database.users());
+        downloadLog.replay();
+        assertEquals(users(0, 5), database.users());
+    }
+
+    /**
+     * Abre el registro sobre el directorio de la prueba con la base de datos en memoria
+     */
+    private DownloadLog open(int segmentRecords, int batchSize) throws IOException {
+        var downloadLog = new DownloadLog(directory.toString(), segmentRecords, batchSize);
+        ReflectionTestUtils.setField(downloadLog, "downloadBatchRepository", database);
+        ReflectionTestUtils.setField(downloadLog, "downloadValidator", database.validator());
+        ReflectionTestUtils.setField(downloadLog, "transactionTemplate", database.transactionTemplate);
+        downloadLog.open();
+        return downloadLog;
+    }
+
+    /**
+     * Nombres de los segmentos en el directorio
+     */
+    private List<String> segments() throws IOException {
+        try (var listing = Files.list(directory)) {
+            return listing.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(".log"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Descarga cuyo usuario identifica su orden de llegada
+     */
+    private static DownloadRecord download(int order) {
+        return new DownloadRecord(null, order, 1, Instant.ofEpochMilli(1_650_000_000_000L + order));
+    }
+
+    private static List<Integer> users(int from, int to) {
+        var users = new ArrayList<Integer>();
+        for (var i = from; i < to; i++) {
+            users.add(i);
+        }
+        return users;
+    }
+
+    /**
+     * Base de datos en memoria: las escrituras de una transacción se aplican solo si termina sin error.
+     * Existen todos los usuarios salvo los de missingUsers y todos los items
+     */
+    private static final class Database extends DownloadBatchRepository {
+
+        private final List<DownloadRecord> downloads = new ArrayList<>();
+        private final Map<String, Long> checkpoints = new HashMap<>();
+        private List<DownloadRecord> pendingDownloads;
+        private Map<String, Long> pendingCheckpoints;
+        private int inserts;
+        private int failInsertsAfter = Integer.MAX_VALUE;
+        private final Set<Integer> missingUsers = new HashSet<>();
+
+        private final TransactionTemplate transactionTemplate = new TransactionTemplate() {
+            @Override
+            public <T> T execute(TransactionCallback<T> action) {
+                pendingDownloads = new ArrayList<>(downloads);
+                pendingCheckpoints = new HashMap<>(checkpoints);
+                // Si la acción lanza una excepción no se confirma nada
+                var result = action.doInTransaction(new SimpleTransactionStatus());
+                downloads.clear();
+                downloads.addAll(pendingDownloads);
+                checkpoints.clear();
+                checkpoints.putAll(pendingCheckpoints);
+                return result;
+            }
+        };
+
+        @Override
+        public int[] insertAll(List<DownloadRecord> batch) {
+            if (++inserts > failInsertsAfter) {
+                throw new DataAccessResourceFailureException("Base de datos caída");
+            }
+            pendingDownloads.addAll(batch);
+            return new int[batch.size()];
+        }
+
+        @Override
+        public int insert(DownloadRecord download) {
+            pendingDownloads.add(download);
+            return 1;
+        }
+
+        @Override
+        public Set<Integer> findExistingUserIds(Collection<Integer> ids) {
+            var existing = new HashSet<>(ids);
+            existing.removeAll(missingUsers);
+            return existing;
+        }
+
+        @Override
+        public Set<Integer> findExistingItemIds(Collection<Integer> ids) {
+            return new HashSet<>(ids);
+        }
+
+        @Override
+        public long findLogCheckpoint(String name) {
+            return checkpoints.computeIfAbsent(name, key -> 0L);
+        }
+
+        @Override
+        public void updateLogCheckpoint(String name, long expected, long offset) {
+            if (pendingCheckpoints.getOrDefault(name, 0L) != expected) {
+                throw new OptimisticLockingFailureException("Punto de control movido");
+            }
+            pendingCheckpoints.put(name, offset);
+        }
+
+        /**
+         * Verificación de descargas sobre esta base de datos, sin instantánea del catálogo cargada
+         */
+        private DownloadValidator validator() {
+            var validator = new DownloadValidator();
+            ReflectionTestUtils.setField(validator, "downloadBatchRepository", this);
+            ReflectionTestUtils.setField(validator, "catalogueSnapshot", new CatalogueSnapshot());
+            return validator;
+        }
+
+        private List<Integer> users() {
+            return downloads.stream().map(DownloadRecord::getUserId).collect(Collectors.toList());
+        }
+
+        private long checkpoint() {
+            return checkpoints.values().iterator().next();
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.sofka.megawarez.service;
+
+import com.sofka.megawarez.domain.projection.DownloadRecord;
+import com.sofka.megawarez.repository.DownloadBatchRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pruebas de la escritura diferida de descargas. La base de datos se reemplaza por un repositorio en
+ * memoria que puede simular una caída y rechazar filas por integridad; el hilo escritor es el real,
+ * con intervalos y esperas cortos, y las pruebas esperan a que alcance el estado buscado
+ *
+ * @version 1.0.0 2022-04-06
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+class DownloadWriteBehindTest {
+
+    private final Database database = new Database();
+
+    private DownloadWriteBehind writeBehind;
+
+    @AfterEach
+    void stop() {
+        if (writeBehind != null) {
+            writeBehind.stop();
+        }
+    }
+
+    @Test
+    void writesEveryDownloadInOrder() {
+        writeBehind = start(3);
+        for (var i = 0; i < 10; i++) {
+            assertTrue(writeBehind.enqueue(download(i)));
+        }
+
+        await(() -> database.users().size() == 10);
+
+        assertEquals(users(0, 10), database.users());
+        assertEquals(0, writeBehind.pending());
+    }
+
+    @Test
+    void keepsAFailedBatchAndRefusesDownloadsWhileTheDatabaseIsDown() {
+        writeBehind = start(10);
+        database.down = true;
+        for (var i = 0; i < 3; i++) {
+            assertTrue(writeBehind.enqueue(download(i)));
+        }
+
+        // Tras el primer fallo el lote se reintenta y las peticiones nuevas se rechazan sin encolar
+        await(() -> database.attempts.sum() >= 2);
+        assertFalse(writeBehind.enqueue(download(99)));
+        assertEquals(List.of(), database.users());
+
+        database.down = false;
+        await(() -> database.users().size() == 3);
+        assertEquals(users(0, 3), database.users());
+
+        // Con la base de datos de vuelta se aceptan descargas otra vez
+        await(() -> writeBehind.enqueue(download(3)));
+        await(() -> database.users().size() == 4);
+        assertEquals(users(0, 4), database.users());
+    }
+
+    @Test
+    void dropsOnlyTheRejectedRows() {
+        database.missingUsers.add(2);
+        database.rejectedUsers.add(4);
+        writeBehind = start(10);
+        for (var i = 0; i < 6; i++) {
+            assertTrue(writeBehind.enqueue(download(i)));
+        }
+
+        await(() -> counter("written") + counter("dropped") == 6);
+
+        // El usuario 2 lo descarta la verificación por lotes y el 4 la base de datos, fila por fila
+        assertEquals(List.of(0, 1, 3, 5), database.users());
+        assertEquals(2L, counter("dropped"));
+    }
+
+    @Test
+    void writesTheRetriedBatchBeforeStopping() {
+        writeBehind = start(10);
+        database.down = true;
+        for (var i = 0; i < 3; i++) {
+            assertTrue(writeBehind.enqueue(download(i)));
+        }
+        await(() -> database.attempts.sum() >= 1);
+
+        database.down = false;
+        writeBehind.stop();
+        writeBehind = null;
+
+        assertEquals(users(0, 3), database.users());
+    }
+
+    /**
+     * Crea e inicia la escritura diferida sobre la base de datos en memoria
+     */
+    private DownloadWriteBehind start(int batchSize) {
+        var started = new DownloadWriteBehind(100, batchSize, Duration.ofMillis(20), Duration.ofMillis(10),
+                Duration.ofMillis(5), Duration.ofMillis(20));
+        var validator = new DownloadValidator();
+        ReflectionTestUtils.setField(validator, "downloadBatchRepository", database);
+        ReflectionTestUtils.setField(validator, "catalogueSnapshot", new CatalogueSnapshot());
+        ReflectionTestUtils.setField(started, "downloadBatchRepository", database);
+        ReflectionTestUtils.setField(started, "downloadValidator", validator);
+        started.start();
+        return started;
+    }
+
+    /**
+     * Valor de una de las estadísticas de la escritura diferida
+     */
+    private long counter(String name) {
+        return ((LongAdder) ReflectionTestUtils.getField(writeBehind, name)).sum();
+    }
+
+    /**
+     * Espera a que se cumpla la condición, a lo sumo cinco segundos
+     */
+    private static void await(BooleanSupplier condition) {
+        var deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "La condición no se cumplió a tiempo");
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(exception);
+            }
+        }
+    }
+
+    /**
+     * Descarga cuyo usuario identifica su orden de llegada
+     */
+    private static DownloadRecord download(int order) {
+        return new DownloadRecord(null, order, 1, Instant.ofEpochMilli(1_650_000_000_000L + order));
+    }
+
+    private static List<Integer> users(int from, int to) {
+        var users = new ArrayList<Integer>();
+        for (var i = from; i < to; i++) {
+            users.add(i);
+        }
+        return users;
+    }
+
+    /**
+     * Base de datos en memoria. Mientras está caída toda escritura falla; los usuarios de
+     * missingUsers no existen y las filas de rejectedUsers fallan por integridad al insertarse
+     */
+    private static final class Database extends DownloadBatchRepository {
+
+        private final List<DownloadRecord> downloads = new ArrayList<>();
+        private final Set<Integer> missingUsers = new HashSet<>();
+        private final Set<Integer> rejectedUsers = new HashSet<>();
+        private final LongAdder attempts = new LongAdder();
+        private volatile boolean down;
+
+        @Override
+        public synchronized int[] insertAll(List<DownloadRecord> batch) {
+            if (down) {
+                throw new DataAccessResourceFailureException("Base de datos caída");
+            }
+            for (var download : batch) {
+                if (rejectedUsers.contains(download.getUserId())) {
+                    throw new DataIntegrityViolationException("Fila inválida en el lote");
+                }
+            }
+            downloads.addAll(batch);
+            return new int[batch.size()];
+        }
+
+        @Override
+        public synchronized int insert(DownloadRecord download) {
+            if (down) {
+                throw new DataAccessResourceFailureException("Base de datos caída");
+            }
+            if (rejectedUsers.contains(download.getUserId())) {
+                throw new DataIntegrityViolationException("Fila inválida");
+            }
+            downloads.add(download);
+            return 1;
+        }
+
+        @Override
+        public synchronized Set<Integer> findExistingUserIds(Collection<Integer> ids) {
+            // Cada intento de escribir un lote empieza verificando sus usuarios
+            attempts.increment();
+            if (down) {
+                throw new DataAccessResourceFailureException("Base de datos caída");
+            }
+            var existing = new HashSet<>(ids);
+            existing.removeAll(missingUsers);
+            return existing;
+        }
+
+        @Override
+        public synchronized Set<Integer> findExistingItemIds(Collection<Integer> ids) {
+            if (down) {
+                throw new DataAccessResourceFailureException("Base de datos caída");
+            }
+            return new HashSet<>(ids);
+        }
+
+        private synchronized List<Integer> users() {
+            return downloads.stream().map(DownloadRecord::getUserId).collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.sofka.megawarez.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Pruebas de los tokens de sesión firmados. Solo cubren la emisión y la validación, que no usan
+ * la base de datos: las instancias se crean con el constructor y sin cargar revocaciones
+ *
+ * @version 1.0.0 2022-04-06
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+class SignedSessionTokensTest {
+
+    private static final String KEY_1 = "1:" + secret(1);
+    private static final String KEY_2 = "2:" + secret(2);
+
+    @Test
+    void validatesItsOwnTokens() {
+        var tokens = new SignedSessionTokens(KEY_1, 1, Duration.ofHours(1));
+        var token = tokens.issue(42);
+
+        assertEquals(44, token.length());
+        assertEquals(42, tokens.validate(token));
+        assertNotEquals(token, tokens.issue(42));
+    }
+
+    @Test
+    void rejectsTamperedTokens() {
+        var tokens = new SignedSessionTokens(KEY_1, 1, Duration.ofHours(1));
+        var token = tokens.issue(42);
+
+        for (var i = 0; i < token.length(); i++) {
+            var chars = token.toCharArray();
+            chars[i] = chars[i] == 'A' ? 'B' : 'A';
+            assertNull(tokens.validate(new String(chars)), "Se aceptó el token alterado en la posición " + i);
+        }
+        assertNull(tokens.validate(token.substring(1)));
+        assertNull(tokens.validate(token + "A"));
+        assertNull(tokens.validate(token.replace(token.charAt(0), '*')));
+        assertNull(tokens.validate(null));
+    }
+
+    @Test
+    void rejectsTokensSignedWithAnotherSecret() {
+        var issuer = new SignedSessionTokens(KEY_1, 1, Duration.ofHours(1));
+        var other = new SignedSessionTokens("1:" + secret(3), 1, Duration.ofHours(1));
+
+        assertNull(other.validate(issuer.issue(42)));
+    }
+
+    @Test
+    void rejectsExpiredTokens() {
+        var tokens = new SignedSessionTokens(KEY_1, 1, Duration.ofSeconds(-1));
+
+        assertNull(tokens.validate(tokens.issue(42)));
+    }
+
+    @Test
+    void acceptsTokensOfRetiringKeysDuringRotation() {
+        var before = new SignedSessionTokens(KEY_1, 1, Duration.ofHours(1));
+        var during = new SignedSessionTokens(KEY_1 + "," + KEY_2, 2, Duration.ofHours(1));
+        var after = new SignedSessionTokens(KEY_2, 2, Duration.ofHours(1));
+        var old = before.issue(7);
+        var current = during.issue(8);
+
+        assertEquals(7, during.validate(old));
+        assertEquals(8, during.validate(current));
+        assertEquals(8, after.validate(current));
+        assertNull(after.validate(old));
+        assertNull(before.validate(current));
+    }
+
+    @Test
+    void rejectsInvalidKeys() {
+        var ttl = Duration.ofHours(1);
+        assertThrows(IllegalStateException.class, () -> new SignedSessionTokens("", 0, ttl));
+        assertThrows(IllegalStateException.class, () -> new SignedSessionTokens(KEY_1, 2, ttl));
+        assertThrows(IllegalStateException.class, () -> new SignedSessionTokens("1:c2hvcnQ=", 1, ttl));
+        assertThrows(IllegalStateException.class, () -> new SignedSessionTokens("256:" + secret(1), 0, ttl));
+        assertThrows(IllegalStateException.class, () -> new SignedSessionTokens(secret(1), 0, ttl));
+    }
+
+    /**
+     * Secreto de 32 bytes en Base64
+     */
+    private static String secret(int seed) {
+        var bytes = new byte[32];
+        for (var i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (seed * 31 + i);
+        }
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+}
@@ -0,0 +1,95 @@
+package com.sofka.megawarez.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pruebas de los items en tendencia, con momentos fijos para no depender del reloj
+ *
+ * @version 1.0.0 2022-04-06
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+class TrendingTrackerTest {
+
+    /**
+     * Momento de referencia de las pruebas
+     */
+    private static final long NOW = 1_650_000_000_000L;
+
+    @Test
+    void ordersItemsByDownloads() {
+        var tracker = new TrendingTracker();
+        record(tracker, 1, 5, NOW);
+        record(tracker, 2, 3, NOW);
+        record(tracker, 3, 1, NOW);
+
+        var top = tracker.top("hour", 10, NOW);
+        assertEquals("1=5, 2=3, 3=1", format(top));
+        assertEquals("1=5, 2=3", format(tracker.top("HOUR", 2, NOW)));
+    }
+
+    @Test
+    void keepsEachDownloadInItsWindows() {
+        var tracker = new TrendingTracker();
+        record(tracker, 1, 2, NOW);
+        record(tracker, 2, 10, NOW - Duration.ofHours(2).toMillis());
+        record(tracker, 3, 20, NOW - Duration.ofDays(3).toMillis());
+
+        assertEquals("1=2", format(tracker.top("hour", 10, NOW)));
+        assertEquals("2=10, 1=2", format(tracker.top("day", 10, NOW)));
+        assertEquals("3=20, 2=10, 1=2", format(tracker.top("week", 10, NOW)));
+    }
+
+    @Test
+    void dropsBucketsThatLeaveTheWindow() {
+        var tracker = new TrendingTracker();
+        record(tracker, 1, 3, NOW);
+
+        assertTrue(tracker.top("hour", 10, NOW + Duration.ofMinutes(70).toMillis()).isEmpty());
+        assertEquals("1=3", format(tracker.top("day", 10, NOW + Duration.ofMinutes(70).toMillis())));
+    }
+
+    @Test
+    void keepsHeavyHittersAmongManyItems() {
+        var tracker = new TrendingTracker();
+        for (var i = 0; i < 1000; i++) {
+            tracker.record(1000 + i, NOW);
+            if (i % 10 == 0) {
+                record(tracker, 7, 1, NOW);
+            }
+        }
+
+        var top = tracker.top("hour", 1, NOW);
+        assertEquals(1, top.size());
+        assertEquals(7, top.get(0).getItemId());
+        assertTrue(top.get(0).getDownloads() >= 100);
+        assertEquals(TrendingTracker.MAX_CANDIDATES, tracker.top("hour", 1000, NOW).size());
+    }
+
+    @Test
+    void rejectsUnknownWindows() {
+        var tracker = new TrendingTracker();
+        assertThrows(IllegalArgumentException.class, () -> tracker.top("month", 10, NOW));
+        assertThrows(IllegalArgumentException.class, () -> tracker.top(null, 10, NOW));
+    }
+
+    private static void record(TrendingTracker tracker, int itemId, int times, long timestamp) {
+        for (var i = 0; i < times; i++) {
+            tracker.record(itemId, timestamp);
+        }
+    }
+
+    private static String format(List<TrendingTracker.Trend> trends) {
+        return trends.stream()
+                .map(trend -> trend.getItemId() + "=" + trend.getDownloads())
+                .collect(Collectors.joining(", "));
+    }
+}
@@ -0,0 +1,83 @@
+package com.sofka.megawarez.utility;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pruebas del filtro de Bloom
+ *
+ * @version 1.0.0 2022-04-06
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+class BloomFilterTest {
+
+    @Test
+    void hasNoFalseNegatives() {
+        var filter = new BloomFilter(10_000, 0.01);
+        for (var i = 0; i < 10_000; i++) {
+            filter.put("1:" + i);
+        }
+        for (var i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("1:" + i), "Falta la llave 1:" + i);
+        }
+    }
+
+    @Test
+    void keepsTheFalsePositiveRateNearTheTarget() {
+        var filter = new BloomFilter(10_000, 0.01);
+        for (var i = 0; i < 10_000; i++) {
+            filter.put("added-" + i);
+        }
+        var falsePositives = 0;
+        for (var i = 0; i < 100_000; i++) {
+            if (filter.mightContain("missing-" + i)) {
+                falsePositives++;
+            }
+        }
+        // Objetivo 1 %, se admite el doble por la variación de la muestra
+        assertTrue(falsePositives < 2_000, "Falsos positivos: " + falsePositives);
+    }
+
+    @Test
+    void acceptsConcurrentInsertions() throws InterruptedException {
+        var filter = new BloomFilter(40_000, 0.01);
+        var threads = new ArrayList<Thread>();
+        for (var t = 0; t < 4; t++) {
+            var prefix = t + ":";
+            threads.add(new Thread(() -> {
+                for (var i = 0; i < 10_000; i++) {
+                    filter.put(prefix + i);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (var thread : threads) {
+            thread.join();
+        }
+        for (var t = 0; t < 4; t++) {
+            for (var i = 0; i < 10_000; i++) {
+                assertTrue(filter.mightContain(t + ":" + i), "Falta la llave " + t + ":" + i);
+            }
+        }
+    }
+
+    @Test
+    void startsEmpty() {
+        var filter = new BloomFilter(1, 0.5);
+        assertFalse(filter.mightContain("key"));
+        assertFalse(filter.mightContain(""));
+    }
+
+    @Test
+    void rejectsInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(0, 0.01));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(100, 0));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(100, 1));
+    }
+}
@@ -0,0 +1,107 @@
+package com.sofka.megawarez.utility;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Pruebas de la caché acotada. Las invalidaciones concurrentes con una carga se simulan desde el
+ * propio cargador, que corre fuera del bloqueo de la caché
+ *
+ * @version 1.0.0 2022-04-06
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+class BoundedCacheTest {
+
+    private static final Duration LONG_TTL = Duration.ofHours(1);
+
+    @Test
+    void evictsTheLeastRecentlyUsedEntry() {
+        var cache = new BoundedCache<String, Integer>("test", 2, LONG_TTL);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        // Leer "a" la deja como la más reciente, la próxima en salir es "b"
+        assertEquals(1, cache.getIfPresent("a"));
+
+        cache.put("c", 3);
+
+        assertNull(cache.getIfPresent("b"));
+        assertEquals(1, cache.getIfPresent("a"));
+        assertEquals(3, cache.getIfPresent("c"));
+        assertEquals(2, cache.getStats().getSize());
+        assertEquals(1, cache.getStats().getEvictions());
+    }
+
+    @Test
+    void loadsOnlyOnMiss() {
+        var cache = new BoundedCache<String, Integer>("test", 10, LONG_TTL);
+        var loads = new int[1];
+
+        assertEquals(1, cache.get("a", key -> ++loads[0]));
+        assertEquals(1, cache.get("a", key -> ++loads[0]));
+
+        assertEquals(1, loads[0]);
+        assertEquals(1, cache.getStats().getHits());
+        assertEquals(1, cache.getStats().getMisses());
+    }
+
+    @Test
+    void expiresEntriesAfterTheirTtl() {
+        var cache = new BoundedCache<String, Integer>("test", 10, Duration.ZERO);
+        cache.put("a", 1);
+
+        assertNull(cache.getIfPresent("a"));
+        assertEquals(2, cache.get("b", key -> 2));
+        assertEquals(3, cache.get("b", key -> 3));
+
+        assertEquals(2, cache.getStats().getExpirations());
+        assertEquals(3, cache.getStats().getMisses());
+        assertEquals(0, cache.getStats().getHits());
+    }
+
+    @Test
+    void discardsALoadThatStartedBeforeAnInvalidation() {
+        var cache = new BoundedCache<String, Integer>("test", 10, LONG_TTL);
+
+        // La carga lee el valor anterior y la invalidación llega antes de que lo guarde
+        assertEquals(1, cache.get("a", key -> {
+            cache.invalidateAll();
+            return 1;
+        }));
+        assertNull(cache.getIfPresent("a"));
+
+        assertEquals(2, cache.get("a", key -> {
+            cache.invalidateIf(other -> other.equals("b"));
+            return 2;
+        }));
+        assertNull(cache.getIfPresent("a"));
+
+        // Sin invalidaciones de por medio la carga se guarda
+        assertEquals(3, cache.get("a", key -> 3));
+        assertEquals(3, cache.getIfPresent("a"));
+    }
+
+    @Test
+    void invalidatesOnlyTheMatchingKeys() {
+        var cache = new BoundedCache<String, Integer>("test", 10, LONG_TTL);
+        cache.put("item:1", 1);
+        cache.put("item:2", 2);
+        cache.put("user:1", 3);
+
+        cache.invalidateIf(key -> key.startsWith("item:"));
+
+        assertNull(cache.getIfPresent("item:1"));
+        assertNull(cache.getIfPresent("item:2"));
+        assertEquals(3, cache.getIfPresent("user:1"));
+        assertEquals(2, cache.getStats().getInvalidations());
+
+        cache.invalidateAll();
+
+        assertNull(cache.getIfPresent("user:1"));
+        assertEquals(3, cache.getStats().getInvalidations());
+    }
+}
@@ -0,0 +1,72 @@
+package com.sofka.megawarez.utility;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pruebas del sketch Count-Min
+ *
+ * @version 1.0.0 2022-04-06
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+class CountMinSketchTest {
+
+    @Test
+    void countsExactlyWhileKeysDoNotCollide() {
+        var sketch = new CountMinSketch(4, 1024);
+        for (var i = 0; i < 3; i++) {
+            sketch.add(7);
+        }
+        assertEquals(4, sketch.add(7));
+        assertEquals(4, sketch.estimate(7));
+        assertEquals(0, sketch.estimate(8));
+    }
+
+    @Test
+    void neverUnderestimatesAndStaysWithinTheBound() {
+        var sketch = new CountMinSketch(4, 256);
+        var actual = new HashMap<Integer, Long>();
+        var random = new Random(1);
+        var total = 50_000;
+        for (var i = 0; i < total; i++) {
+            // Distribución sesgada: pocos items concentran la mayoría de las descargas
+            var key = (int) Math.abs(random.nextGaussian() * 200);
+            sketch.add(key);
+            actual.merge(key, 1L, Long::sum);
+        }
+        // Error máximo total * e / width, salvo con probabilidad e^-depth por llave
+        var bound = (long) Math.ceil(total * Math.E / 256);
+        var exceeded = 0;
+        for (var entry : actual.entrySet()) {
+            var estimate = sketch.estimate(entry.getKey());
+            assertTrue(estimate >= entry.getValue(), "Subestimó la llave " + entry.getKey());
+            if (estimate - entry.getValue() > bound) {
+                exceeded++;
+            }
+        }
+        assertTrue(exceeded <= actual.size() * 0.05, "Llaves fuera del margen: " + exceeded);
+    }
+
+    @Test
+    void clearsAllCounters() {
+        var sketch = new CountMinSketch(2, 16);
+        sketch.add(1);
+        sketch.add(2);
+        sketch.clear();
+        assertEquals(0, sketch.estimate(1));
+        assertEquals(0, sketch.estimate(2));
+    }
+
+    @Test
+    void rejectsInvalidDepth() {
+        assertThrows(IllegalArgumentException.class, () -> new CountMinSketch(0, 16));
+        assertThrows(IllegalArgumentException.class, () -> new CountMinSketch(9, 16));
+    }
+}
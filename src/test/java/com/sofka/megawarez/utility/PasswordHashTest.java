@@ -0,0 +1,77 @@
+package com.sofka.megawarez.utility;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pruebas del formato de las contraseñas guardadas. Los valores MD5 son los que generaba
+ * LoginData.createMD5 antes de PBKDF2: 32 dígitos hexadecimales en minúsculas, con ceros a la izquierda
+ *
+ * @version 1.0.0 2022-04-06
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+class PasswordHashTest {
+
+    /**
+     * Pocas iteraciones para que las pruebas no tarden, el formato es el mismo
+     */
+    private static final int ITERATIONS = 1000;
+
+    @Test
+    void verifiesLegacyMd5ValuesAndAsksToRehashThem() {
+        assertTrue(PasswordHash.matches("password", "5f4dcc3b5aa765d61d8327deb882cf99"));
+        assertTrue(PasswordHash.matches("clave265", "005b6a619ff215f615d67ac2641704bd"));
+        assertEquals("5f4dcc3b5aa765d61d8327deb882cf99", PasswordHash.hash(PasswordHash.MD5, 0, "password"));
+
+        assertTrue(PasswordHash.needsRehash("5f4dcc3b5aa765d61d8327deb882cf99", PasswordHash.PBKDF2_SHA256, 310000));
+        assertFalse(PasswordHash.needsRehash("5f4dcc3b5aa765d61d8327deb882cf99", PasswordHash.MD5, 0));
+    }
+
+    @Test
+    void verifiesPbkdf2Values() {
+        for (var algorithm : new String[]{PasswordHash.PBKDF2_SHA256, PasswordHash.PBKDF2_SHA512}) {
+            var stored = PasswordHash.hash(algorithm, ITERATIONS, "contraseña");
+
+            assertTrue(stored.startsWith(algorithm + "$" + ITERATIONS + "$"), stored);
+            assertTrue(PasswordHash.matches("contraseña", stored));
+            // Cada valor lleva su propia sal
+            assertNotEquals(stored, PasswordHash.hash(algorithm, ITERATIONS, "contraseña"));
+        }
+    }
+
+    @Test
+    void rejectsWrongPasswords() {
+        assertFalse(PasswordHash.matches("Password", "5f4dcc3b5aa765d61d8327deb882cf99"));
+        assertFalse(PasswordHash.matches("", "5f4dcc3b5aa765d61d8327deb882cf99"));
+        var stored = PasswordHash.hash(PasswordHash.PBKDF2_SHA256, ITERATIONS, "contraseña");
+        assertFalse(PasswordHash.matches("contrasena", stored));
+    }
+
+    @Test
+    void rejectsMalformedValues() {
+        var stored = PasswordHash.hash(PasswordHash.PBKDF2_SHA256, ITERATIONS, "contraseña");
+        var parts = stored.split("\\$");
+
+        assertFalse(PasswordHash.matches("contraseña", "a$b"));
+        assertFalse(PasswordHash.matches("contraseña", stored + "$extra"));
+        assertFalse(PasswordHash.matches("contraseña", parts[0] + "$" + parts[1] + "$!!$" + parts[3]));
+        assertFalse(PasswordHash.matches("contraseña", parts[0] + "$" + parts[1] + "$" + parts[2] + "$!!"));
+        assertFalse(PasswordHash.matches("contraseña", parts[0] + "$muchas$" + parts[2] + "$" + parts[3]));
+        assertFalse(PasswordHash.matches("contraseña", "sha1$" + parts[1] + "$" + parts[2] + "$" + parts[3]));
+    }
+
+    @Test
+    void asksToRehashWeakerValues() {
+        var stored = PasswordHash.hash(PasswordHash.PBKDF2_SHA256, ITERATIONS, "contraseña");
+
+        assertFalse(PasswordHash.needsRehash(stored, PasswordHash.PBKDF2_SHA256, ITERATIONS));
+        assertTrue(PasswordHash.needsRehash(stored, PasswordHash.PBKDF2_SHA256, ITERATIONS + 1));
+        assertTrue(PasswordHash.needsRehash(stored, PasswordHash.PBKDF2_SHA512, ITERATIONS));
+        assertTrue(PasswordHash.needsRehash("a$b", PasswordHash.PBKDF2_SHA256, ITERATIONS));
+    }
+}
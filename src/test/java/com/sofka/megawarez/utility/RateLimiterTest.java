@@ -0,0 +1,69 @@
+package com.sofka.megawarez.utility;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pruebas del limitador de peticiones. La tasa es de una petición por segundo para que ninguna
+ * cubeta se recupere mientras corre la prueba
+ *
+ * @version 1.0.0 2022-04-06
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+class RateLimiterTest {
+
+    @Test
+    void admitsTheBurstAndThenLimits() {
+        var limiter = new RateLimiter(1, 3, 16);
+        var key = RateLimiter.key("10.0.0.1");
+
+        for (var i = 0; i < 3; i++) {
+            assertEquals(0, limiter.acquire(key));
+        }
+        var wait = limiter.acquire(key);
+        assertTrue(wait > 0 && wait <= 1_000_000_000L, "Debe esperar a lo sumo un intervalo: " + wait);
+    }
+
+    @Test
+    void keepsOneBucketPerClient() {
+        var limiter = new RateLimiter(1, 1, 16);
+
+        assertEquals(0, limiter.acquire(RateLimiter.key("10.0.0.1")));
+        assertTrue(limiter.acquire(RateLimiter.key("10.0.0.1")) > 0);
+        assertEquals(0, limiter.acquire(RateLimiter.key("10.0.0.2")));
+        assertEquals(0, limiter.acquire(RateLimiter.key(1)));
+    }
+
+    @Test
+    void chargesClientsWithoutSlotToTheOverflowBucket() {
+        var limiter = new RateLimiter(1, 1, 16);
+        for (var i = 0; i < 16; i++) {
+            assertEquals(0, limiter.acquire(RateLimiter.key(i)));
+        }
+        assertEquals(0, limiter.getOverflows());
+
+        // La tabla está llena de clientes activos: los nuevos comparten la cubeta de desborde
+        assertEquals(0, limiter.acquire(RateLimiter.key(100)));
+        assertTrue(limiter.acquire(RateLimiter.key(101)) > 0);
+        assertEquals(2, limiter.getOverflows());
+    }
+
+    @Test
+    void spreadsKeys() {
+        assertNotEquals(RateLimiter.key(1), RateLimiter.key(2));
+        assertNotEquals(RateLimiter.key("1"), RateLimiter.key(1));
+        assertEquals(RateLimiter.key("10.0.0.1"), RateLimiter.key("10.0.0.1"));
+    }
+
+    @Test
+    void rejectsInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiter(0, 1, 16));
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiter(1, 0, 16));
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiter(1, 1, 8));
+    }
+}
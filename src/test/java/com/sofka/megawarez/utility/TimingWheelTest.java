@@ -0,0 +1,82 @@
+package com.sofka.megawarez.utility;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pruebas de la rueda de tiempo. Se usan ruedas pequeñas para recorrer varias vueltas de cada
+ * nivel y vencimientos fuera del alcance de la rueda
+ *
+ * @version 1.0.0 2022-04-06
+ * @author Lorena Castro <Lcastro0398@gmail.com>
+ * @since 1.0.0
+ */
+class TimingWheelTest {
+
+    @Test
+    void expiresKeysAtTheirTick() {
+        var wheel = new TimingWheel<String>(1000, 64, 3, 0);
+        wheel.schedule("a", 1500);
+        wheel.schedule("b", 3000);
+
+        assertTrue(wheel.advance(1999).isEmpty());
+        assertEquals(List.of("a"), wheel.advance(2000));
+        assertTrue(wheel.advance(2999).isEmpty());
+        assertEquals(List.of("b"), wheel.advance(3000));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void expiresPastDeadlinesOnTheNextTick() {
+        var wheel = new TimingWheel<String>(1000, 64, 3, 10_000);
+        wheel.schedule("late", 5_000);
+
+        assertTrue(wheel.advance(10_999).isEmpty());
+        assertEquals(List.of("late"), wheel.advance(11_000));
+    }
+
+    @Test
+    void expiresEveryKeyOnceAndNeverEarlyAcrossLevels() {
+        // 4 casillas y 3 niveles: la rueda abarca 64 ticks, los vencimientos llegan a 500
+        var wheel = new TimingWheel<Integer>(10, 4, 3, 0);
+        var random = new Random(7);
+        var deadlines = new HashMap<Integer, Long>();
+        var now = 0L;
+        var next = 0;
+        while (now < 20_000) {
+            for (var i = random.nextInt(5); i > 0; i--) {
+                var deadline = now + random.nextInt(5_000);
+                deadlines.put(next, deadline);
+                wheel.schedule(next++, deadline);
+            }
+            var previous = now;
+            now += 1 + random.nextInt(40);
+            for (var key : wheel.advance(now)) {
+                var deadline = deadlines.remove(key);
+                assertTrue(deadline != null, "La llave " + key + " venció dos veces");
+                // Vence en el primer avance que alcanza su tick, redondeado hacia arriba
+                var tick = (deadline + 9) / 10;
+                assertTrue(tick <= now / 10, "La llave " + key + " venció antes de " + deadline);
+                assertTrue(tick > previous / 10, "La llave " + key + " venció después de " + deadline);
+            }
+        }
+        for (var entry : deadlines.entrySet()) {
+            assertTrue((entry.getValue() + 9) / 10 > now / 10, "La llave " + entry.getKey() + " no venció");
+        }
+        assertEquals(deadlines.size(), wheel.size());
+    }
+
+    @Test
+    void rejectsInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new TimingWheel<String>(0, 64, 3, 0));
+        assertThrows(IllegalArgumentException.class, () -> new TimingWheel<String>(1000, 64, 0, 0));
+        assertThrows(IllegalArgumentException.class, () -> new TimingWheel<String>(1000, 1 << 20, 4, 0));
+    }
+}